@@ -0,0 +1,224 @@
+package benchmark.jmh;
+
+import benchmark.ModelBenchmark;
+import controller.HeadlessMatchRunner;
+import model.*;
+import model.ai.EndgameSolver;
+import org.openjdk.jmh.annotations.*;
+import utils.UserProfile;
+import utils.UserProfileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark JMH dei percorsi critici del modello, gli stessi di {@link ModelBenchmark}.
+ * Mani, tavoli, prese e finali vengono distribuiti nel setup: i metodi misurati ruotano tra questi dati
+ * e non includono mescolate né distribuzioni.
+ * Da eseguire con il profiler di allocazione: {@code java -jar jmh/target/benchmarks.jar -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class ModelJmhBenchmark {
+
+    private static final int MANI = 64;
+    private static final int FINALI = 1024;
+
+    private final ScoringStrategy scoring = new TressetteScoring();
+    private final Card.Seme[] semi = Card.Seme.values();
+    private Deck deck;
+    private BotPlayer[] mani;
+    private List<List<Card>> tavoli;
+    private RoundManager presa;
+    private Player[] giocatori;
+    private int[] carte;
+    private HeadlessMatchRunner runner;
+    private EndgameSolver risolutore;
+    private long[] maniFinali;
+    private long[] avversariFinali;
+    private int turno;
+    private int cursore;
+
+    @Setup(Level.Trial)
+    public void prepara() {
+        SplittableRandom random = new SplittableRandom(42);
+        deck = new Deck(new SplittableRandom(7));
+        mani = ModelBenchmark.distribuisciMani(scoring, new SplittableRandom(5), MANI);
+
+        tavoli = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            tavoli.add(List.of(Card.fromId(random.nextInt(Card.NUMERO_CARTE))));
+        }
+
+        presa = new RoundManager(scoring);
+        giocatori = new Player[] { mani[0], mani[1], mani[2], mani[3] };
+        carte = new int[MANI * Card.NUMERO_CARTE];
+        for (int i = 0; i < carte.length; ) {
+            deck.reset();
+            deck.shuffle();
+            while (!deck.isEmpty()) {
+                carte[i++] = deck.draw().getId();
+            }
+        }
+
+        runner = new HeadlessMatchRunner(new SplittableRandom(11));
+
+        risolutore = new EndgameSolver(scoring, 18);
+        maniFinali = new long[FINALI];
+        avversariFinali = new long[FINALI];
+        for (int i = 0; i < FINALI; i++) {
+            int[] venti = random.ints(0, Card.NUMERO_CARTE).distinct().limit(20).toArray();
+            for (int c = 0; c < 10; c++) {
+                maniFinali[i] |= 1L << venti[c];
+                avversariFinali[i] |= 1L << venti[10 + c];
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Card.NUMERO_CARTE)
+    public long deckResetShuffleDraw() {
+        deck.reset();
+        deck.shuffle();
+        long acc = 0;
+        while (!deck.isEmpty()) {
+            acc += deck.draw().getId();
+        }
+        return acc;
+    }
+
+    @Benchmark
+    public int getCarteGiocabili() {
+        int i = turno++;
+        return mani[i & (MANI - 1)].getCarteGiocabili(semi[(i >> 6) & 3]).size();
+    }
+
+    @Benchmark
+    public long getMaskGiocabili() {
+        int i = turno++;
+        return mani[i & (MANI - 1)].getMaskGiocabili(semi[(i >> 6) & 3]);
+    }
+
+    @Benchmark
+    public Card giocaCarta() {
+        int i = turno++;
+        List<Card> tavolo = tavoli.get((i >> 6) & 63);
+        return mani[i & (MANI - 1)].giocaCarta(tavolo.get(0).getSeme(), tavolo);
+    }
+
+    @Benchmark
+    public int determinaVincitore() {
+        // ogni mazzo mescolato dà le 10 prese di un round, così nessuna carta si ripete nel round
+        int p = cursore++ % (carte.length / 4);
+        if (p % 10 == 0) {
+            presa.nuovoRound();
+        } else {
+            presa.reset();
+        }
+        for (int posto = 0; posto < 4; posto++) {
+            presa.aggiungiGiocata(posto, giocatori[posto], Card.fromId(carte[p * 4 + posto]));
+        }
+        return presa.getPostoVincente() + presa.getPuntiPresa();
+    }
+
+    @Benchmark
+    public int giocaPartita1vs1() {
+        return runner.giocaPartita(false).getLedger().getPunteggio(0);
+    }
+
+    @Benchmark
+    public int migliorMossa20Carte() {
+        int i = cursore++ & (FINALI - 1);
+        return risolutore.migliorMossa(maniFinali[i], avversariFinali[i], -1);
+    }
+
+    /**
+     * Round completo giocato dal MatchManager con bot; una nuova partita inizia quando la precedente finisce.
+     */
+    @State(Scope.Thread)
+    public static class Round {
+
+        @Param({ "false", "true" })
+        public boolean dueControDue;
+
+        private final ScoringStrategy scoring = new TressetteScoring();
+        private final List<Player> players = new ArrayList<>();
+        private Deck deck;
+        private MatchManager partita;
+
+        @Setup(Level.Trial)
+        public void prepara() {
+            for (int i = 0; i < (dueControDue ? 4 : 2); i++) {
+                players.add(new BotPlayer("Bot " + i, scoring));
+            }
+            deck = new Deck(new SplittableRandom(3));
+            nuovaPartita();
+        }
+
+        private void nuovaPartita() {
+            partita = dueControDue
+                    ? new MatchManager(players, players.get(0), scoring, List.of(
+                            new Team("A", List.of(players.get(0), players.get(2))),
+                            new Team("B", List.of(players.get(1), players.get(3)))))
+                    : new MatchManager(players, players.get(0), scoring);
+            partita.enableDeck(deck);
+            partita.setTurnDriver((p, presa) -> p.giocaCarta(presa.getSemeDominante(), presa.getCarteSulTavolo()));
+        }
+    }
+
+    @Benchmark
+    public int giocaRound(Round stato) {
+        if (stato.partita.isMatchTerminato()) {
+            stato.nuovaPartita();
+        }
+        stato.partita.startNewRound();
+        return stato.partita.getLedger().getPunteggio(0);
+    }
+
+    /**
+     * Archivio con 1000 profili in un file temporaneo.
+     */
+    @State(Scope.Thread)
+    public static class Profili {
+
+        private File archivio;
+        private UserProfileManager manager;
+        private UserProfile profilo;
+
+        @Setup(Level.Trial)
+        public void prepara() throws IOException {
+            archivio = File.createTempFile("jtressette-jmh", ".dat");
+            manager = new UserProfileManager(archivio);
+            for (int i = 0; i < 1000; i++) {
+                manager.save(new UserProfile("Profilo " + i));
+            }
+            profilo = manager.load("Profilo 500");
+        }
+
+        @TearDown(Level.Trial)
+        public void chiudi() {
+            manager.close();
+            archivio.delete();
+        }
+    }
+
+    @Benchmark
+    public int salvaProfilo(Profili stato) {
+        stato.profilo.incrementaPartite();
+        stato.manager.save(stato.profilo);
+        return stato.profilo.getPartiteGiocate();
+    }
+
+    @Benchmark
+    public int caricaProfilo(Profili stato) {
+        return stato.manager.load("Profilo 500").getPartiteGiocate();
+    }
+}
@@ -1,4 +1,10 @@
 import controller.GameController;
+import utils.AudioManager;
+import utils.CachedUserProfileManager;
+import utils.MatchHistoryStore;
+import utils.MatchJournal;
+import utils.RatingLadder;
+import utils.ReplayRecorder;
 import utils.UserProfileManager;
 import view.MainMenuView;
 import view.SwingGameView;
@@ -6,6 +12,8 @@ import view.SwingMainMenuView;
 
 import javax.swing.*;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public final class JTressette {
 
@@ -18,6 +26,10 @@ public final class JTressette {
             frame.setSize(1024, 768);
             frame.setLocationRelativeTo(null);
 
+            // Decodifica gli effetti sonori in anticipo, su un thread dedicato
+            AudioManager.getInstance().precarica("/audio/start.wav", "/audio/card_play.wav", "/audio/card_draw.wav",
+                    "/audio/trick_win.wav", "/audio/round_end.wav", "/audio/game_end.wav", "/audio/exit.wav");
+
             // Vista logica del menu
             MainMenuView mainMenuView = new MainMenuView();
             // Vista grafica del menu
@@ -25,14 +37,53 @@ public final class JTressette {
             // Vista grafica del gioco
             SwingGameView gameView = new SwingGameView();
 
-            UserProfileManager profileManager = new UserProfileManager(new File("profiles.dat"));
+            // I profili vengono scritti su disco da un thread di servizio; alla chiusura si scaricano le modifiche pendenti
+            UserProfileManager profileManager = new CachedUserProfileManager(new File("profiles.dat"));
+            Runtime.getRuntime().addShutdownHook(new Thread(profileManager::close, "profile-shutdown"));
 
             // Controller
-            new GameController(gameView, mainMenuView, profileManager);
+            GameController controller = new GameController(gameView, mainMenuView, profileManager);
+            try {
+                controller.impostaRegistratore(new ReplayRecorder(Path.of("replays.jtr")));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                MatchHistoryStore matchHistory = new MatchHistoryStore(Path.of("storico.jth"));
+                controller.impostaStorico(matchHistory);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        matchHistory.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }, "history-shutdown"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                RatingLadder ratingLadder = new RatingLadder(Path.of("classifica.dat"));
+                controller.impostaClassifica(ratingLadder);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        ratingLadder.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }, "rating-shutdown"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            MatchJournal matchJournal = new MatchJournal(Path.of("partita.journal"));
+            controller.impostaDiario(matchJournal);
+            Runtime.getRuntime().addShutdownHook(new Thread(matchJournal::close, "journal-shutdown"));
 
             // Mostra il menu all'avvio
             frame.setContentPane(mainMenuPanel);
             frame.setVisible(true);
+
+            // Riprende l'eventuale partita interrotta da una chiusura improvvisa
+            controller.riprendiPartitaInterrotta();
         });
     }
 }
@@ -0,0 +1,279 @@
+package benchmark;
+
+import controller.HeadlessMatchRunner;
+import model.*;
+import model.ai.EndgameSolver;
+import utils.UserProfile;
+import utils.UserProfileManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmark dei percorsi critici del modello, senza dipendenze esterne.
+ * Per ogni benchmark esegue iterazioni di riscaldamento e di misura e riporta, come JMH con -prof gc,
+ * il tempo medio per operazione e i byte allocati per operazione (gc.alloc.rate.norm).
+ * Argomento opzionale: espressione regolare per filtrare i benchmark per nome.
+ * È il riferimento senza dipendenze; con Maven gli stessi percorsi sono misurati da JMH nel modulo jmh.
+ */
+public final class ModelBenchmark {
+
+    private static final int ITERAZIONI_RISCALDAMENTO = 5;
+    private static final int ITERAZIONI_MISURA = 10;
+    private static final long NANOS_PER_ITERAZIONE = 200_000_000L;
+    private static final int MANI = 64;
+    private static final int FINALI = 1024;
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Destinazione dei risultati, per impedire al JIT di eliminare il codice misurato.
+     */
+    private static volatile long sink;
+
+    private ModelBenchmark() {}
+
+    /**
+     * Operazione misurata: esegue un'unità di lavoro e restituisce un valore da consumare.
+     * Le operazioni per chiamata permettono di normalizzare per carta, presa o round.
+     */
+    private record Benchmark(String nome, int operazioniPerChiamata, String unita, LongSupplier corpo) { }
+
+    public static void main(String[] args) throws IOException {
+        Pattern filtro = Pattern.compile(args.length > 0 ? args[0] : ".*");
+        List<Benchmark> benchmarks = creaBenchmark();
+
+        System.out.printf("%-40s %6s %14s %12s %18s%n", "Benchmark", "Cnt", "Score", "Error", "gc.alloc.rate.norm");
+        for (Benchmark b : benchmarks) {
+            if (filtro.matcher(b.nome()).find()) {
+                esegui(b);
+            }
+        }
+    }
+
+    /**
+     * Costruisce l'elenco dei benchmark con il relativo stato preparato.
+     */
+    private static List<Benchmark> creaBenchmark() throws IOException {
+        ScoringStrategy scoring = new TressetteScoring();
+        SplittableRandom random = new SplittableRandom(42);
+        List<Benchmark> lista = new ArrayList<>();
+
+        Deck deck = new Deck(new SplittableRandom(7));
+        lista.add(new Benchmark("Deck.resetShuffleDraw", Card.NUMERO_CARTE, "ns/carta", () -> {
+            deck.reset();
+            deck.shuffle();
+            long acc = 0;
+            while (!deck.isEmpty()) {
+                acc += deck.draw().getId();
+            }
+            return acc;
+        }));
+
+        BotPlayer[] mani = distribuisciMani(scoring, new SplittableRandom(5), MANI);
+        Card.Seme[] semi = Card.Seme.values();
+        int[] turno = new int[1];
+        lista.add(new Benchmark("Player.getCarteGiocabili", 1, "ns/op", () -> {
+            int i = turno[0]++;
+            return mani[i & (MANI - 1)].getCarteGiocabili(semi[(i >> 6) & 3]).size();
+        }));
+        lista.add(new Benchmark("Player.getMaskGiocabili", 1, "ns/op", () -> {
+            int i = turno[0]++;
+            return mani[i & (MANI - 1)].getMaskGiocabili(semi[(i >> 6) & 3]);
+        }));
+
+        List<List<Card>> tavoli = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            tavoli.add(List.of(Card.fromId(random.nextInt(Card.NUMERO_CARTE))));
+        }
+        lista.add(new Benchmark("BotPlayer.giocaCarta", 1, "ns/op", () -> {
+            int i = turno[0]++;
+            List<Card> tavolo = tavoli.get((i >> 6) & 63);
+            return mani[i & (MANI - 1)].giocaCarta(tavolo.get(0).getSeme(), tavolo).getId();
+        }));
+
+        RoundManager presa = new RoundManager(scoring);
+        Player[] giocatori = { mani[0], mani[1], mani[2], mani[3] };
+        int[] carte = new int[MANI * Card.NUMERO_CARTE];
+        for (int i = 0; i < carte.length; ) {
+            deck.reset();
+            deck.shuffle();
+            while (!deck.isEmpty()) {
+                carte[i++] = deck.draw().getId();
+            }
+        }
+        int preseDisponibili = carte.length / 4;
+        int[] cursore = new int[1];
+        int[] presaCorrente = new int[1];
+        lista.add(new Benchmark("RoundManager.determinaVincitore", 1, "ns/presa", () -> {
+            // ogni mazzo mescolato dà le 10 prese di un round, così nessuna carta si ripete nel round
+            int p = presaCorrente[0]++ % preseDisponibili;
+            if (p % 10 == 0) {
+                presa.nuovoRound();
+            } else {
+                presa.reset();
+            }
+            for (int posto = 0; posto < 4; posto++) {
+                presa.aggiungiGiocata(posto, giocatori[posto], Card.fromId(carte[p * 4 + posto]));
+            }
+            return presa.getPostoVincente() + presa.getPuntiPresa();
+        }));
+
+        lista.add(creaBenchmarkRound("MatchManager.playCard 1vs1", false, scoring));
+        lista.add(creaBenchmarkRound("MatchManager.playCard 2vs2", true, scoring));
+
+        HeadlessMatchRunner runner = new HeadlessMatchRunner(new SplittableRandom(11));
+        lista.add(new Benchmark("HeadlessMatchRunner.giocaPartita 1vs1", 1, "ns/partita",
+                () -> runner.giocaPartita(false).getLedger().getPunteggio(0)));
+
+        long[] maniFinali = new long[FINALI];
+        long[] avversariFinali = new long[FINALI];
+        for (int i = 0; i < FINALI; i++) {
+            int[] venti = random.ints(0, Card.NUMERO_CARTE).distinct().limit(20).toArray();
+            for (int c = 0; c < 10; c++) {
+                maniFinali[i] |= 1L << venti[c];
+                avversariFinali[i] |= 1L << venti[10 + c];
+            }
+        }
+        EndgameSolver risolutore = new EndgameSolver(scoring, 18);
+        lista.add(new Benchmark("EndgameSolver.migliorMossa 20 carte", 1, "ns/op", () -> {
+            int i = cursore[0]++ & (FINALI - 1);
+            return risolutore.migliorMossa(maniFinali[i], avversariFinali[i], -1);
+        }));
+
+        File archivio = File.createTempFile("jtressette-bench", ".dat");
+        archivio.deleteOnExit();
+        UserProfileManager profileManager = new UserProfileManager(archivio);
+        for (int i = 0; i < 1000; i++) {
+            profileManager.save(new UserProfile("Profilo " + i));
+        }
+        UserProfile profilo = profileManager.load("Profilo 500");
+        lista.add(new Benchmark("UserProfileManager.save (1000 profili)", 1, "ns/op", () -> {
+            profilo.incrementaPartite();
+            profileManager.save(profilo);
+            return profilo.getPartiteGiocate();
+        }));
+        lista.add(new Benchmark("UserProfileManager.load (1000 profili)", 1, "ns/op",
+                () -> profileManager.load("Profilo 500").getPartiteGiocate()));
+        return lista;
+    }
+
+    /**
+     * Distribuisce, in fase di preparazione, un insieme fisso di mani da 10 carte, ciascuna a un bot diverso:
+     * i corpi misurati ruotano tra i bot e non includono mescolata e distribuzione.
+     * @param scoring Strategia di punteggio dei bot.
+     * @param random Generatore per mescolare il mazzo.
+     * @param quante Numero di mani.
+     * @return Bot con le mani distribuite.
+     */
+    public static BotPlayer[] distribuisciMani(ScoringStrategy scoring, SplittableRandom random, int quante) {
+        Deck deck = new Deck(random);
+        BotPlayer[] bot = new BotPlayer[quante];
+        for (int i = 0; i < quante; i++) {
+            deck.reset();
+            deck.shuffle();
+            bot[i] = new BotPlayer("Bot " + i, scoring);
+            bot[i].setMano(new ArrayList<>(10));
+            deck.distribuisci(List.of(bot[i]), 10);
+        }
+        return bot;
+    }
+
+    /**
+     * Benchmark di un round completo giocato dal MatchManager con bot, normalizzato per presa.
+     */
+    private static Benchmark creaBenchmarkRound(String nome, boolean twoVsTwo, ScoringStrategy scoring) {
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < (twoVsTwo ? 4 : 2); i++) {
+            players.add(new BotPlayer("Bot " + i, scoring));
+        }
+        Deck deck = new Deck(new SplittableRandom(3));
+        Object[] partita = new Object[1];
+        Runnable nuovaPartita = () -> {
+            MatchManager m = twoVsTwo
+                    ? new MatchManager(players, players.get(0), scoring, List.of(
+                            new Team("A", List.of(players.get(0), players.get(2))),
+                            new Team("B", List.of(players.get(1), players.get(3)))))
+                    : new MatchManager(players, players.get(0), scoring);
+            m.enableDeck(deck);
+            m.setTurnDriver((p, presa) -> p.giocaCarta(presa.getSemeDominante(), presa.getCarteSulTavolo()));
+            partita[0] = m;
+        };
+        nuovaPartita.run();
+        int presePerRound = twoVsTwo ? 10 : 20;
+        return new Benchmark(nome, presePerRound, "ns/presa", () -> {
+            MatchManager m = (MatchManager) partita[0];
+            if (m.isMatchTerminato()) {
+                nuovaPartita.run();
+                m = (MatchManager) partita[0];
+            }
+            m.startNewRound();
+            return m.getLedger().getPunteggio(0);
+        });
+    }
+
+    /**
+     * Esegue riscaldamento e misura di un benchmark e stampa il risultato.
+     */
+    private static void esegui(Benchmark b) {
+        for (int i = 0; i < ITERAZIONI_RISCALDAMENTO; i++) {
+            iterazione(b);
+        }
+        double[] nanosPerOp = new double[ITERAZIONI_MISURA];
+        double[] bytesPerOp = new double[ITERAZIONI_MISURA];
+        for (int i = 0; i < ITERAZIONI_MISURA; i++) {
+            double[] r = iterazione(b);
+            nanosPerOp[i] = r[0];
+            bytesPerOp[i] = r[1];
+        }
+        double media = media(nanosPerOp);
+        double errore = 2.262 * deviazioneStandard(nanosPerOp, media) / Math.sqrt(ITERAZIONI_MISURA);
+        System.out.printf("%-40s %6d %14.3f ± %9.3f %-10s %10.1f B/op%n",
+                b.nome(), ITERAZIONI_MISURA, media, errore, b.unita(), media(bytesPerOp));
+    }
+
+    /**
+     * Esegue il corpo del benchmark per circa NANOS_PER_ITERAZIONE.
+     * @return tempo e byte allocati per operazione
+     */
+    private static double[] iterazione(Benchmark b) {
+        long thread = Thread.currentThread().getId();
+        long chiamate = 0;
+        long acc = 0;
+        long byteIniziali = THREAD_BEAN.getThreadAllocatedBytes(thread);
+        long inizio = System.nanoTime();
+        long fine;
+        do {
+            for (int i = 0; i < 64; i++) {
+                acc += b.corpo().getAsLong();
+            }
+            chiamate += 64;
+            fine = System.nanoTime();
+        } while (fine - inizio < NANOS_PER_ITERAZIONE);
+        long byteAllocati = THREAD_BEAN.getThreadAllocatedBytes(thread) - byteIniziali;
+        sink += acc;
+        double operazioni = (double) chiamate * b.operazioniPerChiamata();
+        return new double[] { (fine - inizio) / operazioni, byteAllocati / operazioni };
+    }
+
+    private static double media(double[] valori) {
+        double somma = 0;
+        for (double v : valori) somma += v;
+        return somma / valori.length;
+    }
+
+    private static double deviazioneStandard(double[] valori, double media) {
+        double somma = 0;
+        for (double v : valori) somma += (v - media) * (v - media);
+        return Math.sqrt(somma / (valori.length - 1));
+    }
+}
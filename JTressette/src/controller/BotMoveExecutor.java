@@ -0,0 +1,118 @@
+package controller;
+
+import model.BotPlayer;
+import model.Card;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Calcola le mosse dei bot su un pool di worker, fuori dal thread dell'interfaccia.
+ * Ogni mossa ha un tempo di riflessione massimo: allo scadere si applica una mossa di riserva.
+ * La mossa scelta viene consegnata tramite l'esecutore indicato (ad esempio l'EDT di Swing)
+ * e può essere annullata, ad esempio quando l'utente esce dalla partita.
+ */
+public class BotMoveExecutor implements AutoCloseable {
+
+    private final ExecutorService pool;
+    private final Executor applicatore;
+    private volatile long budgetMillis;
+
+    private volatile long generazione;
+    private CompletableFuture<Card> mossaInCorso;
+
+    /**
+     * Crea l'esecutore delle mosse dei bot.
+     * @param applicatore esecutore sul cui thread viene applicata la mossa scelta
+     * @param budgetMillis tempo massimo di riflessione per mossa, in millisecondi
+     */
+    public BotMoveExecutor(Executor applicatore, long budgetMillis) {
+        this.applicatore = applicatore;
+        this.budgetMillis = budgetMillis;
+        AtomicInteger contatore = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "bot-worker-" + contatore.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Imposta il tempo massimo di riflessione per le prossime mosse.
+     * @param budgetMillis tempo in millisecondi
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Restituisce il tempo massimo di riflessione per mossa.
+     * @return tempo in millisecondi
+     */
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    /**
+     * Avvia il calcolo della mossa di un bot. Va chiamato sul thread della partita.
+     * Il bot riflette su un'istantanea di mano, memoria e tavolo ({@link BotPlayer#preparaMossa}), perché
+     * allo scadere del tempo la partita prosegue mentre il calcolo annullato può essere ancora in corso.
+     * @param bot bot di turno
+     * @param semeDominante seme da rispettare, oppure null se il bot è di mano
+     * @param carteSulTavolo carte già giocate nella presa
+     * @param applica azione che applica la mossa, eseguita sull'applicatore
+     */
+    public synchronized void richiediMossa(BotPlayer bot, Card.Seme semeDominante, List<Card> carteSulTavolo,
+                                           Consumer<Card> applica) {
+        annulla();
+        long token = generazione;
+        Supplier<Card> mossa = bot.preparaMossa(semeDominante, carteSulTavolo);
+        Card riserva = bot.getCarteGiocabili(semeDominante).get(0);
+
+        CompletableFuture<Card> risultato = new CompletableFuture<>();
+        Future<?> calcolo = pool.submit(() -> {
+            try {
+                risultato.complete(mossa.get());
+            } catch (RuntimeException e) {
+                risultato.completeExceptionally(e);
+            }
+        });
+        risultato.completeOnTimeout(riserva, budgetMillis, TimeUnit.MILLISECONDS);
+        risultato.whenComplete((carta, errore) -> {
+            calcolo.cancel(true);
+            if (risultato.isCancelled()) {
+                return;
+            }
+            Card scelta = errore == null && carta != null ? carta : riserva;
+            applicatore.execute(() -> {
+                if (token == generazione) {
+                    applica.accept(scelta);
+                }
+            });
+        });
+        mossaInCorso = risultato;
+    }
+
+    /**
+     * Annulla la mossa in corso, se presente: il calcolo viene interrotto e la mossa non verrà applicata.
+     */
+    public synchronized void annulla() {
+        generazione++;
+        if (mossaInCorso != null) {
+            mossaInCorso.cancel(true);
+            mossaInCorso = null;
+        }
+    }
+
+    /**
+     * Annulla la mossa in corso e arresta il pool di worker.
+     */
+    @Override
+    public void close() {
+        annulla();
+        pool.shutdownNow();
+    }
+}
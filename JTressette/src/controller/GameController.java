@@ -1,8 +1,14 @@
 package controller;
 
 import model.*;
+import model.ai.IsmctsBotPlayer;
 import utils.AudioManager;
+import utils.MatchHistory;
+import utils.MatchHistoryStore;
+import utils.MatchJournal;
+import utils.RatingLadder;
 import utils.MatchObserver;
+import utils.ReplayRecorder;
 import utils.UserProfile;
 import utils.UserProfileManager;
 import view.GameView;
@@ -11,6 +17,7 @@ import view.Position;
 import view.SwingGameView;
 
 import javax.swing.*;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -19,12 +26,21 @@ import java.util.*;
  */
 public class GameController implements MatchObserver {
 
+    private static final long BUDGET_BOT_MILLIS = 1500;
+
     private final GameView gameView;
     private final MainMenuView mainMenuView;
     private final UserProfileManager profileManager;
+    private final BotMoveExecutor botExecutor = new BotMoveExecutor(SwingUtilities::invokeLater, BUDGET_BOT_MILLIS);
 
     private MatchManager matchManager;
     private UserProfile currentProfile;
+    private ReplayRecorder replayRecorder;
+    private MatchJournal matchJournal;
+    private MatchHistoryStore matchHistory;
+    private RatingLadder ratingLadder;
+    private long inizioPartita;
+    private int preseVinte;
 
     /**
      * Inizializza il controller e collega le viste.
@@ -37,6 +53,107 @@ public class GameController implements MatchObserver {
         configuraMenuPrincipale();
     }
 
+    /**
+     * Imposta l'archivio in cui registrare le partite giocate fino alla fine.
+     * @param replayRecorder archivio delle registrazioni, oppure null per non registrare
+     */
+    public void impostaRegistratore(ReplayRecorder replayRecorder) {
+        this.replayRecorder = replayRecorder;
+    }
+
+    /**
+     * Imposta il diario in cui registrare la partita in corso, per riprenderla dopo una chiusura improvvisa.
+     * @param matchJournal diario della partita, oppure null per non registrare
+     */
+    public void impostaDiario(MatchJournal matchJournal) {
+        this.matchJournal = matchJournal;
+    }
+
+    /**
+     * Imposta l'archivio in cui registrare lo storico delle partite concluse di ogni profilo.
+     * @param matchHistory archivio degli storici, oppure null per non registrare
+     */
+    public void impostaStorico(MatchHistoryStore matchHistory) {
+        this.matchHistory = matchHistory;
+    }
+
+    /**
+     * Imposta la classifica da aggiornare a ogni partita conclusa.
+     * @param ratingLadder classifica, oppure null per non aggiornarla
+     */
+    public void impostaClassifica(RatingLadder ratingLadder) {
+        this.ratingLadder = ratingLadder;
+    }
+
+    /**
+     * Riprende la partita interrotta registrata nel diario, se presente: ricostruisce giocatori e squadre,
+     * rigioca il round fino all'interruzione e riavvia il turno. Inizio della partita e prese vinte nei round
+     * conclusi vengono dal diario, così lo storico registra la partita per intero.
+     * Un diario illeggibile o incoerente viene scartato.
+     * @return true se una partita è stata ripresa
+     */
+    public boolean riprendiPartitaInterrotta() {
+        if (matchJournal == null) {
+            return false;
+        }
+        ScoringStrategy scoring = new TressetteScoring();
+        MatchJournal.Ripresa ripresa;
+        try {
+            ripresa = matchJournal.leggi(scoring);
+        } catch (IOException e) {
+            e.printStackTrace();
+            matchJournal.abbandona();
+            return false;
+        }
+        if (ripresa == null) {
+            return false;
+        }
+        currentProfile = profileManager.load(ripresa.etichetta());
+        boolean twoVsTwo = ripresa.numeroGiocatori() == 4;
+        List<Player> players = twoVsTwo ? creaGiocatori2vs2(scoring) : creaGiocatori1vs1(scoring);
+        MatchManager partita = twoVsTwo
+                ? new MatchManager(players, players.get(0), scoring, creaSquadre2vs2(players))
+                : new MatchManager(players, players.get(0), scoring);
+        for (Player p : players) {
+            if (p instanceof BotPlayer bot) {
+                bot.collegaPartita(partita);
+            }
+        }
+        try {
+            ripresa.applica(partita);
+            matchJournal.riprendi(partita, ripresa);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            matchJournal.abbandona();
+            return false;
+        }
+        matchManager = partita;
+        matchManager.addObserver(this);
+        inizioPartita = ripresa.inizioPartita();
+        preseVinte = ripresa.preseVinte()[getParteUmana()];
+        RoundManager round = matchManager.getRoundManager();
+        for (int k = 0; k < round.getPreseChiuse(); k++) {
+            if (matchManager.getLedger().getParteDelPosto(round.getVincitorePresa(k)) == getParteUmana()) {
+                preseVinte++;
+            }
+        }
+        gameView.impostaPosizioniGiocatori(calcolaPosizioni(players, twoVsTwo));
+        if (gameView instanceof SwingGameView sgv) {
+            SwingUtilities.invokeLater(sgv::mostraGioco);
+        }
+        if (twoVsTwo) {
+            gameView.aggiornaPunteggiSquadre(matchManager.getPunteggiSquadra());
+        } else {
+            gameView.aggiornaPunteggiGiocatori(matchManager.getPunteggiGiocatore());
+        }
+        RoundManager presa = matchManager.getRoundManager();
+        for (int i = 0; i < presa.getNumeroGiocate(); i++) {
+            gameView.mostraCartaGiocata(players.get(presa.getPosto(i)), presa.getCarta(i));
+        }
+        matchManager.riprendiTurno();
+        return true;
+    }
+
     /**
      * Registra le azioni del menu principale.
      */
@@ -70,10 +187,23 @@ public class GameController implements MatchObserver {
             matchManager = new MatchManager(players, startingPlayer, scoring, teams);
         } else {
             matchManager = new MatchManager(players, startingPlayer, scoring);
-            matchManager.enableDeck(new Deck());
         }
+        matchManager.enableDeck(new Deck());
 
         matchManager.addObserver(this);
+        inizioPartita = System.currentTimeMillis();
+        preseVinte = 0;
+        if (replayRecorder != null) {
+            replayRecorder.registra(matchManager);
+        }
+        if (matchJournal != null) {
+            matchJournal.registra(matchManager, currentProfile.getNome(), inizioPartita);
+        }
+        for (Player p : players) {
+            if (p instanceof BotPlayer bot) {
+                bot.collegaPartita(matchManager);
+            }
+        }
         gameView.impostaPosizioniGiocatori(calcolaPosizioni(players, mainMenuView.isTwoVsTwo()));
 
         AudioManager.getInstance().playResource("/audio/start.wav");
@@ -86,10 +216,26 @@ public class GameController implements MatchObserver {
     }
 
     /**
-     * Mostra la schermata impostazioni.
+     * Imposta il tempo massimo di riflessione dei bot per ogni mossa.
+     * @param millis tempo in millisecondi
+     */
+    public void impostaBudgetBot(long millis) {
+        botExecutor.setBudgetMillis(millis);
+    }
+
+    /**
+     * Mostra la schermata impostazioni per il profilo selezionato, con storico e classifica.
      */
     private void mostraImpostazioni() {
-        gameView.mostraImpostazioni();
+        UserProfile profilo = currentProfile;
+        if (profilo == null) {
+            String nome = mainMenuView.getSelectedProfileName();
+            profilo = profileManager.load(nome);
+            if (profilo == null) {
+                profilo = new UserProfile(nome);
+            }
+        }
+        gameView.mostraImpostazioni(profileManager, profilo, matchHistory, ratingLadder);
     }
 
     /**
@@ -162,7 +308,7 @@ public class GameController implements MatchObserver {
      * Gestisce la carta selezionata dall'umano.
      */
     public void cartaSelezionataDalGiocatore(Card carta) {
-        Player umano = matchManager.getPunteggiGiocatore().keySet().stream()
+        Player umano = matchManager.getPlayers().stream()
                 .filter(p -> p instanceof HumanPlayer)
                 .findFirst()
                 .orElseThrow();
@@ -173,6 +319,10 @@ public class GameController implements MatchObserver {
      * Gestisce l'uscita dalla partita.
      */
     public void handleExitPartita() {
+        botExecutor.annulla();
+        if (matchJournal != null) {
+            matchJournal.abbandona();
+        }
         if (currentProfile != null) {
             currentProfile.incrementaPartite();
             profileManager.save(currentProfile);
@@ -184,16 +334,30 @@ public class GameController implements MatchObserver {
         matchManager = null;
     }
 
+    /**
+     * Per i bot avvia il calcolo della mossa sul pool di worker; la mossa viene poi giocata sull'EDT,
+     * solo se la partita è ancora quella in corso. Per l'umano abilita la selezione delle carte
+     * quando il diario conferma che le giocate precedenti sono su disco.
+     */
     @Override
     public void onTurnStart(Player currentPlayer) {
         if (currentPlayer instanceof BotPlayer bot) {
-            Card scelta = bot.giocaCarta(
-                    matchManager.getRoundManager().getSemeDominante(),
-                    matchManager.getRoundManager().getGiocate().stream().map(RoundManager.Giocata::carta).toList()
-            );
-            matchManager.playCard(bot, scelta);
-        } else {
+            MatchManager partita = matchManager;
+            RoundManager presa = partita.getRoundManager();
+            botExecutor.richiediMossa(bot, presa.getSemeDominante(), presa.getCarteSulTavolo(), carta -> {
+                if (matchManager == partita) {
+                    partita.playCard(bot, carta);
+                }
+            });
+        } else if (matchJournal == null) {
             gameView.abilitaSelezioneCarte(currentPlayer);
+        } else {
+            MatchManager partita = matchManager;
+            matchJournal.sincronizza().whenComplete((esito, errore) -> SwingUtilities.invokeLater(() -> {
+                if (matchManager == partita) {
+                    gameView.abilitaSelezioneCarte(currentPlayer);
+                }
+            }));
         }
     }
 
@@ -211,6 +375,9 @@ public class GameController implements MatchObserver {
 
     @Override
     public void onTrickEnd(Player winner, int points) {
+        if (matchManager.getLedger().getParteDelPosto(matchManager.getPlayers().indexOf(winner)) == getParteUmana()) {
+            preseVinte++;
+        }
         AudioManager.getInstance().playResource("/audio/trick_win.wav");
         gameView.mostraFinePresa(winner, points);
     }
@@ -233,32 +400,100 @@ public class GameController implements MatchObserver {
 
     @Override
     public void onMatchEndGiocatore(Player winnerOrNullOnTie) {
-        boolean vittoria = winnerOrNullOnTie != null && winnerOrNullOnTie instanceof HumanPlayer;
-        aggiornaStatisticheProfilo(vittoria);
+        int esito = winnerOrNullOnTie == null ? MatchHistory.PAREGGIO
+                : winnerOrNullOnTie instanceof HumanPlayer ? MatchHistory.VITTORIA : MatchHistory.SCONFITTA;
+        aggiornaStatisticheProfilo(esito);
         AudioManager.getInstance().playResource("/audio/game_end.wav");
         gameView.mostraFinePartitaGiocatore(winnerOrNullOnTie);
     }
 
     @Override
     public void onMatchEndSquadra(Team winnerOrNullOnTie) {
-        boolean vittoria = winnerOrNullOnTie != null &&
-                winnerOrNullOnTie.getMembers().stream().anyMatch(p -> p instanceof HumanPlayer);
-        aggiornaStatisticheProfilo(vittoria);
+        int esito = winnerOrNullOnTie == null ? MatchHistory.PAREGGIO
+                : winnerOrNullOnTie.getMembers().stream().anyMatch(p -> p instanceof HumanPlayer)
+                ? MatchHistory.VITTORIA : MatchHistory.SCONFITTA;
+        aggiornaStatisticheProfilo(esito);
         AudioManager.getInstance().playResource("/audio/game_end.wav");
         gameView.mostraFinePartitaSquadra(winnerOrNullOnTie);
     }
 
     /**
-     * Aggiorna le statistiche del profilo in base all'esito della partita.
+     * Aggiorna le statistiche del profilo in base all'esito della partita e ne registra la riga nello storico.
      */
-    private void aggiornaStatisticheProfilo(boolean vittoria) {
+    private void aggiornaStatisticheProfilo(int esito) {
         if (currentProfile == null) {
             return;
         }
         currentProfile.incrementaPartite();
-        if (vittoria) {
+        if (esito == MatchHistory.VITTORIA) {
             currentProfile.incrementaVittorie();
         }
         profileManager.save(currentProfile);
+        if (matchHistory != null) {
+            long fine = System.currentTimeMillis();
+            matchHistory.registra(currentProfile.getNome(), new MatchHistory.Partita(fine, matchManager.isTwoVsTwo(),
+                    esito, matchManager.getLedger().getPunteggio(getParteUmana()), preseVinte, getTipoAvversario(),
+                    (int) Math.min(Integer.MAX_VALUE, fine - inizioPartita)));
+        }
+        if (ratingLadder != null) {
+            aggiornaClassifica(esito);
+        }
+    }
+
+    /**
+     * Aggiorna la classifica: il profilo (in 2vs2 la coppia con il suo alleato) contro i tipi dei bot avversari,
+     * ciascun tipo una sola volta.
+     */
+    private void aggiornaClassifica(int esito) {
+        List<String> parteUmana = new ArrayList<>();
+        List<String> parteAvversaria = new ArrayList<>();
+        List<Player> players = matchManager.getPlayers();
+        for (int posto = 0; posto < players.size(); posto++) {
+            Player p = players.get(posto);
+            if (matchManager.getLedger().getParteDelPosto(posto) != getParteUmana()) {
+                String chiave = RatingLadder.bot(getTipo(p));
+                if (!parteAvversaria.contains(chiave)) {
+                    parteAvversaria.add(chiave);
+                }
+            } else if (!(p instanceof HumanPlayer)) {
+                parteUmana.add(RatingLadder.squadra(currentProfile.getNome(), getTipo(p)));
+            }
+        }
+        if (parteUmana.isEmpty()) {
+            parteUmana.add(RatingLadder.umano(currentProfile.getNome()));
+        }
+        ratingLadder.registraPartita(new RatingLadder.Risultato(parteUmana, parteAvversaria,
+                (esito + 1) / 2.0, System.currentTimeMillis()));
+    }
+
+    /**
+     * Restituisce la parte (giocatore o squadra) del giocatore umano nel registro dei punteggi.
+     */
+    private int getParteUmana() {
+        List<Player> players = matchManager.getPlayers();
+        for (int posto = 0; posto < players.size(); posto++) {
+            if (players.get(posto) instanceof HumanPlayer) {
+                return matchManager.getLedger().getParteDelPosto(posto);
+            }
+        }
+        throw new IllegalStateException("Nessun giocatore umano al tavolo");
+    }
+
+    private static MatchHistory.TipoAvversario getTipo(Player bot) {
+        return bot instanceof IsmctsBotPlayer ? MatchHistory.TipoAvversario.ISMCTS : MatchHistory.TipoAvversario.BOT;
+    }
+
+    /**
+     * Restituisce il tipo dei bot avversari del giocatore umano.
+     */
+    private MatchHistory.TipoAvversario getTipoAvversario() {
+        List<Player> players = matchManager.getPlayers();
+        for (int posto = 0; posto < players.size(); posto++) {
+            if (matchManager.getLedger().getParteDelPosto(posto) != getParteUmana()
+                    && players.get(posto) instanceof IsmctsBotPlayer) {
+                return MatchHistory.TipoAvversario.ISMCTS;
+            }
+        }
+        return MatchHistory.TipoAvversario.BOT;
     }
 }
\ No newline at end of file
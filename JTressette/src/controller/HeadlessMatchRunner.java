@@ -0,0 +1,251 @@
+package controller;
+
+import model.*;
+import model.ai.DecisionCache;
+import model.ai.IsmctsBotPlayer;
+import utils.MatchObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Esegue partite complete tra soli bot senza interfaccia grafica né audio.
+ * Pilota direttamente il MatchManager al posto del GameController e misura il throughput
+ * in partite e prese al secondo.
+ */
+public class HeadlessMatchRunner implements MatchObserver {
+
+    private final ScoringStrategy scoring = new TressetteScoring();
+    private final RandomGenerator random;
+    private final BotFactory botFactory;
+    private final Deck deck;
+
+    private MatchManager matchManager;
+    private Player vincitore;
+    private Team squadraVincitrice;
+    private long partiteGiocate;
+    private long roundGiocati;
+    private long preseGiocate;
+
+    /**
+     * Crea un simulatore con un generatore casuale dedicato.
+     * @param random generatore usato per scegliere il primo giocatore di mano e per mescolare
+     */
+    public HeadlessMatchRunner(RandomGenerator random) {
+        this(random, (posto, scoring) -> new BotPlayer("Bot " + (posto + 1), scoring));
+    }
+
+    /**
+     * Crea un simulatore che usa i bot prodotti dalla factory indicata, ad esempio per confrontare strategie.
+     * @param random generatore usato per scegliere il primo giocatore di mano e per mescolare
+     * @param botFactory factory dei bot per ciascun posto al tavolo
+     */
+    public HeadlessMatchRunner(RandomGenerator random, BotFactory botFactory) {
+        this.random = Objects.requireNonNull(random);
+        this.botFactory = Objects.requireNonNull(botFactory);
+        this.deck = new Deck(random);
+    }
+
+    /**
+     * Gioca una partita completa fino al raggiungimento dei 31 punti, spareggio compreso.
+     * @param twoVsTwo true per la modalità 2vs2, false per il 1vs1
+     * @return il gestore della partita terminata, da cui leggere i punteggi finali
+     */
+    public MatchManager giocaPartita(boolean twoVsTwo) {
+        List<Player> players = creaBot(twoVsTwo);
+        Player startingPlayer = players.get(random.nextInt(players.size()));
+        if (twoVsTwo) {
+            List<Team> teams = List.of(
+                    new Team("Squadra 1", List.of(players.get(0), players.get(2))),
+                    new Team("Squadra 2", List.of(players.get(1), players.get(3))));
+            matchManager = new MatchManager(players, startingPlayer, scoring, teams);
+        } else {
+            matchManager = new MatchManager(players, startingPlayer, scoring);
+        }
+        vincitore = null;
+        squadraVincitrice = null;
+        matchManager.enableDeck(deck);
+        matchManager.setTurnDriver(HeadlessMatchRunner::scegliCarta);
+        matchManager.addObserver(this);
+        for (Player p : players) {
+            ((BotPlayer) p).collegaPartita(matchManager);
+        }
+
+        while (!matchManager.isMatchTerminato()) {
+            matchManager.startNewRound();
+            roundGiocati++;
+        }
+        partiteGiocate++;
+        return matchManager;
+    }
+
+    /**
+     * Crea i bot per la modalità richiesta, nell'ordine di gioco al tavolo.
+     */
+    private List<Player> creaBot(boolean twoVsTwo) {
+        int n = twoVsTwo ? 4 : 2;
+        List<Player> bot = new ArrayList<>(n);
+        for (int posto = 0; posto < n; posto++) {
+            bot.add(botFactory.crea(posto, scoring));
+        }
+        return bot;
+    }
+
+    /**
+     * Restituisce il vincitore dell'ultima partita 1vs1, come notificato dal gestore della partita.
+     * @return vincitore, oppure null in caso di pareggio o se l'ultima partita era 2vs2
+     */
+    public Player getVincitore() {
+        return vincitore;
+    }
+
+    /**
+     * Restituisce la squadra vincitrice dell'ultima partita 2vs2, come notificata dal gestore della partita.
+     * @return squadra vincitrice, oppure null in caso di pareggio o se l'ultima partita era 1vs1
+     */
+    public Team getSquadraVincitrice() {
+        return squadraVincitrice;
+    }
+
+    /**
+     * Restituisce il numero di partite giocate da questo simulatore.
+     * @return partite giocate
+     */
+    public long getPartiteGiocate() {
+        return partiteGiocate;
+    }
+
+    /**
+     * Restituisce il numero di round giocati da questo simulatore.
+     * @return round giocati
+     */
+    public long getRoundGiocati() {
+        return roundGiocati;
+    }
+
+    /**
+     * Restituisce il numero di prese chiuse da questo simulatore.
+     * @return prese giocate
+     */
+    public long getPreseGiocate() {
+        return preseGiocate;
+    }
+
+    /**
+     * Sceglie la giocata del bot di turno; usato come driver dei turni della partita.
+     */
+    private static Card scegliCarta(Player player, RoundManager presa) {
+        return player.giocaCarta(presa.getSemeDominante(), presa.getCarteSulTavolo());
+    }
+
+    @Override
+    public void onTurnStart(Player currentPlayer) { }
+
+    /**
+     * Crea il bot che occupa un posto al tavolo.
+     */
+    @FunctionalInterface
+    public interface BotFactory {
+        /**
+         * @param posto posto al tavolo, nell'ordine di gioco
+         * @param scoring strategia di punteggio della partita
+         * @return bot da far sedere al posto indicato
+         */
+        BotPlayer crea(int posto, ScoringStrategy scoring);
+    }
+
+    @Override
+    public void onCardPlayed(Player player, Card card) { }
+
+    @Override
+    public void onCardDrawn(Player player, Card card, boolean revealTemporaneo) { }
+
+    @Override
+    public void onTrickEnd(Player winner, int points) {
+        preseGiocate++;
+    }
+
+    @Override
+    public void onScoreUpdateGiocatori(Map<Player, Integer> scores) { }
+
+    @Override
+    public void onScoreUpdateSquadre(Map<Team, Integer> scores) { }
+
+    @Override
+    public void onRoundEnd() { }
+
+    @Override
+    public void onMatchEndGiocatore(Player winnerOrNullOnTie) {
+        vincitore = winnerOrNullOnTie;
+    }
+
+    @Override
+    public void onMatchEndSquadra(Team winnerOrNullOnTie) {
+        squadraVincitrice = winnerOrNullOnTie;
+    }
+
+    /**
+     * Avvia una simulazione da riga di comando.
+     * Argomenti opzionali: modalità ("1vs1" o "2vs2"), numero di partite e millisecondi per mossa:
+     * se indicati, i posti pari sono occupati da bot ISMCTS a singolo thread contro bot base.
+     */
+    public static void main(String[] args) {
+        boolean twoVsTwo = args.length > 0 && args[0].equalsIgnoreCase("2vs2");
+        int partite = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        if (args.length > 2) {
+            confrontaIsmcts(twoVsTwo, partite, Long.parseLong(args[2]));
+            return;
+        }
+
+        // Riscaldamento del JIT prima della misura
+        HeadlessMatchRunner warmup = new HeadlessMatchRunner(new SplittableRandom());
+        for (int i = 0; i < Math.min(partite, 10_000); i++) {
+            warmup.giocaPartita(twoVsTwo);
+        }
+
+        HeadlessMatchRunner runner = new HeadlessMatchRunner(new SplittableRandom());
+        long inizio = System.nanoTime();
+        for (int i = 0; i < partite; i++) {
+            runner.giocaPartita(twoVsTwo);
+        }
+        double secondi = (System.nanoTime() - inizio) / 1e9;
+
+        System.out.printf("Modalità: %s%n", twoVsTwo ? "2vs2" : "1vs1");
+        System.out.printf("Partite: %d, round: %d, prese: %d in %.3f s%n",
+                runner.getPartiteGiocate(), runner.getRoundGiocati(), runner.getPreseGiocate(), secondi);
+        System.out.printf("Throughput: %.0f partite/s, %.0f prese/s%n",
+                runner.getPartiteGiocate() / secondi, runner.getPreseGiocate() / secondi);
+    }
+
+    /**
+     * Confronta bot ISMCTS (posti pari) e bot base (posti dispari) e stampa vittorie e simulazioni al secondo.
+     */
+    private static void confrontaIsmcts(boolean twoVsTwo, int partite, long millisPerMossa) {
+        List<IsmctsBotPlayer> ismcts = new ArrayList<>();
+        HeadlessMatchRunner runner = new HeadlessMatchRunner(new SplittableRandom(), (posto, scoring) -> {
+            if (posto % 2 == 1) {
+                return new BotPlayer("Base " + posto, scoring);
+            }
+            IsmctsBotPlayer bot = new IsmctsBotPlayer("ISMCTS " + posto, scoring, millisPerMossa, 1);
+            ismcts.add(bot);
+            return bot;
+        });
+        int vittorie = 0;
+        for (int i = 0; i < partite; i++) {
+            ScoreLedger ledger = runner.giocaPartita(twoVsTwo).getLedger();
+            if (ledger.getParteInTesta() == ledger.getParteDelPosto(0)) {
+                vittorie++;
+            }
+        }
+        double playoutAlSecondo = ismcts.stream().mapToDouble(IsmctsBotPlayer::getPlayoutAlSecondo).average().orElse(0);
+        System.out.printf("ISMCTS contro base (%s, %d ms/mossa): %d vittorie su %d, %.0f simulazioni/s%n",
+                twoVsTwo ? "2vs2" : "1vs1", millisPerMossa, vittorie, partite, playoutAlSecondo);
+        DecisionCache<?> finali = IsmctsBotPlayer.getCacheFinali();
+        System.out.printf("Cache dei finali: %d voci, tasso di successo %.1f%% (%d su %d)%n", finali.size(),
+                100 * finali.getTassoDiSuccesso(), finali.getSuccessi(), finali.getSuccessi() + finali.getMancati());
+    }
+}
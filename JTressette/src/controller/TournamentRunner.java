@@ -0,0 +1,270 @@
+package controller;
+
+import model.BotPlayer;
+import model.MatchManager;
+import model.Player;
+import model.Team;
+import model.ai.IsmctsBotPlayer;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Torneo tra soli bot distribuito su tutti i core tramite ForkJoinPool.
+ * Ogni blocco di partite usa un proprio HeadlessMatchRunner con generatore casuale e mazzo dedicati;
+ * i risultati confluiscono senza lock nelle statistiche per tipo di bot e per worker.
+ */
+public class TournamentRunner {
+
+    private static final int PARTITE_PER_BLOCCO = 256;
+
+    private final ForkJoinPool pool;
+    private final boolean twoVsTwo;
+    private final HeadlessMatchRunner.BotFactory botFactory;
+
+    private final Map<String, StatisticheBot> statisticheBot = new ConcurrentHashMap<>();
+    private final Map<String, StatisticheWorker> statisticheWorker = new ConcurrentHashMap<>();
+
+    /**
+     * Crea un torneo con il parallelismo indicato.
+     * @param parallelismo numero di worker del pool
+     * @param twoVsTwo true per la modalità 2vs2, false per il 1vs1
+     */
+    public TournamentRunner(int parallelismo, boolean twoVsTwo) {
+        this(parallelismo, twoVsTwo, (posto, scoring) -> new BotPlayer("Bot " + (posto + 1), scoring));
+    }
+
+    /**
+     * Crea un torneo tra i bot prodotti dalla factory indicata, ad esempio per confrontare strategie.
+     * La factory viene chiamata in parallelo dai worker e deve quindi essere thread-safe.
+     * @param parallelismo numero di worker del pool
+     * @param twoVsTwo true per la modalità 2vs2, false per il 1vs1
+     * @param botFactory factory dei bot per ciascun posto al tavolo
+     */
+    public TournamentRunner(int parallelismo, boolean twoVsTwo, HeadlessMatchRunner.BotFactory botFactory) {
+        this.pool = new ForkJoinPool(parallelismo);
+        this.twoVsTwo = twoVsTwo;
+        this.botFactory = Objects.requireNonNull(botFactory);
+    }
+
+    /**
+     * Gioca il numero di partite richiesto e attende il completamento.
+     * @param partite numero totale di partite
+     * @param seed seme da cui derivano i generatori dei singoli blocchi
+     */
+    public void esegui(int partite, long seed) {
+        pool.invoke(new Blocco(0, partite, seed));
+    }
+
+    /**
+     * Arresta il pool di worker.
+     */
+    public void chiudi() {
+        pool.shutdown();
+    }
+
+    /**
+     * Restituisce le statistiche aggregate per tipo di bot (nome semplice della classe).
+     * @return mappa non modificabile tipo di bot → statistiche
+     */
+    public Map<String, StatisticheBot> getStatisticheBot() {
+        return Map.copyOf(statisticheBot);
+    }
+
+    /**
+     * Restituisce le statistiche di throughput per thread worker.
+     * @return mappa non modificabile nome thread → statistiche
+     */
+    public Map<String, StatisticheWorker> getStatisticheWorker() {
+        return Map.copyOf(statisticheWorker);
+    }
+
+    /**
+     * Registra l'esito di una partita terminata nelle statistiche locali del blocco.
+     * Il vincitore è quello notificato dal gestore della partita, per cui un pareggio non è una vittoria;
+     * ogni tipo di bot conta una volta per lato del tavolo.
+     */
+    private void registraEsito(HeadlessMatchRunner runner, MatchManager partita, Map<String, long[]> locali) {
+        if (twoVsTwo) {
+            Team vincitrice = runner.getSquadraVincitrice();
+            partita.getPunteggiSquadra().forEach((team, punti) -> {
+                Set<String> tipi = new HashSet<>();
+                for (Player p : team.getMembers()) {
+                    tipi.add(tipo(p));
+                }
+                tipi.forEach(tipo -> accumula(locali, tipo, team == vincitrice, punti));
+            });
+        } else {
+            Player vincitore = runner.getVincitore();
+            partita.getPunteggiGiocatore().forEach((p, punti) -> accumula(locali, tipo(p), p == vincitore, punti));
+        }
+    }
+
+    private static String tipo(Player p) {
+        return p.getClass().getSimpleName();
+    }
+
+    private static void accumula(Map<String, long[]> locali, String nome, boolean vittoria, int punti) {
+        long[] s = locali.computeIfAbsent(nome, k -> new long[3]);
+        s[0]++;
+        if (vittoria) s[1]++;
+        s[2] += punti;
+    }
+
+    /**
+     * Porzione di torneo suddivisa ricorsivamente fino a PARTITE_PER_BLOCCO partite.
+     */
+    private final class Blocco extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int inizio;
+        private final int fine;
+        private final long seed;
+
+        Blocco(int inizio, int fine, long seed) {
+            this.inizio = inizio;
+            this.fine = fine;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (fine - inizio > PARTITE_PER_BLOCCO) {
+                int meta = (inizio + fine) >>> 1;
+                invokeAll(new Blocco(inizio, meta, seed), new Blocco(meta, fine, seed));
+                return;
+            }
+            long avvio = System.nanoTime();
+            HeadlessMatchRunner runner = new HeadlessMatchRunner(
+                    new SplittableRandom(seed ^ (inizio * 0x9E3779B97F4A7C15L)), botFactory);
+            Map<String, long[]> locali = new HashMap<>();
+            for (int i = inizio; i < fine; i++) {
+                registraEsito(runner, runner.giocaPartita(twoVsTwo), locali);
+            }
+            locali.forEach((nome, s) ->
+                    statisticheBot.computeIfAbsent(nome, k -> new StatisticheBot()).aggiungi(s[0], s[1], s[2]));
+            statisticheWorker.computeIfAbsent(Thread.currentThread().getName(), k -> new StatisticheWorker())
+                    .aggiungi(runner.getPartiteGiocate(), runner.getPreseGiocate(), System.nanoTime() - avvio);
+        }
+    }
+
+    /**
+     * Statistiche cumulative di un bot, aggiornabili concorrentemente senza lock.
+     */
+    public static final class StatisticheBot {
+        private final LongAdder partite = new LongAdder();
+        private final LongAdder vittorie = new LongAdder();
+        private final LongAdder punti = new LongAdder();
+
+        private void aggiungi(long partite, long vittorie, long punti) {
+            this.partite.add(partite);
+            this.vittorie.add(vittorie);
+            this.punti.add(punti);
+        }
+
+        public long getPartite() {
+            return partite.sum();
+        }
+
+        public long getVittorie() {
+            return vittorie.sum();
+        }
+
+        public long getPunti() {
+            return punti.sum();
+        }
+
+        @Override
+        public String toString() {
+            long n = getPartite();
+            return String.format("partite=%d, vittorie=%d (%.1f%%), punti medi=%.2f",
+                    n, getVittorie(), n == 0 ? 0.0 : getVittorie() * 100.0 / n, n == 0 ? 0.0 : (double) getPunti() / n);
+        }
+    }
+
+    /**
+     * Throughput cumulativo di un singolo thread worker.
+     */
+    public static final class StatisticheWorker {
+        private final LongAdder partite = new LongAdder();
+        private final LongAdder prese = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void aggiungi(long partite, long prese, long nanos) {
+            this.partite.add(partite);
+            this.prese.add(prese);
+            this.nanos.add(nanos);
+        }
+
+        public long getPartite() {
+            return partite.sum();
+        }
+
+        public long getPrese() {
+            return prese.sum();
+        }
+
+        /**
+         * Restituisce il throughput del worker calcolato sul solo tempo di lavoro effettivo.
+         * @return partite al secondo
+         */
+        public double getPartiteAlSecondo() {
+            long n = nanos.sum();
+            return n == 0 ? 0.0 : partite.sum() * 1e9 / n;
+        }
+
+        /**
+         * Restituisce il throughput di prese del worker calcolato sul solo tempo di lavoro effettivo.
+         * @return prese al secondo
+         */
+        public double getPreseAlSecondo() {
+            long n = nanos.sum();
+            return n == 0 ? 0.0 : prese.sum() * 1e9 / n;
+        }
+    }
+
+    /**
+     * Avvia un torneo da riga di comando.
+     * Argomenti opzionali: modalità ("1vs1" o "2vs2"), numero di partite, numero di thread e millisecondi per mossa:
+     * se indicati, i posti pari sono occupati da bot ISMCTS a singolo thread contro bot base.
+     */
+    public static void main(String[] args) {
+        boolean twoVsTwo = args.length > 0 && args[0].equalsIgnoreCase("2vs2");
+        int partite = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int thread = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        TournamentRunner torneo;
+        if (args.length > 3) {
+            long millisPerMossa = Long.parseLong(args[3]);
+            torneo = new TournamentRunner(thread, twoVsTwo, (posto, scoring) -> posto % 2 == 1
+                    ? new BotPlayer("Base " + posto, scoring)
+                    : new IsmctsBotPlayer("ISMCTS " + posto, scoring, millisPerMossa, 1));
+        } else {
+            torneo = new TournamentRunner(thread, twoVsTwo);
+        }
+        long inizio = System.nanoTime();
+        torneo.esegui(partite, System.nanoTime());
+        double secondi = (System.nanoTime() - inizio) / 1e9;
+        torneo.chiudi();
+
+        System.out.printf("Torneo %s: %d partite su %d thread in %.3f s (%.0f partite/s)%n",
+                twoVsTwo ? "2vs2" : "1vs1", partite, thread, secondi, partite / secondi);
+        torneo.getStatisticheBot().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> System.out.println("  " + e.getKey() + ": " + e.getValue()));
+        torneo.getStatisticheWorker().entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> System.out.printf("  %s: %d partite, %.0f partite/s, %.0f prese/s%n",
+                        e.getKey(), e.getValue().getPartite(),
+                        e.getValue().getPartiteAlSecondo(), e.getValue().getPreseAlSecondo()));
+    }
+}
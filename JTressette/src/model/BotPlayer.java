@@ -1,14 +1,24 @@
 package model;
 
+import model.ai.EndgameSolver;
+
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Rappresenta un giocatore controllato dal computer.
  * Utilizza una logica automatica per determinare la carta da giocare.
+ * Quando è collegato a una partita consulta la propria {@link CardTracker} per sapere quali carte sono uscite.
+ * Nel finale 1vs1 a mazzo esaurito la mano avversaria è nota e la mossa viene calcolata dall'{@link EndgameSolver}.
  */
 public class BotPlayer extends Player {
 
+    private static final int BIT_TABELLA_FINALE = 16;
+
     private final ScoringStrategy scoring;
+    private CardTracker conoscenza;
+    private EndgameSolver finale;
 
     /**
      * Costruttore del giocatore bot.
@@ -20,34 +30,156 @@ public class BotPlayer extends Player {
         this.scoring = scoring;
     }
 
+    /**
+     * Restituisce la strategia di punteggio usata dal bot.
+     * @return Strategia di punteggio.
+     */
+    protected ScoringStrategy getScoring() {
+        return scoring;
+    }
+
+    /**
+     * Restituisce la memoria della partita a cui il bot è collegato.
+     * @return Memoria delle carte, oppure null se il bot non è collegato a nessuna partita.
+     */
+    protected CardTracker getConoscenza() {
+        return conoscenza;
+    }
+
+    /**
+     * Collega il bot alla partita che sta per iniziare, registrando una nuova memoria delle carte come osservatore.
+     * In 1vs1 crea il risolutore dei finali, se non ne ha già uno da una partita precedente.
+     * Le sottoclassi che ridefiniscono il metodo devono richiamarlo.
+     * @param partita Partita a cui il bot partecipa.
+     */
+    public void collegaPartita(MatchManager partita) {
+        conoscenza = new CardTracker();
+        conoscenza.collegaPartita(partita);
+        if (finale == null && partita.getPlayers().size() == 2) {
+            finale = creaRisolutoreFinale();
+        }
+    }
+
+    /**
+     * Crea il risolutore dei finali 1vs1, condiviso con le istantanee del bot.
+     * @return Risolutore dei finali.
+     */
+    protected EndgameSolver creaRisolutoreFinale() {
+        return new EndgameSolver(scoring, BIT_TABELLA_FINALE);
+    }
+
+    /**
+     * Prepara la scelta della carta su un'istantanea del bot, con copie proprie della mano (nello stesso ordine),
+     * della memoria e del tavolo. Va chiamato sul thread della partita; il calcolo restituito può girare
+     * su un altro thread anche mentre la partita modifica mano e memoria del bot.
+     * @param semeDominante Seme da rispettare nel turno.
+     * @param carteSulTavolo Carte già giocate nel turno corrente.
+     * @return Calcolo della carta scelta.
+     */
+    public Supplier<Card> preparaMossa(Card.Seme semeDominante, List<Card> carteSulTavolo) {
+        BotPlayer copia = istantanea();
+        List<Card> tavolo = List.copyOf(carteSulTavolo);
+        return () -> copia.giocaCarta(semeDominante, tavolo);
+    }
+
+    /**
+     * Crea una copia del bot non collegata alla partita, con mano e memoria proprie.
+     * Le sottoclassi con stato proprio la ridefiniscono, copiando mano e memoria con {@link #copiaStatoIn}.
+     * @return Istantanea del bot.
+     */
+    protected BotPlayer istantanea() {
+        BotPlayer copia = new BotPlayer(nome, scoring);
+        copiaStatoIn(copia);
+        return copia;
+    }
+
+    /**
+     * Copia mano e memoria del bot in un'istantanea, che condivide il risolutore dei finali.
+     * @param copia Istantanea da completare.
+     */
+    protected final void copiaStatoIn(BotPlayer copia) {
+        copia.setMano(mano == null ? null : new ArrayList<>(mano));
+        copia.conoscenza = conoscenza == null ? null : conoscenza.copia(this, copia);
+        copia.finale = finale;
+    }
+
     /**
      * Logica automatica per selezionare la carta da giocare.
+     * Nel finale 1vs1 gioca la mossa ottima. Di mano, se conosce le carte uscite, gioca la carta imbattibile
+     * con più punti; altrimenti prende se sul tavolo ci sono punti e può vincere, o scarta la carta con meno punti.
      * @param semeDominante Seme da rispettare nel turno.
      * @param carteSulTavolo Carte già giocate nel turno corrente.
      * @return Carta scelta dal bot (la rimozione dalla mano è centralizzata nel gestore partita).
      */
     @Override
     public Card giocaCarta(Card.Seme semeDominante, List<Card> carteSulTavolo) {
-        List<Card> giocabili = getCarteGiocabili(semeDominante);
-
-        int puntiSulTavolo = carteSulTavolo.stream()
-                .mapToInt(scoring::getCardPoints)
-                .sum();
+        long giocabili = getMaskGiocabili(semeDominante);
+        if (finale != null && conoscenza != null && conoscenza.getNumeroGiocatori() == 2
+                && conoscenza.getCarteNelMazzo() == 0) {
+            return risolviFinale(carteSulTavolo);
+        }
+        if (carteSulTavolo.isEmpty() && conoscenza != null) {
+            Card imbattibile = cartaImbattibile(giocabili);
+            if (imbattibile != null) {
+                return imbattibile;
+            }
+        }
 
-        Card cartaVincente = carteSulTavolo.stream()
-                .filter(c -> c.getSeme() == semeDominante)
-                .max((a, b) -> Integer.compare(a.getRankValue(), b.getRankValue()))
-                .orElse(null);
+        int puntiSulTavolo = 0;
+        Card cartaVincente = null;
+        for (Card c : carteSulTavolo) {
+            puntiSulTavolo += scoring.getCardPoints(c);
+            if (c.getSeme() == semeDominante
+                    && (cartaVincente == null || c.getRankValue() > cartaVincente.getRankValue())) {
+                cartaVincente = c;
+            }
+        }
 
-        for (Card c : giocabili) {
+        Card scartoMinimo = null;
+        for (Card c : mano) {
+            if (!CardMask.contiene(giocabili, c)) {
+                continue;
+            }
             boolean puoVincere = cartaVincente == null || c.getRankValue() > cartaVincente.getRankValue();
-            if (c.getSeme() == semeDominante && puoVincere && puntiSulTavolo > 0.0) {
+            if (c.getSeme() == semeDominante && puoVincere && puntiSulTavolo > 0) {
                 return c;
             }
+            if (scartoMinimo == null || scoring.getCardPoints(c) < scoring.getCardPoints(scartoMinimo)) {
+                scartoMinimo = c;
+            }
         }
+        return scartoMinimo;
+    }
 
-        return giocabili.stream()
-                .min((a, b) -> Integer.compare(scoring.getCardPoints(a), scoring.getCardPoints(b)))
-                .orElse(giocabili.get(0));
+    /**
+     * Calcola la mossa ottima del finale 1vs1: a mazzo vuoto le carte non viste sono tutte in mano all'avversario.
+     * Il risolutore è condiviso con le istantanee, che possono muovere su altri thread.
+     * @param carteSulTavolo Carte già giocate nel turno corrente.
+     * @return Carta migliore.
+     */
+    protected final Card risolviFinale(List<Card> carteSulTavolo) {
+        int avversario = 1 - conoscenza.getPosto(this);
+        long manoAvversario = conoscenza.getCarteSconosciute(this) | conoscenza.getNoteInMano(avversario);
+        int cartaSulTavolo = carteSulTavolo.isEmpty() ? -1 : carteSulTavolo.get(0).getId();
+        synchronized (finale) {
+            return Card.fromId(finale.migliorMossa(getManoMask(), manoAvversario, cartaSulTavolo));
+        }
+    }
+
+    /**
+     * Cerca tra le carte giocabili quella con più punti che nessuno può superare.
+     * @return Carta imbattibile, oppure null se non ce ne sono.
+     */
+    private Card cartaImbattibile(long giocabili) {
+        long mano = getManoMask();
+        Card migliore = null;
+        for (long m = giocabili; m != 0; m &= m - 1) {
+            Card c = Card.fromId(Long.numberOfTrailingZeros(m));
+            if (conoscenza.isImbattibile(c, mano)
+                    && (migliore == null || scoring.getCardPoints(c) > scoring.getCardPoints(migliore))) {
+                migliore = c;
+            }
+        }
+        return migliore;
     }
 }
@@ -1,8 +1,12 @@
 package model;
 
+import java.util.List;
+
 /**
  * Rappresenta una singola carta da gioco nel mazzo di Tressette.
  * Ogni carta ha un seme e un valore.
+ * Le 40 istanze sono canoniche e condivise: si ottengono con {@link #of(Seme, Valore)} o {@link #fromId(int)},
+ * quindi il confronto per identità equivale a equals.
  */
 public class Card {
 
@@ -21,17 +25,75 @@ public class Card {
         DUE, QUATTRO, CINQUE, SEI, SETTE, FANTE, CAVALLO, RE, TRE, ASSO
     }
 
+    /**
+     * Numero di carte del mazzo.
+     */
+    public static final int NUMERO_CARTE = 40;
+
+    private static final Card[] CARTE = new Card[NUMERO_CARTE];
+    private static final int[] RANK = new int[NUMERO_CARTE];
+    private static final List<Card> MAZZO_ORDINATO;
+
+    static {
+        for (Seme seme : Seme.values()) {
+            for (Valore valore : Valore.values()) {
+                Card carta = new Card(seme, valore);
+                CARTE[carta.id] = carta;
+                RANK[carta.id] = calcolaRank(valore);
+            }
+        }
+        MAZZO_ORDINATO = List.of(CARTE);
+    }
+
     private final Seme seme;
     private final Valore valore;
+    private final int id;
 
     /**
-     * Costruttore della carta.
+     * Costruttore della carta, usato solo per popolare la tabella canonica.
      * @param seme Seme della carta.
      * @param valore Valore della carta.
      */
-    public Card(Seme seme, Valore valore) {
+    private Card(Seme seme, Valore valore) {
         this.seme = seme;
         this.valore = valore;
+        this.id = seme.ordinal() * Valore.values().length + valore.ordinal();
+    }
+
+    /**
+     * Restituisce l'istanza canonica della carta con seme e valore indicati.
+     * @param seme Seme della carta.
+     * @param valore Valore della carta.
+     * @return Carta canonica.
+     */
+    public static Card of(Seme seme, Valore valore) {
+        return CARTE[seme.ordinal() * Valore.values().length + valore.ordinal()];
+    }
+
+    /**
+     * Restituisce l'istanza canonica della carta con l'identificativo indicato.
+     * @param id Identificativo nell'intervallo 0..39.
+     * @return Carta canonica.
+     */
+    public static Card fromId(int id) {
+        return CARTE[id];
+    }
+
+    /**
+     * Restituisce le 40 carte canoniche in ordine di identificativo.
+     * @return Lista immutabile delle carte.
+     */
+    public static List<Card> tutte() {
+        return MAZZO_ORDINATO;
+    }
+
+    /**
+     * Restituisce il valore gerarchico della carta con l'identificativo indicato, tramite tabella precalcolata.
+     * @param id Identificativo nell'intervallo 0..39.
+     * @return Valore numerico per confronto.
+     */
+    public static int rankDi(int id) {
+        return RANK[id];
     }
 
     /**
@@ -50,12 +112,28 @@ public class Card {
         return valore;
     }
 
+    /**
+     * Restituisce l'identificativo stabile della carta nell'intervallo 0..39.
+     * Le carte dello stesso seme occupano 10 identificativi consecutivi.
+     * @return Identificativo della carta.
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Restituisce il valore gerarchico della carta per determinare la presa.
      * Maggiore è il valore, più alta è la carta.
      * @return Valore numerico per confronto.
      */
     public int getRankValue() {
+        return RANK[id];
+    }
+
+    /**
+     * Calcola il valore gerarchico di un valore di carta.
+     */
+    private static int calcolaRank(Valore valore) {
         return switch (valore) {
         	case TRE -> 10;
         	case DUE -> 9;
@@ -92,13 +170,11 @@ public class Card {
     }
 
     /**
-     * Hash code coerente con equals basato su seme e valore.
+     * Hash code coerente con equals basato sull'identificativo della carta.
      * @return Valore di hash.
      */
     @Override
     public int hashCode() {
-        int result = seme != null ? seme.hashCode() : 0;
-        result = 31 * result + (valore != null ? valore.hashCode() : 0);
-        return result;
+        return id;
     }
 }
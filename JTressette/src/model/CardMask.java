@@ -0,0 +1,90 @@
+package model;
+
+/**
+ * Rappresentazione a bit di un insieme di carte su un long a 40 bit.
+ * Il bit i corrisponde alla carta con identificativo i (vedi {@link Card#getId()}),
+ * quindi ogni seme occupa 10 bit consecutivi.
+ */
+public final class CardMask {
+
+    /**
+     * Maschera vuota.
+     */
+    public static final long VUOTA = 0L;
+
+    /**
+     * Maschera con tutte le 40 carte del mazzo.
+     */
+    public static final long TUTTE = (1L << 40) - 1;
+
+    private static final long[] MASCHERE_SEME = new long[Card.Seme.values().length];
+
+    static {
+        for (Card.Seme seme : Card.Seme.values()) {
+            MASCHERE_SEME[seme.ordinal()] = 0x3FFL << (seme.ordinal() * Card.Valore.values().length);
+        }
+    }
+
+    private CardMask() { }
+
+    /**
+     * Restituisce il bit associato a una carta.
+     * @param carta Carta da convertire.
+     * @return Maschera con il solo bit della carta.
+     */
+    public static long bit(Card carta) {
+        return 1L << carta.getId();
+    }
+
+    /**
+     * Restituisce la maschera di tutte le carte di un seme.
+     * @param seme Seme richiesto.
+     * @return Maschera del seme.
+     */
+    public static long perSeme(Card.Seme seme) {
+        return MASCHERE_SEME[seme.ordinal()];
+    }
+
+    /**
+     * Restituisce la maschera di tutte le carte di un seme dato il suo ordinale.
+     * @param seme Ordinale del seme (0..3).
+     * @return Maschera del seme.
+     */
+    public static long perSeme(int seme) {
+        return MASCHERE_SEME[seme];
+    }
+
+    /**
+     * Indica se la maschera contiene la carta.
+     * @param mask Maschera da interrogare.
+     * @param carta Carta da cercare.
+     * @return true se la carta è presente.
+     */
+    public static boolean contiene(long mask, Card carta) {
+        return (mask & bit(carta)) != 0;
+    }
+
+    /**
+     * Calcola le carte giocabili di una mano rispetto al seme dominante.
+     * Se il giocatore non ha carte del seme, può giocare qualsiasi carta.
+     * @param mano Maschera della mano.
+     * @param semeDominante Seme da rispettare, oppure null se si è di mano.
+     * @return Maschera delle carte giocabili.
+     */
+    public static long giocabili(long mano, Card.Seme semeDominante) {
+        if (semeDominante == null) {
+            return mano;
+        }
+        long delSeme = mano & MASCHERE_SEME[semeDominante.ordinal()];
+        return delSeme != 0 ? delSeme : mano;
+    }
+
+    /**
+     * Conta le carte presenti nella maschera.
+     * @param mask Maschera da contare.
+     * @return Numero di carte.
+     */
+    public static int conta(long mask) {
+        return Long.bitCount(mask);
+    }
+}
@@ -0,0 +1,289 @@
+package model;
+
+import utils.MatchObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memoria delle informazioni pubbliche di un round, alimentata dagli eventi della partita.
+ * Tiene le carte uscite, le carte rimaste e i punti rimasti per seme, i semi mancanti di ciascun posto
+ * (chi non risponde al seme dominante ne è privo), le pescate rivelate, il numero di carte in mano e nel mazzo
+ * e i punti del round per parte. Ogni evento aggiorna lo stato in tempo costante, così i bot
+ * interrogano la memoria invece di ripercorrere la storia delle prese.
+ * La mano di chi interroga non è informazione pubblica e va combinata a parte, ad esempio con
+ * {@link #getCarteSconosciute(Player)}.
+ */
+public class CardTracker implements MatchObserver {
+
+    private static final int SEMI = 4;
+
+    private List<Player> giocatori;
+    private ScoreLedger ledger;
+    private ScoringStrategy scoring;
+    private final int[] puntiPerSemeIniziali = new int[SEMI];
+
+    private long carteUscite;
+    private final int[] puntiRimanenti = new int[SEMI];
+    private final int[] semiMancanti = new int[4];
+    private final long[] noteInMano = new long[4];
+    private final int[] carteInMano = new int[4];
+    private int carteNelMazzo;
+    private int semePresa = -1;
+    private final int[] puntiRound = new int[2];
+    private int ultimoVincente = -1;
+
+    /**
+     * Collega la memoria a una partita e la registra come osservatore.
+     * Va chiamato prima della distribuzione del primo round.
+     * @param partita Partita da osservare.
+     */
+    public void collegaPartita(MatchManager partita) {
+        this.giocatori = partita.getPlayers();
+        this.ledger = partita.getLedger();
+        this.scoring = partita.getScoring();
+        for (int seme = 0; seme < SEMI; seme++) {
+            puntiPerSemeIniziali[seme] = 0;
+            for (int carta = seme * 10; carta < seme * 10 + 10; carta++) {
+                puntiPerSemeIniziali[seme] += scoring.getCardPoints(carta);
+            }
+        }
+        partita.addObserver(this);
+        azzeraRound();
+    }
+
+    /**
+     * Crea una copia della memoria non collegata alla partita, che non riceve più eventi:
+     * può essere consultata da un altro thread mentre la partita prosegue.
+     * Nella copia un giocatore può essere sostituito, ad esempio dall'istantanea di un bot.
+     * @param originale Giocatore da sostituire.
+     * @param sostituto Giocatore che ne prende il posto.
+     * @return Copia della memoria.
+     */
+    public CardTracker copia(Player originale, Player sostituto) {
+        CardTracker copia = new CardTracker();
+        copia.giocatori = new ArrayList<>(giocatori);
+        for (int posto = 0; posto < copia.giocatori.size(); posto++) {
+            if (copia.giocatori.get(posto) == originale) {
+                copia.giocatori.set(posto, sostituto);
+            }
+        }
+        copia.ledger = ledger;
+        copia.scoring = scoring;
+        System.arraycopy(puntiPerSemeIniziali, 0, copia.puntiPerSemeIniziali, 0, SEMI);
+        copia.carteUscite = carteUscite;
+        System.arraycopy(puntiRimanenti, 0, copia.puntiRimanenti, 0, SEMI);
+        System.arraycopy(semiMancanti, 0, copia.semiMancanti, 0, semiMancanti.length);
+        System.arraycopy(noteInMano, 0, copia.noteInMano, 0, noteInMano.length);
+        System.arraycopy(carteInMano, 0, copia.carteInMano, 0, carteInMano.length);
+        copia.carteNelMazzo = carteNelMazzo;
+        copia.semePresa = semePresa;
+        System.arraycopy(puntiRound, 0, copia.puntiRound, 0, puntiRound.length);
+        copia.ultimoVincente = ultimoVincente;
+        return copia;
+    }
+
+    private void azzeraRound() {
+        int n = giocatori.size();
+        carteUscite = CardMask.VUOTA;
+        System.arraycopy(puntiPerSemeIniziali, 0, puntiRimanenti, 0, SEMI);
+        for (int posto = 0; posto < n; posto++) {
+            semiMancanti[posto] = 0;
+            noteInMano[posto] = CardMask.VUOTA;
+            carteInMano[posto] = 10;
+        }
+        carteNelMazzo = Card.NUMERO_CARTE - 10 * n;
+        semePresa = -1;
+        puntiRound[0] = 0;
+        puntiRound[1] = 0;
+        ultimoVincente = -1;
+    }
+
+    /**
+     * Restituisce il posto al tavolo di un giocatore.
+     * @param player Giocatore della partita.
+     * @return Posto, oppure -1 se il giocatore non partecipa.
+     */
+    public int getPosto(Player player) {
+        for (int posto = 0; posto < giocatori.size(); posto++) {
+            if (giocatori.get(posto) == player) return posto;
+        }
+        return -1;
+    }
+
+    /**
+     * Restituisce il numero di giocatori della partita osservata.
+     * @return 2 o 4.
+     */
+    public int getNumeroGiocatori() {
+        return giocatori.size();
+    }
+
+    /**
+     * Restituisce le carte già giocate nel round, compresa la presa in corso.
+     * @return Maschera delle carte uscite.
+     */
+    public long getCarteUscite() {
+        return carteUscite;
+    }
+
+    /**
+     * Restituisce le carte di un seme non ancora giocate.
+     * @param seme Ordinale del seme.
+     * @return Maschera delle carte rimaste del seme.
+     */
+    public long getRimanenti(int seme) {
+        return CardMask.perSeme(seme) & ~carteUscite;
+    }
+
+    /**
+     * Restituisce i punti non ancora giocati di un seme.
+     * @param seme Ordinale del seme.
+     * @return Punti in terzi di punto.
+     */
+    public int getPuntiRimanenti(int seme) {
+        return puntiRimanenti[seme];
+    }
+
+    /**
+     * Indica se una carta è la più alta ancora in gioco del suo seme, escluse quelle che si tengono in mano:
+     * giocata di mano, vince sicuramente la presa.
+     * @param carta Carta da valutare.
+     * @param mano Carte in mano a chi interroga.
+     * @return true se nessuna carta più alta dello stesso seme è in mano ad altri o nel mazzo.
+     */
+    public boolean isImbattibile(Card carta, long mano) {
+        long altrui = getRimanenti(carta.getSeme().ordinal()) & ~mano;
+        for (long m = altrui; m != 0; m &= m - 1) {
+            if (Card.rankDi(Long.numberOfTrailingZeros(m)) > carta.getRankValue()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Restituisce i semi di cui un posto ha mostrato di essere privo nel round.
+     * @param posto Posto al tavolo.
+     * @return Maschera a 4 bit indicizzata per ordinale del seme.
+     */
+    public int getSemiMancanti(int posto) {
+        return semiMancanti[posto];
+    }
+
+    /**
+     * Indica se un posto ha mostrato di essere privo di un seme.
+     * @param posto Posto al tavolo.
+     * @param seme Ordinale del seme.
+     * @return true se il posto non ha risposto a quel seme.
+     */
+    public boolean haSemeMancante(int posto, int seme) {
+        return (semiMancanti[posto] & (1 << seme)) != 0;
+    }
+
+    /**
+     * Restituisce le carte sicuramente in mano a un posto, note perché pescate in modo visibile.
+     * @param posto Posto al tavolo.
+     * @return Maschera delle carte note.
+     */
+    public long getNoteInMano(int posto) {
+        return noteInMano[posto];
+    }
+
+    /**
+     * Restituisce il numero di carte in mano a un posto.
+     * @param posto Posto al tavolo.
+     * @return Carte in mano.
+     */
+    public int getCarteInMano(int posto) {
+        return carteInMano[posto];
+    }
+
+    /**
+     * Restituisce il numero di carte ancora nel mazzo.
+     * @return Carte nel mazzo.
+     */
+    public int getCarteNelMazzo() {
+        return carteNelMazzo;
+    }
+
+    /**
+     * Restituisce le carte che un giocatore non ha ancora visto: né in mano, né uscite, né pescate in modo visibile.
+     * @param osservatore Giocatore dal cui punto di vista si guarda.
+     * @return Maschera delle carte sconosciute.
+     */
+    public long getCarteSconosciute(Player osservatore) {
+        long sconosciute = CardMask.TUTTE & ~osservatore.getManoMask() & ~carteUscite;
+        for (int posto = 0; posto < giocatori.size(); posto++) {
+            sconosciute &= ~noteInMano[posto];
+        }
+        return sconosciute;
+    }
+
+    /**
+     * Restituisce i punti del round acquisiti da una parte con le prese chiuse.
+     * @param parte Parte 0 o 1.
+     * @return Punti in terzi di punto, senza il punto dell'ultima presa.
+     */
+    public int getPuntiRound(int parte) {
+        return puntiRound[parte];
+    }
+
+    /**
+     * Restituisce il posto vincitore dell'ultima presa chiusa nel round.
+     * @return Posto vincente, oppure -1.
+     */
+    public int getUltimoVincente() {
+        return ultimoVincente;
+    }
+
+    @Override
+    public void onTurnStart(Player currentPlayer) { }
+
+    @Override
+    public void onCardPlayed(Player player, Card card) {
+        int posto = getPosto(player);
+        int seme = card.getSeme().ordinal();
+        if (semePresa < 0) {
+            semePresa = seme;
+        } else if (seme != semePresa) {
+            semiMancanti[posto] |= 1 << semePresa;
+        }
+        carteUscite |= CardMask.bit(card);
+        puntiRimanenti[seme] -= scoring.getCardPoints(card.getId());
+        noteInMano[posto] &= ~CardMask.bit(card);
+        carteInMano[posto]--;
+    }
+
+    @Override
+    public void onCardDrawn(Player player, Card card, boolean revealTemporaneo) {
+        int posto = getPosto(player);
+        noteInMano[posto] |= CardMask.bit(card);
+        carteInMano[posto]++;
+        carteNelMazzo--;
+    }
+
+    @Override
+    public void onTrickEnd(Player winner, int points) {
+        int posto = getPosto(winner);
+        puntiRound[ledger.getParteDelPosto(posto)] += points;
+        ultimoVincente = posto;
+        semePresa = -1;
+    }
+
+    @Override
+    public void onScoreUpdateGiocatori(Map<Player, Integer> scores) { }
+
+    @Override
+    public void onScoreUpdateSquadre(Map<Team, Integer> scores) { }
+
+    @Override
+    public void onRoundEnd() {
+        azzeraRound();
+    }
+
+    @Override
+    public void onMatchEndGiocatore(Player winnerOrNullOnTie) { }
+
+    @Override
+    public void onMatchEndSquadra(Team winnerOrNullOnTie) { }
+}
@@ -1,23 +1,49 @@
 package model;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Rappresenta un mazzo di 40 carte italiane per il gioco del Tressette.
  * Permette di creare il mazzo completo, mescolarlo, pescare singole carte o più carte,
  * e verificare lo stato delle carte rimanenti.
+ * Le carte sono in un array a dimensione fissa con un cursore sulla prossima carta da pescare,
+ * quindi ogni pescata costa O(1).
  */
 public class Deck {
 
-    private final List<Card> cards = new ArrayList<>();
+    private final Card[] cards = new Card[Card.NUMERO_CARTE];
+    private final RandomGenerator random;
+    private int cursore;
 
     /**
      * Costruttore del mazzo.
      * Inizializza il mazzo completo richiamando il metodo {@link #reset()}.
      */
     public Deck() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Costruttore del mazzo con seme fisso, per simulazioni riproducibili.
+     * @param seed Seme del generatore casuale.
+     */
+    public Deck(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    /**
+     * Costruttore del mazzo con un generatore casuale dedicato.
+     * Permette a ogni thread di simulazione di mescolare senza condividere stato.
+     * @param random Generatore usato per mescolare.
+     */
+    public Deck(RandomGenerator random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Generatore casuale nullo");
+        }
+        this.random = random;
         reset();
     }
 
@@ -26,19 +52,22 @@ public class Deck {
      * Cancella eventuali carte presenti e ricostruisce il mazzo.
      */
     public final void reset() {
-        cards.clear();
-        for (Card.Seme seme : Card.Seme.values()) {
-            for (Card.Valore valore : Card.Valore.values()) {
-                cards.add(new Card(seme, valore));
-            }
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = Card.fromId(i);
         }
+        cursore = 0;
     }
 
     /**
-     * Mescola casualmente le carte presenti nel mazzo.
+     * Mescola casualmente le carte presenti nel mazzo con l'algoritmo di Fisher-Yates.
      */
     public void shuffle() {
-        Collections.shuffle(cards);
+        for (int i = cards.length - 1; i > cursore; i--) {
+            int j = cursore + random.nextInt(i - cursore + 1);
+            Card tmp = cards[i];
+            cards[i] = cards[j];
+            cards[j] = tmp;
+        }
     }
 
     /**
@@ -47,10 +76,10 @@ public class Deck {
      * @throws IllegalStateException se il mazzo è vuoto.
      */
     public Card draw() {
-        if (cards.isEmpty()) {
+        if (cursore == cards.length) {
             throw new IllegalStateException("Il mazzo è vuoto");
         }
-        return cards.remove(0);
+        return cards[cursore++];
     }
 
     /**
@@ -60,22 +89,78 @@ public class Deck {
      * @throws IllegalArgumentException se il numero richiesto è negativo o superiore alle carte disponibili.
      */
     public List<Card> draw(int n) {
-        if (n < 0 || n > cards.size()) {
+        if (n < 0 || n > size()) {
             throw new IllegalArgumentException("Numero di carte da pescare non valido");
         }
         List<Card> picked = new ArrayList<>(n);
         for (int i = 0; i < n; i++) {
-            picked.add(draw());
+            picked.add(cards[cursore++]);
         }
         return picked;
     }
 
+    /**
+     * Distribuisce le carte una alla volta a ciascun giocatore, in ordine, direttamente nelle mani.
+     * @param giocatori Giocatori a cui distribuire, nell'ordine di distribuzione.
+     * @param cartePerGiocatore Numero di carte per ciascun giocatore.
+     * @throws IllegalArgumentException se le carte rimanenti non bastano.
+     */
+    public void distribuisci(List<Player> giocatori, int cartePerGiocatore) {
+        int n = giocatori.size();
+        if (cartePerGiocatore < 0 || cartePerGiocatore * n > size()) {
+            throw new IllegalArgumentException("Numero di carte da distribuire non valido");
+        }
+        for (int i = 0; i < cartePerGiocatore; i++) {
+            for (int g = 0; g < n; g++) {
+                giocatori.get(g).aggiungiCarta(cards[cursore++]);
+            }
+        }
+    }
+
+    /**
+     * Copia le carte rimanenti, nell'ordine di pescata.
+     * @param destinazione Array di almeno {@link #size()} elementi che riceve gli identificativi delle carte.
+     * @return Numero di carte copiate.
+     */
+    public int copiaRimanenti(int[] destinazione) {
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            destinazione[i] = cards[cursore + i].getId();
+        }
+        return n;
+    }
+
+    /**
+     * Sostituisce le carte rimanenti con quelle indicate, nell'ordine di pescata.
+     * Le carte già uscite vengono ricostruite come complemento, così il mazzo resta una permutazione completa.
+     * @param carte Identificativi delle carte rimanenti, senza ripetizioni.
+     * @param n Numero di carte.
+     * @throws IllegalArgumentException se le carte contengono ripetizioni.
+     */
+    public void impostaRimanenti(int[] carte, int n) {
+        long presenti = CardMask.VUOTA;
+        for (int i = 0; i < n; i++) {
+            presenti |= 1L << carte[i];
+        }
+        if (CardMask.conta(presenti) != n) {
+            throw new IllegalArgumentException("Carte ripetute nel mazzo");
+        }
+        cursore = cards.length - n;
+        int k = 0;
+        for (long m = CardMask.TUTTE & ~presenti; m != 0; m &= m - 1) {
+            cards[k++] = Card.fromId(Long.numberOfTrailingZeros(m));
+        }
+        for (int i = 0; i < n; i++) {
+            cards[cursore + i] = Card.fromId(carte[i]);
+        }
+    }
+
     /**
      * Restituisce il numero di carte rimanenti nel mazzo.
      * @return Numero di carte presenti.
      */
     public int size() {
-        return cards.size();
+        return cards.length - cursore;
     }
 
     /**
@@ -83,6 +168,6 @@ public class Deck {
      * @return true se non ci sono carte, false altrimenti.
      */
     public boolean isEmpty() {
-        return cards.isEmpty();
+        return cursore == cards.length;
     }
 }
\ No newline at end of file
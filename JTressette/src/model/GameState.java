@@ -0,0 +1,487 @@
+package model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stato compatto e a informazione completa di una partita in corso, usato per la ricerca e per le analisi "what-if".
+ * Mani come maschere a bit, mazzo come array con cursore, presa corrente, punti del round, punteggi di partita
+ * e posto di turno. Le giocate si applicano con {@link #gioca(int)} e si annullano in O(1) con {@link #annulla()};
+ * {@link #conMossa(int)} restituisce invece un nuovo stato lasciando intatto quello corrente.
+ * Lo stato è riutilizzabile: {@link #copiaDa(GameState)} non alloca.
+ * Si ottiene da una partita reale con {@link MatchManager#esportaStato()} e vi si riporta con
+ * {@link MatchManager#importaStato(GameState)}.
+ */
+public final class GameState {
+
+    private static final int MAX_GIOCATE = Card.NUMERO_CARTE;
+
+    /**
+     * Numero massimo di byte scritti da {@link #scriviIn(ByteBuffer)}.
+     */
+    public static final int DIMENSIONE_BINARIA_MASSIMA = 2 + 4 * Long.BYTES + 1 + Card.NUMERO_CARTE + 2 + 4 + 4 * Short.BYTES + 2;
+
+    private final ScoringStrategy scoring;
+    private final int numeroGiocatori;
+    private final int[] parteDelPosto;
+
+    private final long[] mani = new long[4];
+    private final int[] mazzo = new int[Card.NUMERO_CARTE];
+    private int lunghezzaMazzo;
+    private int cursoreMazzo;
+
+    private final int[] presa = new int[4];
+    private int carteInPresa;
+    private int primoDiMano;
+    private int indiceVincente;
+    private int semeDominante = -1;
+
+    private final int[] puntiRound = new int[2];
+    private final int[] punteggi = new int[2];
+    private int ultimoVincente = -1;
+    private int turno;
+
+    private int giocateAnnullabili;
+    private final int[] storiaCarta = new int[MAX_GIOCATE];
+    private final int[] storiaPresa = new int[MAX_GIOCATE];
+    private final int[] storiaPunti = new int[MAX_GIOCATE];
+    private final int[] storiaCursore = new int[MAX_GIOCATE];
+
+    /**
+     * Crea uno stato vuoto con la disposizione del Tressette: in 2vs2 i compagni siedono ai posti 0-2 e 1-3.
+     * @param scoring Strategia di punteggio delle carte.
+     * @param numeroGiocatori 2 per il 1vs1, 4 per il 2vs2.
+     */
+    public GameState(ScoringStrategy scoring, int numeroGiocatori) {
+        this(scoring, parteAlternata(numeroGiocatori));
+    }
+
+    private static int[] parteAlternata(int numeroGiocatori) {
+        int[] parti = new int[numeroGiocatori];
+        for (int posto = 0; posto < numeroGiocatori; posto++) {
+            parti[posto] = posto % 2;
+        }
+        return parti;
+    }
+
+    /**
+     * Crea uno stato vuoto con una disposizione delle parti esplicita.
+     * @param scoring Strategia di punteggio delle carte.
+     * @param parteDelPosto Parte (0 o 1) di ciascun posto; la lunghezza è il numero di giocatori, 2 o 4.
+     */
+    public GameState(ScoringStrategy scoring, int[] parteDelPosto) {
+        if (parteDelPosto.length != 2 && parteDelPosto.length != 4) {
+            throw new IllegalArgumentException("Numero di giocatori non valido: " + parteDelPosto.length);
+        }
+        for (int parte : parteDelPosto) {
+            if (parte != 0 && parte != 1) {
+                throw new IllegalArgumentException("Parte non valida: " + parte);
+            }
+        }
+        this.scoring = scoring;
+        this.numeroGiocatori = parteDelPosto.length;
+        this.parteDelPosto = parteDelPosto.clone();
+    }
+
+    /**
+     * Crea una copia indipendente di un altro stato, senza la sua storia di annullamento.
+     * @param altro Stato da copiare.
+     */
+    public GameState(GameState altro) {
+        this(altro.scoring, altro.parteDelPosto);
+        copiaDa(altro);
+    }
+
+    /**
+     * Copia nello stato corrente un altro stato con lo stesso numero di giocatori.
+     * La storia di annullamento viene azzerata.
+     * @param altro Stato da copiare.
+     */
+    public void copiaDa(GameState altro) {
+        System.arraycopy(altro.mani, 0, mani, 0, numeroGiocatori);
+        System.arraycopy(altro.mazzo, altro.cursoreMazzo, mazzo, altro.cursoreMazzo, altro.lunghezzaMazzo - altro.cursoreMazzo);
+        lunghezzaMazzo = altro.lunghezzaMazzo;
+        cursoreMazzo = altro.cursoreMazzo;
+        System.arraycopy(altro.presa, 0, presa, 0, altro.carteInPresa);
+        carteInPresa = altro.carteInPresa;
+        primoDiMano = altro.primoDiMano;
+        indiceVincente = altro.indiceVincente;
+        semeDominante = altro.semeDominante;
+        puntiRound[0] = altro.puntiRound[0];
+        puntiRound[1] = altro.puntiRound[1];
+        punteggi[0] = altro.punteggi[0];
+        punteggi[1] = altro.punteggi[1];
+        ultimoVincente = altro.ultimoVincente;
+        turno = altro.turno;
+        giocateAnnullabili = 0;
+    }
+
+    /**
+     * Restituisce un nuovo stato ottenuto giocando una carta, senza modificare quello corrente.
+     * @param carta Identificativo della carta, tra le mosse legali.
+     * @return Stato successivo.
+     */
+    public GameState conMossa(int carta) {
+        GameState successivo = new GameState(this);
+        successivo.gioca(carta);
+        return successivo;
+    }
+
+    /**
+     * Scrive lo stato in forma binaria compatta: disposizione delle parti, mani, mazzo, presa in corso,
+     * punti del round, punteggi e turno. La storia di annullamento non viene scritta.
+     * @param uscita Buffer con almeno {@link #DIMENSIONE_BINARIA_MASSIMA} byte liberi.
+     */
+    public void scriviIn(ByteBuffer uscita) {
+        int parti = 0;
+        for (int posto = 0; posto < numeroGiocatori; posto++) {
+            parti |= parteDelPosto[posto] << posto;
+        }
+        uscita.put((byte) numeroGiocatori).put((byte) parti);
+        for (int posto = 0; posto < numeroGiocatori; posto++) {
+            uscita.putLong(mani[posto]);
+        }
+        uscita.put((byte) getCarteNelMazzo());
+        for (int i = cursoreMazzo; i < lunghezzaMazzo; i++) {
+            uscita.put((byte) mazzo[i]);
+        }
+        uscita.put((byte) carteInPresa).put((byte) (carteInPresa == 0 ? turno : primoDiMano));
+        for (int i = 0; i < carteInPresa; i++) {
+            uscita.put((byte) presa[i]);
+        }
+        uscita.putShort((short) puntiRound[0]).putShort((short) puntiRound[1])
+                .putShort((short) punteggi[0]).putShort((short) punteggi[1])
+                .put((byte) ultimoVincente).put((byte) turno);
+    }
+
+    /**
+     * Legge uno stato scritto con {@link #scriviIn(ByteBuffer)}.
+     * Le carte della presa in corso diventano giocate annullabili, come in {@link MatchManager#esportaStato()}.
+     * @param ingresso Buffer posizionato all'inizio dello stato.
+     * @param scoring Strategia di punteggio delle carte.
+     * @return Nuovo stato.
+     * @throws IllegalArgumentException se i dati non descrivono uno stato valido.
+     */
+    public static GameState leggiDa(ByteBuffer ingresso, ScoringStrategy scoring) {
+        int n = ingresso.get();
+        if (n != 2 && n != 4) {
+            throw new IllegalArgumentException("Numero di giocatori non valido: " + n);
+        }
+        int parti = ingresso.get();
+        int[] parteDelPosto = new int[n];
+        for (int posto = 0; posto < n; posto++) {
+            parteDelPosto[posto] = parti >>> posto & 1;
+        }
+        GameState stato = new GameState(scoring, parteDelPosto);
+        for (int posto = 0; posto < n; posto++) {
+            stato.mani[posto] = ingresso.getLong();
+        }
+        stato.lunghezzaMazzo = ingresso.get();
+        for (int i = 0; i < stato.lunghezzaMazzo; i++) {
+            stato.mazzo[i] = ingresso.get();
+        }
+        int inPresa = ingresso.get();
+        int primo = ingresso.get();
+        int[] presa = new int[inPresa];
+        for (int i = 0; i < inPresa; i++) {
+            presa[i] = ingresso.get();
+        }
+        stato.puntiRound[0] = ingresso.getShort();
+        stato.puntiRound[1] = ingresso.getShort();
+        stato.punteggi[0] = ingresso.getShort();
+        stato.punteggi[1] = ingresso.getShort();
+        stato.ultimoVincente = ingresso.get();
+        int turno = ingresso.get();
+        stato.setTurno(inPresa == 0 ? turno : primo);
+        for (int carta : presa) {
+            stato.gioca(carta);
+        }
+        if (stato.turno != turno) {
+            throw new IllegalArgumentException("Turno non coerente con la presa in corso");
+        }
+        return stato;
+    }
+
+    /**
+     * Imposta la mano di un posto.
+     * @param posto Posto al tavolo.
+     * @param mano Maschera delle carte in mano.
+     */
+    public void setMano(int posto, long mano) {
+        mani[posto] = mano;
+    }
+
+    /**
+     * Restituisce la mano di un posto.
+     * @param posto Posto al tavolo.
+     * @return Maschera delle carte in mano.
+     */
+    public long getMano(int posto) {
+        return mani[posto];
+    }
+
+    /**
+     * Imposta il mazzo rimanente, nell'ordine di pescata.
+     * @param carte Identificativi delle carte.
+     * @param n Numero di carte da copiare.
+     */
+    public void setMazzo(int[] carte, int n) {
+        System.arraycopy(carte, 0, mazzo, 0, n);
+        lunghezzaMazzo = n;
+        cursoreMazzo = 0;
+    }
+
+    /**
+     * Restituisce il numero di carte ancora nel mazzo.
+     * @return Carte rimanenti.
+     */
+    public int getCarteNelMazzo() {
+        return lunghezzaMazzo - cursoreMazzo;
+    }
+
+    /**
+     * Restituisce una carta del mazzo rimanente.
+     * @param i Posizione a partire dalla prossima carta da pescare.
+     * @return Identificativo della carta.
+     */
+    public int getCartaNelMazzo(int i) {
+        return mazzo[cursoreMazzo + i];
+    }
+
+    /**
+     * Imposta i punti del round già acquisiti e il vincitore dell'ultima presa chiusa.
+     * @param puntiParte0 Punti in terzi della parte 0.
+     * @param puntiParte1 Punti in terzi della parte 1.
+     * @param ultimoVincente Posto vincitore dell'ultima presa, oppure -1.
+     */
+    public void setPuntiRound(int puntiParte0, int puntiParte1, int ultimoVincente) {
+        puntiRound[0] = puntiParte0;
+        puntiRound[1] = puntiParte1;
+        this.ultimoVincente = ultimoVincente;
+    }
+
+    /**
+     * Imposta i punteggi ufficiali di partita, che non cambiano durante il round.
+     * @param punteggioParte0 Punteggio della parte 0.
+     * @param punteggioParte1 Punteggio della parte 1.
+     */
+    public void setPunteggi(int punteggioParte0, int punteggioParte1) {
+        punteggi[0] = punteggioParte0;
+        punteggi[1] = punteggioParte1;
+    }
+
+    /**
+     * Restituisce il punteggio ufficiale di partita di una parte.
+     * @param parte Parte 0 o 1.
+     * @return Punteggio di partita.
+     */
+    public int getPunteggio(int parte) {
+        return punteggi[parte];
+    }
+
+    /**
+     * Restituisce il posto vincitore dell'ultima presa chiusa nel round.
+     * @return Posto vincente, oppure -1.
+     */
+    public int getUltimoVincente() {
+        return ultimoVincente;
+    }
+
+    /**
+     * Imposta il posto di turno all'inizio di una presa vuota.
+     * @param posto Posto di mano.
+     */
+    public void setTurno(int posto) {
+        carteInPresa = 0;
+        semeDominante = -1;
+        turno = posto;
+    }
+
+    /**
+     * Restituisce il posto che deve giocare.
+     * @return Posto di turno.
+     */
+    public int getTurno() {
+        return turno;
+    }
+
+    /**
+     * Restituisce il numero di carte già giocate nella presa corrente.
+     * @return Carte sul tavolo.
+     */
+    public int getCarteInPresa() {
+        return carteInPresa;
+    }
+
+    /**
+     * Restituisce una carta della presa corrente.
+     * @param i Indice in ordine di gioco.
+     * @return Identificativo della carta.
+     */
+    public int getCartaInPresa(int i) {
+        return presa[i];
+    }
+
+    /**
+     * Restituisce il posto di mano nella presa corrente.
+     * @return Posto che ha aperto la presa, oppure il posto di turno se la presa è vuota.
+     */
+    public int getPrimoDiMano() {
+        return carteInPresa == 0 ? turno : primoDiMano;
+    }
+
+    /**
+     * Restituisce il numero di giocatori.
+     * @return 2 o 4.
+     */
+    public int getNumeroGiocatori() {
+        return numeroGiocatori;
+    }
+
+    /**
+     * Restituisce la parte (0 o 1) di un posto.
+     * @param posto Posto al tavolo.
+     * @return Parte di appartenenza.
+     */
+    public int getParteDelPosto(int posto) {
+        return parteDelPosto[posto];
+    }
+
+    /**
+     * Restituisce le mosse legali del giocatore di turno.
+     * @return Maschera delle carte giocabili.
+     */
+    public long mosseLegali() {
+        long mano = mani[turno];
+        if (carteInPresa == 0) {
+            return mano;
+        }
+        long delSeme = mano & CardMask.perSeme(semeDominante);
+        return delSeme != 0 ? delSeme : mano;
+    }
+
+    /**
+     * Gioca una carta per il posto di turno, chiudendo la presa e pescando in 1vs1 quando serve.
+     * La carta deve essere tra le mosse legali. La giocata può essere annullata con {@link #annulla()}.
+     * @param carta Identificativo della carta.
+     */
+    public void gioca(int carta) {
+        if (giocateAnnullabili == MAX_GIOCATE) {
+            throw new IllegalStateException("Troppe giocate senza annullamento");
+        }
+        int g = giocateAnnullabili++;
+        storiaCarta[g] = carta | turno << 6 | presa[carteInPresa] << 8;
+        storiaPresa[g] = carteInPresa | indiceVincente << 3 | primoDiMano << 6 | (semeDominante + 1) << 9;
+        storiaPunti[g] = puntiRound[0] | puntiRound[1] << 10 | (ultimoVincente + 1) << 20;
+        storiaCursore[g] = cursoreMazzo;
+
+        mani[turno] &= ~(1L << carta);
+        if (carteInPresa == 0) {
+            semeDominante = carta / 10;
+            indiceVincente = 0;
+            primoDiMano = turno;
+        } else if (carta / 10 == semeDominante && Card.rankDi(carta) > Card.rankDi(presa[indiceVincente])) {
+            indiceVincente = carteInPresa;
+        }
+        presa[carteInPresa++] = carta;
+        if (carteInPresa == numeroGiocatori) {
+            chiudiPresa();
+        } else {
+            turno = (turno + 1) % numeroGiocatori;
+        }
+    }
+
+    private void chiudiPresa() {
+        int vincitore = (primoDiMano + indiceVincente) % numeroGiocatori;
+        int punti = 0;
+        for (int i = 0; i < carteInPresa; i++) {
+            punti += scoring.getCardPoints(presa[i]);
+        }
+        puntiRound[parteDelPosto[vincitore]] += punti;
+        ultimoVincente = vincitore;
+        if (numeroGiocatori == 2 && cursoreMazzo < lunghezzaMazzo) {
+            mani[vincitore] |= 1L << mazzo[cursoreMazzo++];
+            if (cursoreMazzo < lunghezzaMazzo) {
+                mani[1 - vincitore] |= 1L << mazzo[cursoreMazzo++];
+            }
+        }
+        carteInPresa = 0;
+        semeDominante = -1;
+        turno = vincitore;
+    }
+
+    /**
+     * Indica se ci sono giocate da annullare.
+     * @return true se {@link #annulla()} può essere chiamato.
+     */
+    public boolean puoAnnullare() {
+        return giocateAnnullabili > 0;
+    }
+
+    /**
+     * Annulla l'ultima giocata, comprese l'eventuale chiusura della presa e le pescate.
+     * @throws IllegalStateException se non ci sono giocate da annullare.
+     */
+    public void annulla() {
+        if (giocateAnnullabili == 0) {
+            throw new IllegalStateException("Nessuna giocata da annullare");
+        }
+        int g = --giocateAnnullabili;
+        int carta = storiaCarta[g] & 63;
+        int posto = storiaCarta[g] >> 6 & 3;
+        int statoPresa = storiaPresa[g];
+        int punti = storiaPunti[g];
+        int cursore = storiaCursore[g];
+
+        if (numeroGiocatori == 2) {
+            for (int i = cursore; i < cursoreMazzo; i++) {
+                mani[0] &= ~(1L << mazzo[i]);
+                mani[1] &= ~(1L << mazzo[i]);
+            }
+        }
+        cursoreMazzo = cursore;
+        carteInPresa = statoPresa & 7;
+        indiceVincente = statoPresa >> 3 & 7;
+        primoDiMano = statoPresa >> 6 & 7;
+        semeDominante = (statoPresa >> 9) - 1;
+        presa[carteInPresa] = storiaCarta[g] >> 8;
+        puntiRound[0] = punti & 1023;
+        puntiRound[1] = punti >> 10 & 1023;
+        ultimoVincente = (punti >> 20) - 1;
+        mani[posto] |= 1L << carta;
+        turno = posto;
+    }
+
+    /**
+     * Indica se il round è terminato.
+     * @return true se tutte le mani e il mazzo sono vuoti.
+     */
+    public boolean isFinito() {
+        for (int posto = 0; posto < numeroGiocatori; posto++) {
+            if (mani[posto] != 0) return false;
+        }
+        return cursoreMazzo == lunghezzaMazzo;
+    }
+
+    /**
+     * Restituisce i punti del round acquisiti da una parte con le prese chiuse, senza il punto dell'ultima presa.
+     * @param parte Parte 0 o 1.
+     * @return Punti in terzi di punto.
+     */
+    public int getPuntiRoundAcquisiti(int parte) {
+        return puntiRound[parte];
+    }
+
+    /**
+     * Restituisce i punti del round di una parte in terzi, compreso il punto dell'ultima presa
+     * se il round è terminato.
+     * @param parte Parte 0 o 1.
+     * @return Punti in terzi di punto.
+     */
+    public int getPuntiRound(int parte) {
+        int punti = puntiRound[parte];
+        if (ultimoVincente >= 0 && parteDelPosto[ultimoVincente] == parte && isFinito()) {
+            punti += 3;
+        }
+        return punti;
+    }
+}
@@ -25,7 +25,7 @@ public class HumanPlayer extends Player {
      * @param semeDominante Seme da rispettare nel turno.
      */
     public void setCartaSelezionata(Card carta, Card.Seme semeDominante) {
-        if (getCarteGiocabili(semeDominante).contains(carta)) {
+        if (isGiocabile(carta, semeDominante)) {
             this.cartaSelezionata = carta;
         } else {
             throw new IllegalArgumentException("Carta non valida per questo turno");
@@ -15,20 +15,19 @@ public class MatchManager implements MatchObservable {
     private final List<Team> teams;
     private final boolean twoVsTwo;
 
-    private final Map<Player, Integer> punteggiGiocatore = new LinkedHashMap<>();
-    private final Map<Team, Integer> punteggiSquadra = new LinkedHashMap<>();
+    private final ScoreLedger ledger;
+    private Map<Player, Integer> snapshotGiocatori;
+    private Map<Team, Integer> snapshotSquadre;
 
     private final List<MatchObserver> observers = new ArrayList<>();
-    private final RoundManager roundManager = new RoundManager();
+    private final RoundManager roundManager;
     private final TurnManager turnManager;
+    private final TurnScheduler turnScheduler = new TurnScheduler(this::avviaTurno);
     private final ScoringStrategy scoring;
-	
-	private final Map<Player, Integer> puntiRoundGiocatore = new LinkedHashMap<>();
-    private final Map<Team, Integer> puntiRoundSquadra = new LinkedHashMap<>();
+    private TurnDriver turnDriver;
 
     private Deck deck;
-    private Player ultimoVincitorePresa;
-	
+
     private boolean matchTerminato = false;
     private final int cartePerGiocatore = 10;
 
@@ -46,10 +45,8 @@ public class MatchManager implements MatchObservable {
         this.teams = null;
         this.twoVsTwo = false;
         this.scoring = Objects.requireNonNull(scoring, "Strategia di punteggio nulla");
-        players.forEach(p -> {
-            punteggiGiocatore.put(p, 0);
-            puntiRoundGiocatore.put(p, 0);
-        });  
+        this.roundManager = new RoundManager(this.scoring);
+        this.ledger = new ScoreLedger(new int[] { 0, 1 }, 2);
         this.turnManager = new TurnManager(this.players, startingPlayer);
     }
 
@@ -71,13 +68,33 @@ public class MatchManager implements MatchObservable {
         this.teams = List.copyOf(teams);
         this.twoVsTwo = true;
         this.scoring = Objects.requireNonNull(scoring, "Strategia di punteggio nulla");
-        teams.forEach(t -> {
-            punteggiSquadra.put(t, 0);
-            puntiRoundSquadra.put(t, 0);
-        });  
+        this.roundManager = new RoundManager(this.scoring);
+        this.ledger = new ScoreLedger(calcolaSquadraDelPosto(this.players, this.teams), 2);
         this.turnManager = new TurnManager(this.players, startingPlayer);
     }
 
+    /**
+     * Precalcola la squadra di appartenenza di ciascun posto al tavolo.
+     * @param players Giocatori in ordine di posto.
+     * @param teams Squadre in gioco.
+     * @return Indice della squadra per ogni posto.
+     */
+    private static int[] calcolaSquadraDelPosto(List<Player> players, List<Team> teams) {
+        int[] squadraDelPosto = new int[players.size()];
+        for (int posto = 0; posto < players.size(); posto++) {
+            squadraDelPosto[posto] = -1;
+            for (int t = 0; t < teams.size(); t++) {
+                if (teams.get(t).getMembers().contains(players.get(posto))) {
+                    squadraDelPosto[posto] = t;
+                }
+            }
+            if (squadraDelPosto[posto] < 0) {
+                throw new IllegalStateException("Il giocatore non appartiene a nessuna squadra");
+            }
+        }
+        return squadraDelPosto;
+    }
+
     /**
      * Inizializza il mazzo da riutilizzare per tutta la partita.
      * @param deck mazzo da usare e rimescolare a ogni round
@@ -86,24 +103,27 @@ public class MatchManager implements MatchObservable {
         this.deck = deck;
     }
 
+    /**
+     * Imposta la sorgente automatica delle giocate, interrogata a ogni inizio turno dopo gli osservatori.
+     * @param turnDriver sorgente delle giocate, oppure null per ricevere le giocate solo dall'esterno
+     */
+    public void setTurnDriver(TurnDriver turnDriver) {
+        this.turnDriver = turnDriver;
+    }
+
     /**
      * Avvia un nuovo round distribuendo le carte iniziali e notificando il primo turno.
      */
     public void startNewRound() {
-        ultimoVincitorePresa = null;
-        roundManager.reset();
+        roundManager.nuovoRound();
 		if (deck == null) {
             deck = new Deck();
         } else {
             deck.reset();
         }
         deck.shuffle();
-        players.forEach(p -> p.setMano(new ArrayList<>()));
-        for (int i = 0; i < cartePerGiocatore; i++) {
-            for (Player p : players) {
-                p.aggiungiCarta(deck.draw());
-            }
-        }
+        players.forEach(p -> p.setMano(new ArrayList<>(cartePerGiocatore)));
+        deck.distribuisci(players, cartePerGiocatore);
         notifyTurnStart(turnManager.getCurrentPlayer());
     }
 
@@ -120,13 +140,13 @@ public class MatchManager implements MatchObservable {
         if (!player.haCarta(card)) {
             throw new IllegalStateException(player.getNome() + " non ha in mano: " + card);
         }
-        if (roundManager.getSemeDominante() != null && !player.getCarteGiocabili(roundManager.getSemeDominante()).contains(card)) {
+        if (!player.isGiocabile(card, roundManager.getSemeDominante())) {
             throw new IllegalStateException("La carta " + card + " non è valida in questo turno");
         }
         player.rimuoviCarta(card);
-        roundManager.aggiungiGiocata(player, card);
+        roundManager.aggiungiGiocata(turnManager.getCurrentIndex(), player, card);
         notifyCardPlayed(player, card);
-        if (roundManager.getGiocate().size() == players.size()) {
+        if (roundManager.getNumeroGiocate() == players.size()) {
             chiudiPresa();
         } else {
             turnManager.advanceToNextPlayer();
@@ -139,35 +159,29 @@ public class MatchManager implements MatchObservable {
      * Integra la pescata in 1vs1 a fine presa.
      */
     private void chiudiPresa() {
-        Optional<Player> vincitoreOpt = roundManager.determinaVincitore();
-        int puntiPresa = roundManager.calcolaPuntiPresa(scoring);
-        vincitoreOpt.ifPresent(vincitore -> {
-            ultimoVincitorePresa = vincitore;
-            if (twoVsTwo) {
-                Team squadra = trovaSquadraDi(vincitore);
-                puntiRoundSquadra.put(squadra, puntiRoundSquadra.get(squadra) + puntiPresa);
-            } else {
-                puntiRoundGiocatore.put(vincitore, puntiRoundGiocatore.get(vincitore) + puntiPresa);
-            }
+        Player vincitore = roundManager.getVincitoreCorrente();
+        int puntiPresa = roundManager.getPuntiPresa();
+        if (vincitore != null) {
+            roundManager.archiviaPresa();
+            ledger.registraPresa(roundManager.getPostoVincente(), puntiPresa);
             notifyTrickEnd(vincitore, puntiPresa);
             notifyScoreUpdate();
             turnManager.setCurrentPlayer(vincitore);
             if (!twoVsTwo && deck != null && !deck.isEmpty()) {
                 eseguiPescata1vs1(vincitore);
             }
-        });
+        }
         roundManager.reset();
         Player prossimo = turnManager.getCurrentPlayer();
         if (twoVsTwo) {
-            if (players.stream().allMatch(Player::manoVuota)) {
+            if (maniVuote()) {
                 chiudiRound();
             } else {
                 notifyTurnStart(prossimo);
             }
         } else {
             boolean mazzoVuoto = deck == null || deck.isEmpty();
-            boolean maniVuote = players.stream().allMatch(Player::manoVuota);
-            if (mazzoVuoto && maniVuote) {
+            if (mazzoVuoto && maniVuote()) {
                 chiudiRound();
             } else {
                 notifyTurnStart(prossimo);
@@ -194,99 +208,38 @@ public class MatchManager implements MatchObservable {
     }
 
     /**
-     * Chiude il round, calcola i punti ufficiali e aggiorna i punteggi totali.
-     * Gestisce la condizione di spareggio e la fine della partita.
+     * Indica se tutti i giocatori hanno esaurito le carte in mano.
+     * @return True se tutte le mani sono vuote.
      */
-    private void chiudiRound() {
-    notifyRoundEnd();
-
-    if (twoVsTwo) {
-        for (Team t : teams) {
-			int puntiUfficiali = puntiRoundSquadra.get(t) / 3;
-			if ( t == trovaSquadraDi(ultimoVincitorePresa)) puntiUfficiali += 1;
-            punteggiSquadra.put(t, punteggiSquadra.get(t) + puntiUfficiali);
-            puntiRoundSquadra.put(t, 0);
-        }
-    } else {
+    private boolean maniVuote() {
         for (Player p : players) {
-            int puntiUfficiali = puntiRoundGiocatore.get(p) / 3;
-			if ( p == ultimoVincitorePresa) puntiUfficiali += 1;
-            punteggiGiocatore.put(p, punteggiGiocatore.get(p) + puntiUfficiali);
-            puntiRoundGiocatore.put(p, 0);
-        }
-    }
-
-    if (haRaggiuntoSoglia31()) {
-        if (twoVsTwo) {
-            Team vincitore = trovaVincitoreSquadra();
-            if (vincitore != null) {
-                matchTerminato = true;
-                notifyMatchEndSquadra(vincitore);
-            }
-        } else {
-            Player vincitore = trovaVincitore();
-            if (vincitore != null) {
-                matchTerminato = true;
-                notifyMatchEndGiocatore(vincitore);
-            	}
-            }
-        }
-    }
-
-    /**
-     * Verifica se una parte (giocatore o squadra) ha raggiunto la soglia di 31 punti.
-     * @return True se la soglia è stata raggiunta.
-     */
-    private boolean haRaggiuntoSoglia31() {
-        if (twoVsTwo) {
-            return punteggiSquadra.values().stream().anyMatch(p -> p >= 31);
-        } else {
-            return punteggiGiocatore.values().stream().anyMatch(p -> p >= 31);
+            if (!p.manoVuota()) return false;
         }
+        return true;
     }
 
     /**
-     * Restituisce il vincitore in modalità 1vs1 o null in caso di pareggio sul punteggio massimo.
-     * @return Giocatore vincitore o null.
+     * Chiude il round, calcola i punti ufficiali e aggiorna i punteggi totali.
+     * Gestisce la condizione di spareggio e la fine della partita.
      */
-    private Player trovaVincitore() {
-    	int max = punteggiGiocatore.values().stream()
-                .mapToInt(Integer::intValue)
-                .max()
-                .orElse(0);
-        List<Player> top = punteggiGiocatore.entrySet().stream()
-                .filter(e -> e.getValue().intValue() == max)
-                .map(Map.Entry::getKey)
-                .toList();
-        return top.size() == 1 ? top.get(0) : null;
-    }
+    private void chiudiRound() {
+        notifyRoundEnd();
 
-    /**
-     * Restituisce il vincitore in modalità 2vs2 o null in caso di pareggio sul punteggio massimo.
-     * @return Squadra vincitrice o null.
-     */
-    private Team trovaVincitoreSquadra() {
-        int max = punteggiSquadra.values().stream()
-        		.mapToInt(Integer::intValue)
-                .max()
-                .orElse(0);
-        List<Team> top = punteggiSquadra.entrySet().stream()
-                .filter(e -> e.getValue().intValue() == max)
-                .map(Map.Entry::getKey)
-                .toList();
-        return top.size() == 1 ? top.get(0) : null;
-    }
+        ledger.chiudiRound();
+        snapshotGiocatori = null;
+        snapshotSquadre = null;
 
-    /**
-     * Trova la squadra a cui appartiene un giocatore.
-     * @param player Giocatore da cercare.
-     * @return Squadra del giocatore.
-     */
-    private Team trovaSquadraDi(Player player) {
-        return teams.stream()
-                .filter(t -> t.getMembers().contains(player))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("Il giocatore non appartiene a nessuna squadra"));
+        if (ledger.haRaggiuntoSoglia(31)) {
+            int parteVincente = ledger.getParteInTesta();
+            if (parteVincente >= 0) {
+                matchTerminato = true;
+                if (twoVsTwo) {
+                    notifyMatchEndSquadra(teams.get(parteVincente));
+                } else {
+                    notifyMatchEndGiocatore(players.get(parteVincente));
+                }
+            }
+        }
     }
 
     /**
@@ -309,10 +262,26 @@ public class MatchManager implements MatchObservable {
 
     /**
      * Notifica l'inizio del turno al giocatore corrente.
+     * La notifica passa dal ciclo iterativo dei turni: le giocate effettuate durante la notifica
+     * non annidano ulteriori chiamate.
      * @param currentPlayer Giocatore di turno.
      */
     private void notifyTurnStart(Player currentPlayer) {
+        turnScheduler.pianifica(currentPlayer);
+    }
+
+    /**
+     * Esegue un turno pianificato: notifica gli osservatori e, se presente, gioca la carta scelta dal driver.
+     * @param currentPlayer Giocatore di turno.
+     */
+    private void avviaTurno(Player currentPlayer) {
         observers.forEach(o -> o.onTurnStart(currentPlayer));
+        if (turnDriver != null && !matchTerminato && turnManager.getCurrentPlayer() == currentPlayer) {
+            Card scelta = turnDriver.scegliCarta(currentPlayer, roundManager);
+            if (scelta != null) {
+                playCard(currentPlayer, scelta);
+            }
+        }
     }
 
     /**
@@ -347,10 +316,15 @@ public class MatchManager implements MatchObservable {
      * Notifica l'aggiornamento dei punteggi.
      */
     private void notifyScoreUpdate() {
+        if (observers.isEmpty()) {
+            return;
+        }
         if (twoVsTwo) {
-            observers.forEach(o -> o.onScoreUpdateSquadre(Map.copyOf(punteggiSquadra)));
+            Map<Team, Integer> scores = getPunteggiSquadra();
+            observers.forEach(o -> o.onScoreUpdateSquadre(scores));
         } else {
-            observers.forEach(o -> o.onScoreUpdateGiocatori(Map.copyOf(punteggiGiocatore)));
+            Map<Player, Integer> scores = getPunteggiGiocatore();
+            observers.forEach(o -> o.onScoreUpdateGiocatori(scores));
         }
     }
 
@@ -387,18 +361,155 @@ public class MatchManager implements MatchObservable {
 
     /**
      * Restituisce i punteggi dei giocatori in modalità 1vs1.
-     * @return Mappa dei punteggi per giocatore.
+     * L'istantanea immutabile viene creata solo alla prima richiesta dopo una variazione dei punteggi.
+     * @return Mappa dei punteggi per giocatore, vuota in modalità 2vs2.
      */
     public Map<Player, Integer> getPunteggiGiocatore() {
-        return Collections.unmodifiableMap(punteggiGiocatore);
+        if (twoVsTwo) {
+            return Map.of();
+        }
+        if (snapshotGiocatori == null) {
+            Map<Player, Integer> copia = new LinkedHashMap<>();
+            for (int posto = 0; posto < players.size(); posto++) {
+                copia.put(players.get(posto), ledger.getPunteggio(posto));
+            }
+            snapshotGiocatori = Collections.unmodifiableMap(copia);
+        }
+        return snapshotGiocatori;
     }
 
     /**
      * Restituisce i punteggi delle squadre in modalità 2vs2.
-     * @return Mappa dei punteggi per squadra.
+     * L'istantanea immutabile viene creata solo alla prima richiesta dopo una variazione dei punteggi.
+     * @return Mappa dei punteggi per squadra, vuota in modalità 1vs1.
      */
     public Map<Team, Integer> getPunteggiSquadra() {
-        return Collections.unmodifiableMap(punteggiSquadra);
+        if (!twoVsTwo) {
+            return Map.of();
+        }
+        if (snapshotSquadre == null) {
+            Map<Team, Integer> copia = new LinkedHashMap<>();
+            for (int t = 0; t < teams.size(); t++) {
+                copia.put(teams.get(t), ledger.getPunteggio(t));
+            }
+            snapshotSquadre = Collections.unmodifiableMap(copia);
+        }
+        return snapshotSquadre;
+    }
+
+    /**
+     * Restituisce il registro dei punteggi indicizzato per posto.
+     * @return Registro dei punteggi.
+     */
+    public ScoreLedger getLedger() {
+        return ledger;
+    }
+
+    /**
+     * Restituisce la strategia di punteggio della partita.
+     * @return Strategia di punteggio.
+     */
+    public ScoringStrategy getScoring() {
+        return scoring;
+    }
+
+    /**
+     * Restituisce i giocatori in ordine di posto al tavolo.
+     * @return Lista immutabile dei giocatori.
+     */
+    public List<Player> getPlayers() {
+        return players;
+    }
+
+    /**
+     * Esporta lo stato corrente della partita, comprese le mani di tutti i giocatori e l'ordine del mazzo.
+     * Le carte già sul tavolo compaiono come giocate annullabili dello stato esportato.
+     * @return Nuovo stato indipendente dalla partita.
+     */
+    public GameState esportaStato() {
+        int n = players.size();
+        int[] parti = new int[n];
+        for (int posto = 0; posto < n; posto++) {
+            parti[posto] = ledger.getParteDelPosto(posto);
+        }
+        GameState stato = new GameState(scoring, parti);
+        for (int posto = 0; posto < n; posto++) {
+            stato.setMano(posto, players.get(posto).getManoMask());
+        }
+        int[] mazzo = new int[Card.NUMERO_CARTE];
+        stato.setMazzo(mazzo, deck == null ? 0 : deck.copiaRimanenti(mazzo));
+        stato.setPuntiRound(ledger.getPuntiRound(0), ledger.getPuntiRound(1), ledger.getUltimoPostoVincente());
+        stato.setPunteggi(ledger.getPunteggio(0), ledger.getPunteggio(1));
+        int giocate = roundManager.getNumeroGiocate();
+        stato.setTurno(giocate == 0 ? turnManager.getCurrentIndex() : roundManager.getPosto(0));
+        for (int i = 0; i < giocate; i++) {
+            stato.gioca(roundManager.getCarta(i).getId());
+        }
+        return stato;
+    }
+
+    /**
+     * Riporta la partita allo stato indicato: mani, mazzo, presa in corso, punteggi e turno.
+     * Gli osservatori non vengono notificati e il turno non viene avviato; la storia del round
+     * nel {@link RoundManager} riparte dalla presa in corso.
+     * @param stato Stato da importare, con la stessa disposizione delle parti della partita.
+     * @throws IllegalArgumentException se lo stato non è compatibile con la partita.
+     */
+    public void importaStato(GameState stato) {
+        int n = players.size();
+        if (stato.getNumeroGiocatori() != n) {
+            throw new IllegalArgumentException("Numero di giocatori non compatibile");
+        }
+        for (int posto = 0; posto < n; posto++) {
+            if (stato.getParteDelPosto(posto) != ledger.getParteDelPosto(posto)) {
+                throw new IllegalArgumentException("Disposizione delle parti non compatibile");
+            }
+        }
+        for (int posto = 0; posto < n; posto++) {
+            List<Card> mano = new ArrayList<>(cartePerGiocatore);
+            for (long m = stato.getMano(posto); m != 0; m &= m - 1) {
+                mano.add(Card.fromId(Long.numberOfTrailingZeros(m)));
+            }
+            players.get(posto).setMano(mano);
+        }
+        int[] mazzo = new int[Card.NUMERO_CARTE];
+        for (int i = 0; i < stato.getCarteNelMazzo(); i++) {
+            mazzo[i] = stato.getCartaNelMazzo(i);
+        }
+        if (deck == null) {
+            deck = new Deck();
+        }
+        deck.impostaRimanenti(mazzo, stato.getCarteNelMazzo());
+        ledger.ripristina(new int[] { stato.getPunteggio(0), stato.getPunteggio(1) },
+                new int[] { stato.getPuntiRoundAcquisiti(0), stato.getPuntiRoundAcquisiti(1) },
+                stato.getUltimoVincente());
+        snapshotGiocatori = null;
+        snapshotSquadre = null;
+        roundManager.nuovoRound();
+        int primo = stato.getPrimoDiMano();
+        for (int i = 0; i < stato.getCarteInPresa(); i++) {
+            int posto = (primo + i) % n;
+            roundManager.aggiungiGiocata(posto, players.get(posto), Card.fromId(stato.getCartaInPresa(i)));
+        }
+        turnManager.setCurrentPlayer(players.get(stato.getTurno()));
+    }
+
+    /**
+     * Avvia il turno del giocatore corrente, notificando gli osservatori come all'inizio di un turno qualsiasi.
+     * Serve a riprendere una partita dopo {@link #importaStato(GameState)} o dopo averne rigiocato le mosse.
+     */
+    public void riprendiTurno() {
+        if (!matchTerminato) {
+            notifyTurnStart(turnManager.getCurrentPlayer());
+        }
+    }
+
+    /**
+     * Restituisce il giocatore che deve giocare.
+     * @return Giocatore di turno.
+     */
+    public Player getGiocatoreDiTurno() {
+        return turnManager.getCurrentPlayer();
     }
 
     /**
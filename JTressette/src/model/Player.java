@@ -11,6 +11,7 @@ public abstract class Player {
 
     protected String nome;
     protected List<Card> mano;
+    private long manoMask;
     private int punteggio;
 
     /**
@@ -44,6 +45,20 @@ public abstract class Player {
      */
     public void setMano(List<Card> mano) {
         this.mano = mano;
+        this.manoMask = CardMask.VUOTA;
+        if (mano != null) {
+            for (Card c : mano) {
+                manoMask |= CardMask.bit(c);
+            }
+        }
+    }
+
+    /**
+     * Restituisce la mano del giocatore in forma di maschera a bit.
+     * @return Maschera delle carte in mano.
+     */
+    public long getManoMask() {
+        return manoMask;
     }
 
     /**
@@ -75,7 +90,7 @@ public abstract class Player {
      * @return true se la carta è presente, false altrimenti.
      */
     public boolean haCarta(Card carta) {
-        return mano != null && mano.contains(carta);
+        return CardMask.contiene(manoMask, carta);
     }
 
     /**
@@ -87,6 +102,7 @@ public abstract class Player {
             throw new IllegalStateException("La mano non è stata inizializzata");
         }
         mano.add(carta);
+        manoMask |= CardMask.bit(carta);
     }
 
     /**
@@ -97,6 +113,7 @@ public abstract class Player {
         if (mano == null || !mano.remove(carta)) {
             throw new IllegalStateException(nome + " non ha in mano: " + carta);
         }
+        manoMask &= ~CardMask.bit(carta);
     }
 
     /**
@@ -108,10 +125,32 @@ public abstract class Player {
         if (mano == null || mano.isEmpty()) {
             return List.of();
         }
-        List<Card> giocabili = mano.stream()
-                .filter(c -> c.getSeme() == semeDominante)
+        long giocabili = CardMask.giocabili(manoMask, semeDominante);
+        if (giocabili == manoMask) {
+            return mano;
+        }
+        return mano.stream()
+                .filter(c -> CardMask.contiene(giocabili, c))
                 .toList();
-        return giocabili.isEmpty() ? mano : giocabili;
+    }
+
+    /**
+     * Restituisce le carte giocabili in forma di maschera a bit, senza allocazioni.
+     * @param semeDominante Seme da rispettare nel turno, oppure null se si è di mano.
+     * @return Maschera delle carte giocabili.
+     */
+    public long getMaskGiocabili(Card.Seme semeDominante) {
+        return CardMask.giocabili(manoMask, semeDominante);
+    }
+
+    /**
+     * Verifica se una carta può essere giocata rispettando il seme dominante.
+     * @param carta Carta da verificare.
+     * @param semeDominante Seme da rispettare nel turno, oppure null se si è di mano.
+     * @return true se la carta è in mano ed è giocabile.
+     */
+    public boolean isGiocabile(Card carta, Card.Seme semeDominante) {
+        return CardMask.contiene(CardMask.giocabili(manoMask, semeDominante), carta);
     }
 
     /**
@@ -1,29 +1,97 @@
 package model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Gestisce una singola presa all'interno di un round.
  * Tiene traccia delle carte giocate, del seme dominante e determina il vincitore della presa.
+ * Le giocate sono memorizzate in array a capacità fissa; vincitore e punti della presa
+ * vengono aggiornati a ogni carta aggiunta, quindi chiudere una presa non richiede allocazioni.
+ * Conserva inoltre la storia del round (20 prese in 1vs1, 10 in 2vs2) in array preallocati:
+ * posto e carta di ogni giocata, primo di mano, vincitore e punti di ogni presa chiusa.
+ * Le interrogazioni sulla storia sono in tempo costante e condivise da chiunque abbia accesso al gestore.
  */
 public class RoundManager {
 
-    private final List<Giocata> giocate = new ArrayList<>();
+    /**
+     * Numero massimo di giocate in una presa (modalità 2vs2).
+     */
+    public static final int MAX_GIOCATE = 4;
+
+    /**
+     * Numero massimo di prese in un round (modalità 1vs1).
+     */
+    public static final int MAX_PRESE_ROUND = 20;
+
+    private final ScoringStrategy scoring;
+    private final Player[] giocatori = new Player[MAX_GIOCATE];
+    private final int[] posti = new int[MAX_GIOCATE];
+    private final int[] carte = new int[MAX_GIOCATE];
+    private final List<Card> carteSulTavolo = new VistaCarte();
+
+    private int numeroGiocate;
+    private int indiceVincente = -1;
+    private int puntiPresa;
     private Card.Seme semeDominante;
 
+    private final byte[] storiaCarte = new byte[Card.NUMERO_CARTE];
+    private final byte[] storiaPosti = new byte[Card.NUMERO_CARTE];
+    private final byte[] presaDellaCarta = new byte[Card.NUMERO_CARTE];
+    private final byte[] inizioPresa = new byte[MAX_PRESE_ROUND + 1];
+    private final byte[] vincitorePresa = new byte[MAX_PRESE_ROUND];
+    private final byte[] puntiPresaChiusa = new byte[MAX_PRESE_ROUND];
+    private final int[] puntiCatturati = new int[MAX_GIOCATE];
+    private long carteGiocate;
+    private int giocateRound;
+    private int preseChiuse;
+
+    /**
+     * Costruttore del gestore della presa.
+     * @param scoring Strategia usata per accumulare i punti della presa a ogni giocata.
+     */
+    public RoundManager(ScoringStrategy scoring) {
+        if (scoring == null) {
+            throw new IllegalArgumentException("Strategia di punteggio nulla");
+        }
+        this.scoring = scoring;
+        nuovoRound();
+    }
+
     /**
      * Aggiunge una giocata alla presa corrente.
      * Se è la prima giocata, imposta il seme dominante.
+     * @param posto Posto al tavolo del giocatore.
      * @param player Giocatore che ha effettuato la giocata.
      * @param card Carta giocata.
+     * @throws IllegalStateException se la presa è già completa.
      */
-    public void aggiungiGiocata(Player player, Card card) {
-        if (giocate.isEmpty()) {
+    public void aggiungiGiocata(int posto, Player player, Card card) {
+        if (numeroGiocate == MAX_GIOCATE) {
+            throw new IllegalStateException("La presa è già completa");
+        }
+        if (CardMask.contiene(carteGiocate, card)) {
+            throw new IllegalStateException("Carta già giocata nel round: " + card);
+        }
+        int i = numeroGiocate++;
+        storiaCarte[giocateRound] = (byte) card.getId();
+        storiaPosti[giocateRound++] = (byte) posto;
+        presaDellaCarta[card.getId()] = (byte) preseChiuse;
+        carteGiocate |= CardMask.bit(card);
+        giocatori[i] = player;
+        posti[i] = posto;
+        carte[i] = card.getId();
+        puntiPresa += scoring.getCardPoints(card.getId());
+        if (i == 0) {
             semeDominante = card.getSeme();
+            indiceVincente = 0;
+        } else if (card.getSeme() == semeDominante
+                && card.getRankValue() > Card.rankDi(carte[indiceVincente])) {
+            indiceVincente = i;
         }
-        giocate.add(new Giocata(player, card));
     }
 
     /**
@@ -34,12 +102,76 @@ public class RoundManager {
         return semeDominante;
     }
 
+    /**
+     * Restituisce il numero di giocate effettuate nella presa.
+     * @return Numero di giocate.
+     */
+    public int getNumeroGiocate() {
+        return numeroGiocate;
+    }
+
+    /**
+     * Restituisce la carta della giocata i-esima.
+     * @param i Indice della giocata, in ordine di gioco.
+     * @return Carta giocata.
+     */
+    public Card getCarta(int i) {
+        return Card.fromId(carte[controllaIndice(i)]);
+    }
+
+    /**
+     * Restituisce il posto al tavolo del giocatore della giocata i-esima.
+     * @param i Indice della giocata, in ordine di gioco.
+     * @return Posto al tavolo.
+     */
+    public int getPosto(int i) {
+        return posti[controllaIndice(i)];
+    }
+
+    /**
+     * Restituisce una vista in sola lettura delle carte sul tavolo, senza copie.
+     * La vista riflette la presa corrente e cambia con essa.
+     * @return Lista non modificabile delle carte giocate.
+     */
+    public List<Card> getCarteSulTavolo() {
+        return carteSulTavolo;
+    }
+
     /**
      * Restituisce la lista delle giocate effettuate nella presa.
+     * Crea una copia: nei percorsi critici usare {@link #getNumeroGiocate()} e {@link #getCarteSulTavolo()}.
      * @return Lista di giocate.
      */
     public List<Giocata> getGiocate() {
-        return new ArrayList<>(giocate);
+        List<Giocata> copia = new ArrayList<>(numeroGiocate);
+        for (int i = 0; i < numeroGiocate; i++) {
+            copia.add(new Giocata(giocatori[i], Card.fromId(carte[i])));
+        }
+        return copia;
+    }
+
+    /**
+     * Restituisce il giocatore che al momento si aggiudica la presa.
+     * @return Giocatore vincente, oppure null se non ci sono giocate.
+     */
+    public Player getVincitoreCorrente() {
+        return indiceVincente < 0 ? null : giocatori[indiceVincente];
+    }
+
+    /**
+     * Restituisce il posto al tavolo del giocatore che al momento si aggiudica la presa.
+     * @return Posto vincente, oppure -1 se non ci sono giocate.
+     */
+    public int getPostoVincente() {
+        return indiceVincente < 0 ? -1 : posti[indiceVincente];
+    }
+
+    /**
+     * Restituisce i punti accumulati dalla presa corrente.
+     * @return Punti della presa.
+     */
+    public int getPuntiPresa() {
+        return puntiPresa;
     }
 
     /**
@@ -47,10 +179,7 @@ public class RoundManager {
      * @return Giocatore vincitore, se presente.
      */
     public Optional<Player> determinaVincitore() {
-        return giocate.stream()
-                .filter(p -> p.carta().getSeme() == semeDominante)
-                .max((p1, p2) -> Integer.compare(p1.carta().getRankValue(), p2.carta().getRankValue()))
-                .map(Giocata::giocatore);
+        return Optional.ofNullable(getVincitoreCorrente());
     }
 
     /**
@@ -59,19 +188,184 @@ public class RoundManager {
      * @return Punti totali della presa.
      */
     public int calcolaPuntiPresa(ScoringStrategy scoring) {
-        return giocate.stream()
-                .mapToInt(p -> scoring.getCardPoints(p.carta()))
-                .sum();
+        if (scoring == this.scoring) {
+            return puntiPresa;
+        }
+        int punti = 0;
+        for (int i = 0; i < numeroGiocate; i++) {
+            punti += scoring.getCardPoints(carte[i]);
+        }
+        return punti;
+    }
+
+    /**
+     * Registra nella storia del round la presa corrente, che deve essere completa.
+     * Va chiamato alla chiusura della presa, prima di {@link #reset()}.
+     * @throws IllegalStateException se non ci sono giocate o la storia del round è piena.
+     */
+    public void archiviaPresa() {
+        if (numeroGiocate == 0 || preseChiuse == MAX_PRESE_ROUND) {
+            throw new IllegalStateException("Nessuna presa da archiviare");
+        }
+        int posto = posti[indiceVincente];
+        vincitorePresa[preseChiuse] = (byte) posto;
+        puntiPresaChiusa[preseChiuse] = (byte) puntiPresa;
+        puntiCatturati[posto] += puntiPresa;
+        inizioPresa[++preseChiuse] = (byte) giocateRound;
+    }
+
+    /**
+     * Svuota la presa corrente e la storia del round, all'inizio di un nuovo round.
+     */
+    public void nuovoRound() {
+        reset();
+        Arrays.fill(presaDellaCarta, (byte) -1);
+        Arrays.fill(puntiCatturati, 0);
+        carteGiocate = CardMask.VUOTA;
+        giocateRound = 0;
+        preseChiuse = 0;
+        inizioPresa[0] = 0;
+    }
+
+    /**
+     * Indica se una carta è già stata giocata nel round, compresa la presa in corso.
+     * @param carta Carta da verificare.
+     * @return true se la carta è uscita.
+     */
+    public boolean isGiocata(Card carta) {
+        return CardMask.contiene(carteGiocate, carta);
+    }
+
+    /**
+     * Restituisce le carte giocate nel round, compresa la presa in corso.
+     * @return Maschera delle carte uscite.
+     */
+    public long getCarteGiocate() {
+        return carteGiocate;
+    }
+
+    /**
+     * Restituisce la presa in cui è stata giocata una carta.
+     * @param carta Carta da cercare.
+     * @return Indice della presa (uguale a {@link #getPreseChiuse()} per la presa in corso), oppure -1.
+     */
+    public int getPresaDellaCarta(Card carta) {
+        return presaDellaCarta[carta.getId()];
+    }
+
+    /**
+     * Restituisce il numero di prese chiuse nel round.
+     * @return Prese archiviate.
+     */
+    public int getPreseChiuse() {
+        return preseChiuse;
+    }
+
+    /**
+     * Restituisce il posto che ha vinto una presa chiusa.
+     * @param k Indice della presa nel round.
+     * @return Posto vincente.
+     */
+    public int getVincitorePresa(int k) {
+        return vincitorePresa[controllaPresa(k)];
+    }
+
+    /**
+     * Restituisce il posto che ha aperto una presa chiusa.
+     * @param k Indice della presa nel round.
+     * @return Posto di mano.
+     */
+    public int getPrimoDiManoPresa(int k) {
+        return storiaPosti[inizioPresa[controllaPresa(k)]];
+    }
+
+    /**
+     * Restituisce i punti di una presa chiusa.
+     * @param k Indice della presa nel round.
+     * @return Punti della presa in terzi di punto.
+     */
+    public int getPuntiPresa(int k) {
+        return puntiPresaChiusa[controllaPresa(k)];
+    }
+
+    /**
+     * Restituisce una carta di una presa chiusa.
+     * @param k Indice della presa nel round.
+     * @param i Indice della giocata nella presa, in ordine di gioco.
+     * @return Carta giocata.
+     */
+    public Card getCartaPresa(int k, int i) {
+        return Card.fromId(storiaCarte[indiceStorico(k, i)]);
+    }
+
+    /**
+     * Restituisce il posto di una giocata di una presa chiusa.
+     * @param k Indice della presa nel round.
+     * @param i Indice della giocata nella presa, in ordine di gioco.
+     * @return Posto al tavolo.
+     */
+    public int getPostoPresa(int k, int i) {
+        return storiaPosti[indiceStorico(k, i)];
+    }
+
+    /**
+     * Restituisce i punti catturati nel round da un posto con le prese chiuse.
+     * @param posto Posto al tavolo.
+     * @return Punti in terzi di punto.
+     */
+    public int getPuntiCatturati(int posto) {
+        return puntiCatturati[posto];
+    }
+
+    private int controllaPresa(int k) {
+        if (k < 0 || k >= preseChiuse) {
+            throw new IndexOutOfBoundsException("Presa inesistente: " + k);
+        }
+        return k;
+    }
+
+    private int indiceStorico(int k, int i) {
+        int inizio = inizioPresa[controllaPresa(k)];
+        if (i < 0 || inizio + i >= inizioPresa[k + 1]) {
+            throw new IndexOutOfBoundsException("Giocata inesistente: " + i);
+        }
+        return inizio + i;
     }
 
     /**
      * Reimposta lo stato della presa per iniziare una nuova.
+     * La storia del round viene conservata.
      */
     public void reset() {
-        giocate.clear();
+        numeroGiocate = 0;
+        indiceVincente = -1;
+        puntiPresa = 0;
         semeDominante = null;
     }
 
+    private int controllaIndice(int i) {
+        if (i < 0 || i >= numeroGiocate) {
+            throw new IndexOutOfBoundsException("Giocata inesistente: " + i);
+        }
+        return i;
+    }
+
+    /**
+     * Vista non modificabile sulle carte della presa corrente.
+     */
+    private final class VistaCarte extends AbstractList<Card> {
+
+        @Override
+        public Card get(int index) {
+            return getCarta(index);
+        }
+
+        @Override
+        public int size() {
+            return numeroGiocate;
+        }
+    }
+
     /**
      * Record che rappresenta una giocata composta da un giocatore e una carta.
      * @param giocatore Giocatore che ha effettuato la giocata.
@@ -0,0 +1,145 @@
+package model;
+
+/**
+ * Registro dei punteggi indicizzato per posto al tavolo.
+ * Le "parti" sono i giocatori in 1vs1 e le squadre in 2vs2; una tabella precalcolata
+ * associa ogni posto alla sua parte, così l'assegnazione di una presa è un accesso ad array.
+ * I punti di round sono in terzi di punto (come restituiti dalla strategia di punteggio),
+ * i punteggi di partita sono punti ufficiali.
+ */
+public class ScoreLedger {
+
+    private final int[] parteDelPosto;
+    private final int[] puntiRound;
+    private final int[] punteggi;
+    private int ultimoPostoVincente = -1;
+
+    /**
+     * Crea un registro vuoto.
+     * @param parteDelPosto Parte di appartenenza di ciascun posto al tavolo.
+     * @param numeroParti Numero di parti in gioco.
+     */
+    public ScoreLedger(int[] parteDelPosto, int numeroParti) {
+        for (int parte : parteDelPosto) {
+            if (parte < 0 || parte >= numeroParti) {
+                throw new IllegalArgumentException("Parte non valida: " + parte);
+            }
+        }
+        this.parteDelPosto = parteDelPosto.clone();
+        this.puntiRound = new int[numeroParti];
+        this.punteggi = new int[numeroParti];
+    }
+
+    /**
+     * Assegna i punti di una presa alla parte del posto vincente.
+     * @param postoVincente Posto al tavolo del vincitore della presa.
+     * @param punti Punti della presa.
+     */
+    public void registraPresa(int postoVincente, int punti) {
+        puntiRound[parteDelPosto[postoVincente]] += punti;
+        ultimoPostoVincente = postoVincente;
+    }
+
+    /**
+     * Converte i punti del round in punti ufficiali, aggiunge il punto dell'ultima presa
+     * e azzera i punti del round.
+     */
+    public void chiudiRound() {
+        int parteUltimaPresa = ultimoPostoVincente < 0 ? -1 : parteDelPosto[ultimoPostoVincente];
+        for (int parte = 0; parte < punteggi.length; parte++) {
+            int puntiUfficiali = puntiRound[parte] / 3;
+            if (parte == parteUltimaPresa) puntiUfficiali += 1;
+            punteggi[parte] += puntiUfficiali;
+            puntiRound[parte] = 0;
+        }
+        ultimoPostoVincente = -1;
+    }
+
+    /**
+     * Ripristina il registro da uno stato salvato.
+     * @param punteggi Punteggi ufficiali di partita per parte.
+     * @param puntiRound Punti del round in corso per parte, in terzi di punto.
+     * @param ultimoPostoVincente Posto vincitore dell'ultima presa del round, oppure -1.
+     */
+    public void ripristina(int[] punteggi, int[] puntiRound, int ultimoPostoVincente) {
+        if (punteggi.length != this.punteggi.length || puntiRound.length != this.puntiRound.length) {
+            throw new IllegalArgumentException("Numero di parti non valido");
+        }
+        System.arraycopy(punteggi, 0, this.punteggi, 0, punteggi.length);
+        System.arraycopy(puntiRound, 0, this.puntiRound, 0, puntiRound.length);
+        this.ultimoPostoVincente = ultimoPostoVincente;
+    }
+
+    /**
+     * Verifica se almeno una parte ha raggiunto la soglia indicata.
+     * @param soglia Punteggio da raggiungere.
+     * @return True se la soglia è stata raggiunta.
+     */
+    public boolean haRaggiuntoSoglia(int soglia) {
+        for (int p : punteggi) {
+            if (p >= soglia) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce la parte con il punteggio massimo.
+     * @return Indice della parte in testa, oppure -1 in caso di pareggio sul massimo.
+     */
+    public int getParteInTesta() {
+        int migliore = -1;
+        boolean pareggio = false;
+        for (int parte = 0; parte < punteggi.length; parte++) {
+            if (migliore < 0 || punteggi[parte] > punteggi[migliore]) {
+                migliore = parte;
+                pareggio = false;
+            } else if (punteggi[parte] == punteggi[migliore]) {
+                pareggio = true;
+            }
+        }
+        return pareggio ? -1 : migliore;
+    }
+
+    /**
+     * Restituisce la parte di appartenenza di un posto al tavolo.
+     * @param posto Posto al tavolo.
+     * @return Indice della parte.
+     */
+    public int getParteDelPosto(int posto) {
+        return parteDelPosto[posto];
+    }
+
+    /**
+     * Restituisce il numero di parti in gioco.
+     * @return Numero di parti.
+     */
+    public int getNumeroParti() {
+        return punteggi.length;
+    }
+
+    /**
+     * Restituisce il punteggio ufficiale di partita di una parte.
+     * @param parte Indice della parte.
+     * @return Punteggio ufficiale.
+     */
+    public int getPunteggio(int parte) {
+        return punteggi[parte];
+    }
+
+    /**
+     * Restituisce i punti accumulati nel round corrente da una parte.
+     * @param parte Indice della parte.
+     * @return Punti del round in terzi di punto.
+     */
+    public int getPuntiRound(int parte) {
+        return puntiRound[parte];
+    }
+
+    /**
+     * Restituisce il posto che ha vinto l'ultima presa del round corrente.
+     * @return Posto vincente, oppure -1 se nel round non è stata chiusa nessuna presa.
+     */
+    public int getUltimoPostoVincente() {
+        return ultimoPostoVincente;
+    }
+}
@@ -6,4 +6,14 @@ package model;
  */
 public interface ScoringStrategy {
     int getCardPoints(Card card);
+
+    /**
+     * Restituisce i punti della carta con l'identificativo indicato.
+     * Le implementazioni possono sostituirlo con una tabella precalcolata.
+     * @param cardId Identificativo della carta nell'intervallo 0..39.
+     * @return Punti della carta.
+     */
+    default int getCardPoints(int cardId) {
+        return getCardPoints(Card.fromId(cardId));
+    }
 }
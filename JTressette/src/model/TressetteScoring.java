@@ -7,12 +7,25 @@ package model;
  */
 public class TressetteScoring implements ScoringStrategy {
 
+    private static final int[] PUNTI = new int[Card.NUMERO_CARTE];
+
+    static {
+        for (Card carta : Card.tutte()) {
+            PUNTI[carta.getId()] = switch (carta.getValore()) {
+                case ASSO -> 3;
+                case RE, CAVALLO, FANTE, DUE, TRE -> 1;
+                default -> 0;
+            };
+        }
+    }
+
     @Override
     public int getCardPoints(Card card) {
-        return switch (card.getValore()) {
-            case ASSO -> 3;
-            case RE, CAVALLO, FANTE, DUE, TRE -> 1;
-            default -> 0;
-        };
+        return PUNTI[card.getId()];
+    }
+
+    @Override
+    public int getCardPoints(int cardId) {
+        return PUNTI[cardId];
     }
 }
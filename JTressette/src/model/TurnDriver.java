@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Sorgente automatica delle giocate, interrogata dal MatchManager a ogni inizio turno.
+ * Permette di giocare in sequenza i turni consecutivi dei bot dentro il ciclo iterativo dei turni,
+ * senza passare dagli osservatori e senza accumulare chiamate annidate.
+ */
+@FunctionalInterface
+public interface TurnDriver {
+
+    /**
+     * Sceglie la carta da giocare per il giocatore di turno.
+     * @param player Giocatore di turno.
+     * @param presa Presa corrente, in sola lettura.
+     * @return Carta da giocare, oppure null se la giocata arriverà dall'esterno (ad esempio dall'interfaccia).
+     */
+    Card scegliCarta(Player player, RoundManager presa);
+}
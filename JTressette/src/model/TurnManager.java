@@ -37,6 +37,14 @@ public class TurnManager {
         return players.get(currentIndex);
     }
 
+    /**
+     * Restituisce il posto al tavolo del giocatore di turno.
+     * @return Indice del giocatore corrente nella lista dei giocatori.
+     */
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
     /**
      * Avanza al giocatore successivo in ordine ciclico.
      */
@@ -0,0 +1,47 @@
+package model;
+
+import java.util.function.Consumer;
+
+/**
+ * Ciclo dei turni a trampolino.
+ * Un inizio turno richiesto mentre il ciclo è già in esecuzione (ad esempio da un osservatore
+ * che gioca subito la carta di un bot) viene solo annotato e servito dal ciclo più esterno,
+ * quindi la profondità dello stack resta costante per tutta la durata di un round.
+ */
+final class TurnScheduler {
+
+    private final Consumer<Player> avvioTurno;
+    private Player turnoInAttesa;
+    private boolean inEsecuzione;
+
+    /**
+     * Crea il ciclo dei turni.
+     * @param avvioTurno Azione eseguita per ogni turno, nell'ordine in cui i turni vengono pianificati.
+     */
+    TurnScheduler(Consumer<Player> avvioTurno) {
+        this.avvioTurno = avvioTurno;
+    }
+
+    /**
+     * Pianifica l'inizio del turno di un giocatore e, se il ciclo non è già attivo, lo esegue
+     * finché restano turni in attesa.
+     * @param player Giocatore di turno.
+     */
+    void pianifica(Player player) {
+        turnoInAttesa = player;
+        if (inEsecuzione) {
+            return;
+        }
+        inEsecuzione = true;
+        try {
+            while (turnoInAttesa != null) {
+                Player corrente = turnoInAttesa;
+                turnoInAttesa = null;
+                avvioTurno.accept(corrente);
+            }
+        } finally {
+            turnoInAttesa = null;
+            inEsecuzione = false;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package model.ai;
+
+import model.Card;
+import model.CardMask;
+import model.CardTracker;
+import model.Player;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Campionatore delle carte nascoste dal punto di vista di un giocatore.
+ * I vincoli vengono dalla {@link CardTracker} della partita: carte uscite, carte pescate rivelate in 1vs1,
+ * numero di carte in mano a ciascun posto e semi mancanti di chi non ha risposto al seme dominante.
+ * {@link #prepara()} fotografa i vincoli e conta per programmazione dinamica sui semi le distribuzioni
+ * compatibili; la fotografia estrae poi distribuzioni uniformi senza rifiuti e senza allocare.
+ */
+public final class DealSampler {
+
+    private static final int MAX_AVVERSARI = 3;
+    private static final int RADICE = 11;
+    private static final int SEMI = 4;
+    private static final int MAX_COMPOSIZIONI = 286;
+
+    private final CardTracker conoscenza;
+    private final Player osservatore;
+
+    /**
+     * Crea un campionatore dal punto di vista del giocatore indicato.
+     * @param conoscenza Memoria della partita, già collegata.
+     * @param osservatore Giocatore di cui si conosce la mano.
+     */
+    public DealSampler(CardTracker conoscenza, Player osservatore) {
+        if (conoscenza.getPosto(osservatore) < 0) {
+            throw new IllegalArgumentException(osservatore.getNome() + " non partecipa alla partita");
+        }
+        this.conoscenza = conoscenza;
+        this.osservatore = osservatore;
+    }
+
+    /**
+     * Fotografa i vincoli correnti e prepara il campionamento.
+     * @return Distribuzioni compatibili con i vincoli, pronte per il campionamento.
+     * @throws IllegalStateException se nessuna distribuzione è compatibile con i vincoli osservati.
+     */
+    public Distribuzioni prepara() {
+        Distribuzioni d = new Distribuzioni(this);
+        if (d.getNumeroDistribuzioni() == 0) {
+            throw new IllegalStateException("Nessuna distribuzione compatibile con i vincoli osservati");
+        }
+        return d;
+    }
+
+    /**
+     * Fotografia immutabile dei vincoli con i conteggi della programmazione dinamica.
+     * Dopo la costruzione è in sola lettura e può essere usata da più thread, ciascuno con il proprio generatore.
+     */
+    public static final class Distribuzioni {
+
+        private static final long[] FATTORIALI = new long[Card.NUMERO_CARTE / SEMI + 1];
+
+        static {
+            FATTORIALI[0] = 1;
+            for (int i = 1; i < FATTORIALI.length; i++) {
+                FATTORIALI[i] = FATTORIALI[i - 1] * i;
+            }
+        }
+
+        private final int numeroGiocatori;
+        private final int mioPosto;
+        private final long miaMano;
+        private final long[] noteInMano;
+        private final int[] avversari = new int[MAX_AVVERSARI];
+        private final int[] capacitaIniziali = new int[MAX_AVVERSARI];
+        private final boolean[][] ammesso = new boolean[SEMI][MAX_AVVERSARI];
+        private final int[][] carteDelSeme = new int[SEMI][];
+        private final int[] rimanentiDalSeme = new int[SEMI + 1];
+        private final long[][] conteggi = new long[SEMI][RADICE * RADICE * RADICE];
+        private final long[][][] cumulate = new long[SEMI][RADICE * RADICE * RADICE][];
+        private final short[][][] composizioni = new short[SEMI][RADICE * RADICE * RADICE][];
+        private final long[][] pesiTemporanei = new long[SEMI][MAX_COMPOSIZIONI];
+        private final short[][] composizioniTemporanee = new short[SEMI][MAX_COMPOSIZIONI];
+        private final long totale;
+
+        private Distribuzioni(DealSampler s) {
+            CardTracker conoscenza = s.conoscenza;
+            this.numeroGiocatori = conoscenza.getNumeroGiocatori();
+            this.mioPosto = conoscenza.getPosto(s.osservatore);
+            this.miaMano = s.osservatore.getManoMask();
+            this.noteInMano = new long[numeroGiocatori];
+            for (int posto = 0; posto < numeroGiocatori; posto++) {
+                noteInMano[posto] = conoscenza.getNoteInMano(posto);
+            }
+            long sconosciute = conoscenza.getCarteSconosciute(s.osservatore);
+
+            int k = 0;
+            int daDistribuire = 0;
+            for (int posto = 0; posto < numeroGiocatori; posto++) {
+                if (posto == mioPosto) continue;
+                avversari[k] = posto;
+                capacitaIniziali[k] = conoscenza.getCarteInMano(posto) - CardMask.conta(noteInMano[posto]);
+                for (int seme = 0; seme < SEMI; seme++) {
+                    ammesso[seme][k] = !conoscenza.haSemeMancante(posto, seme);
+                }
+                daDistribuire += capacitaIniziali[k];
+                k++;
+            }
+            for (int seme = SEMI - 1; seme >= 0; seme--) {
+                long delSeme = sconosciute & CardMask.perSeme(seme);
+                int[] carte = new int[CardMask.conta(delSeme)];
+                int i = 0;
+                for (long m = delSeme; m != 0; m &= m - 1) {
+                    carte[i++] = Long.numberOfTrailingZeros(m);
+                }
+                carteDelSeme[seme] = carte;
+                rimanentiDalSeme[seme] = rimanentiDalSeme[seme + 1] + carte.length;
+            }
+            for (long[] c : conteggi) {
+                Arrays.fill(c, -1L);
+            }
+            boolean coerente = daDistribuire + conoscenza.getCarteNelMazzo() == rimanentiDalSeme[0];
+            this.totale = coerente ? conta(0, capacitaIniziali[0], capacitaIniziali[1], capacitaIniziali[2]) : 0;
+        }
+
+        /**
+         * Restituisce il numero di distribuzioni compatibili con i vincoli.
+         * @return Numero di distribuzioni.
+         */
+        public long getNumeroDistribuzioni() {
+            return totale;
+        }
+
+        /**
+         * Numero di modi di distribuire i semi da {@code seme} in poi, con le capacità residue indicate;
+         * il mazzo riceve le carte rimanenti. Memorizza anche, per lo stato, le ripartizioni del seme
+         * con i pesi cumulati, così che il campionamento non debba ricalcolarle.
+         */
+        private long conta(int seme, int c0, int c1, int c2) {
+            if (seme == SEMI) {
+                return (c0 | c1 | c2) == 0 ? 1 : 0;
+            }
+            int chiave = c0 + RADICE * (c1 + RADICE * c2);
+            long memo = conteggi[seme][chiave];
+            if (memo >= 0) {
+                return memo;
+            }
+            int n = carteDelSeme[seme].length;
+            int mazzo = rimanentiDalSeme[seme] - c0 - c1 - c2;
+            long somma = 0;
+            int numero = 0;
+            long[] pesi = pesiTemporanei[seme];
+            short[] scelte = composizioniTemporanee[seme];
+            if (mazzo >= 0) {
+                int max0 = ammesso[seme][0] ? Math.min(c0, n) : 0;
+                for (int a0 = 0; a0 <= max0; a0++) {
+                    int max1 = ammesso[seme][1] ? Math.min(c1, n - a0) : 0;
+                    for (int a1 = 0; a1 <= max1; a1++) {
+                        int max2 = ammesso[seme][2] ? Math.min(c2, n - a0 - a1) : 0;
+                        for (int a2 = 0; a2 <= max2; a2++) {
+                            int d = n - a0 - a1 - a2;
+                            if (d > mazzo) continue;
+                            long resto = conta(seme + 1, c0 - a0, c1 - a1, c2 - a2);
+                            if (resto != 0) {
+                                somma += multinomiale(n, a0, a1, a2, d) * resto;
+                                pesi[numero] = somma;
+                                scelte[numero++] = (short) (a0 | a1 << 4 | a2 << 8);
+                            }
+                        }
+                    }
+                }
+            }
+            conteggi[seme][chiave] = somma;
+            cumulate[seme][chiave] = Arrays.copyOf(pesi, numero);
+            composizioni[seme][chiave] = Arrays.copyOf(scelte, numero);
+            return somma;
+        }
+
+        private static long multinomiale(int n, int a0, int a1, int a2, int d) {
+            return FATTORIALI[n] / (FATTORIALI[a0] * FATTORIALI[a1] * FATTORIALI[a2] * FATTORIALI[d]);
+        }
+
+        /**
+         * Estrae una distribuzione uniforme tra quelle compatibili con i vincoli.
+         * @param rnd Generatore del thread chiamante.
+         * @param mani Buffer di almeno 4 elementi: riceve la mano completa di ogni posto, compresa quella dell'osservatore.
+         * @param mazzo Buffer di almeno 40 elementi: riceve il mazzo rimanente in ordine casuale di pescata.
+         * @return Numero di carte scritte nel mazzo.
+         */
+        public int campiona(RandomGenerator rnd, long[] mani, int[] mazzo) {
+            int c0 = capacitaIniziali[0];
+            int c1 = capacitaIniziali[1];
+            int c2 = capacitaIniziali[2];
+            long m0 = 0;
+            long m1 = 0;
+            long m2 = 0;
+            int carteMazzo = 0;
+            for (int seme = 0; seme < SEMI; seme++) {
+                int n = carteDelSeme[seme].length;
+                if (n == 0) continue;
+                int chiave = c0 + RADICE * (c1 + RADICE * c2);
+                long[] pesi = cumulate[seme][chiave];
+                long soglia = rnd.nextLong(pesi[pesi.length - 1]);
+                int basso = 0;
+                int alto = pesi.length - 1;
+                while (basso < alto) {
+                    int medio = (basso + alto) >>> 1;
+                    if (pesi[medio] > soglia) {
+                        alto = medio;
+                    } else {
+                        basso = medio + 1;
+                    }
+                }
+                int scelta = composizioni[seme][chiave][basso];
+                int a0 = scelta & 15;
+                int a1 = scelta >> 4 & 15;
+                int a2 = scelta >> 8 & 15;
+                c0 -= a0;
+                c1 -= a1;
+                c2 -= a2;
+                int d = n - a0 - a1 - a2;
+                for (int carta : carteDelSeme[seme]) {
+                    int r = rnd.nextInt(a0 + a1 + a2 + d);
+                    if (r < a0) {
+                        m0 |= 1L << carta;
+                        a0--;
+                    } else if ((r -= a0) < a1) {
+                        m1 |= 1L << carta;
+                        a1--;
+                    } else if (r - a1 < a2) {
+                        m2 |= 1L << carta;
+                        a2--;
+                    } else {
+                        mazzo[carteMazzo++] = carta;
+                        d--;
+                    }
+                }
+            }
+            for (int i = carteMazzo - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                int tmp = mazzo[i];
+                mazzo[i] = mazzo[j];
+                mazzo[j] = tmp;
+            }
+            mani[mioPosto] = miaMano;
+            for (int k = 0; k < numeroGiocatori - 1; k++) {
+                mani[avversari[k]] = noteInMano[avversari[k]] | (k == 0 ? m0 : k == 1 ? m1 : m2);
+            }
+            return carteMazzo;
+        }
+    }
+}
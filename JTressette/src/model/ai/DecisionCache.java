@@ -0,0 +1,139 @@
+package model.ai;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache concorrente e limitata delle decisioni già calcolate, con sostituzione CLOCK.
+ * Le chiavi sono posizioni in forma canonica (vedi {@link SuitCanonicalizer}), così una decisione
+ * viene riutilizzata anche per le posizioni che differiscono solo per i semi, tra mosse, round e partite.
+ * Le letture non prendono lock e segnano la voce come usata di recente; gli inserimenti sono serializzati
+ * e, a cache piena, la lancetta scorre le voci azzerando i bit di riferimento fino a trovarne una da sostituire.
+ * @param <K> Tipo della chiave, con equals e hashCode basati sul valore.
+ */
+public final class DecisionCache<K> {
+
+    /**
+     * Valore restituito da {@link #cerca(Object)} quando la chiave non è presente.
+     */
+    public static final int ASSENTE = Integer.MIN_VALUE;
+
+    private static final class Voce<K> {
+        final K chiave;
+        final int valore;
+        volatile boolean riferita;
+
+        Voce(K chiave, int valore) {
+            this.chiave = chiave;
+            this.valore = valore;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Voce<K>> indice;
+    private final Voce<K>[] anello;
+    private int lancetta;
+    private int occupate;
+
+    private final LongAdder successi = new LongAdder();
+    private final LongAdder mancati = new LongAdder();
+    private final LongAdder sostituzioni = new LongAdder();
+
+    /**
+     * Crea una cache vuota.
+     * @param capacita Numero massimo di decisioni memorizzate.
+     */
+    @SuppressWarnings("unchecked")
+    public DecisionCache(int capacita) {
+        if (capacita <= 0) {
+            throw new IllegalArgumentException("Capacità non valida: " + capacita);
+        }
+        this.indice = new ConcurrentHashMap<>(capacita * 4 / 3 + 1);
+        this.anello = (Voce<K>[]) new Voce<?>[capacita];
+    }
+
+    /**
+     * Cerca la decisione associata a una chiave.
+     * @param chiave Posizione in forma canonica.
+     * @return Valore memorizzato, oppure {@link #ASSENTE}.
+     */
+    public int cerca(K chiave) {
+        Voce<K> voce = indice.get(chiave);
+        if (voce == null) {
+            mancati.increment();
+            return ASSENTE;
+        }
+        voce.riferita = true;
+        successi.increment();
+        return voce.valore;
+    }
+
+    /**
+     * Memorizza la decisione associata a una chiave, sostituendo se necessario una voce non usata di recente.
+     * @param chiave Posizione in forma canonica.
+     * @param valore Decisione da memorizzare, diversa da {@link #ASSENTE}.
+     */
+    public synchronized void memorizza(K chiave, int valore) {
+        if (valore == ASSENTE) {
+            throw new IllegalArgumentException("Valore riservato");
+        }
+        if (indice.containsKey(chiave)) {
+            return;
+        }
+        if (occupate == anello.length) {
+            while (anello[lancetta].riferita) {
+                anello[lancetta].riferita = false;
+                lancetta = (lancetta + 1) % anello.length;
+            }
+            indice.remove(anello[lancetta].chiave);
+            sostituzioni.increment();
+        } else {
+            occupate++;
+        }
+        Voce<K> voce = new Voce<>(chiave, valore);
+        anello[lancetta] = voce;
+        indice.put(chiave, voce);
+        lancetta = (lancetta + 1) % anello.length;
+    }
+
+    /**
+     * Restituisce il numero di decisioni memorizzate.
+     * @return Voci presenti.
+     */
+    public int size() {
+        return indice.size();
+    }
+
+    /**
+     * Restituisce il numero di ricerche andate a buon fine.
+     * @return Successi.
+     */
+    public long getSuccessi() {
+        return successi.sum();
+    }
+
+    /**
+     * Restituisce il numero di ricerche senza risultato.
+     * @return Mancati.
+     */
+    public long getMancati() {
+        return mancati.sum();
+    }
+
+    /**
+     * Restituisce il numero di voci sostituite per fare spazio.
+     * @return Sostituzioni.
+     */
+    public long getSostituzioni() {
+        return sostituzioni.sum();
+    }
+
+    /**
+     * Restituisce la frazione di ricerche andate a buon fine.
+     * @return Tasso di successo tra 0 e 1, oppure 0 se non ci sono state ricerche.
+     */
+    public double getTassoDiSuccesso() {
+        long s = successi.sum();
+        long totale = s + mancati.sum();
+        return totale == 0 ? 0.0 : (double) s / totale;
+    }
+}
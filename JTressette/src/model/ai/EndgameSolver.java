@@ -0,0 +1,315 @@
+package model.ai;
+
+import model.Card;
+import model.CardMask;
+import model.ScoringStrategy;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Risolutore esatto del finale 1vs1 a mazzo esaurito, quando ciascun giocatore conosce la mano dell'altro.
+ * Alpha-beta in forma negamax con ordinamento delle mosse, chiavi di Zobrist e tabella delle trasposizioni
+ * a dimensione fissa (sostituzione sempre). I valori sono in terzi di punto, punto dell'ultima presa compreso,
+ * e sono relativi alle sole prese ancora da giocare: per questo restano validi tra una mossa e l'altra
+ * e la tabella può essere riutilizzata per tutta la vita del risolutore.
+ * Con una {@link DecisionCache} condivisa, le mosse migliori vengono calcolate sulla posizione in forma canonica
+ * rispetto ai semi e riutilizzate da tutti i risolutori che usano la stessa cache e la stessa strategia di punteggio.
+ * Non è thread-safe: ogni thread deve usare una propria istanza; la cache invece può essere condivisa.
+ */
+public final class EndgameSolver {
+
+    private static final byte ESATTO = 1;
+    private static final byte LIMITE_INFERIORE = 2;
+    private static final byte LIMITE_SUPERIORE = 3;
+    private static final int PUNTI_ULTIMA_PRESA = 3;
+    private static final int INFINITO = 1_000;
+
+    private static final long[][] ZOBRIST_MANO = new long[2][Card.NUMERO_CARTE];
+    private static final long[] ZOBRIST_TAVOLO = new long[Card.NUMERO_CARTE];
+    private static final long ZOBRIST_TURNO;
+
+    static {
+        SplittableRandom rnd = new SplittableRandom(0x7E55E77EL);
+        for (int c = 0; c < Card.NUMERO_CARTE; c++) {
+            ZOBRIST_MANO[0][c] = rnd.nextLong();
+            ZOBRIST_MANO[1][c] = rnd.nextLong();
+            ZOBRIST_TAVOLO[c] = rnd.nextLong();
+        }
+        ZOBRIST_TURNO = rnd.nextLong();
+    }
+
+    /**
+     * Posizione di finale in forma canonica, chiave della cache delle decisioni.
+     * @param manoDiTurno Mano di chi muove.
+     * @param manoAvversario Mano dell'avversario.
+     * @param cartaSulTavolo Carta già giocata nella presa, oppure -1.
+     */
+    public record Posizione(long manoDiTurno, long manoAvversario, int cartaSulTavolo) { }
+
+    private final int[] punti = new int[Card.NUMERO_CARTE];
+    private final DecisionCache<Posizione> cache;
+    private final int mascheraTabella;
+    private final long[] chiavi;
+    private final short[] valori;
+    private final byte[] tipi;
+    private final byte[] mosseMigliori;
+
+    private final int[][] mossePerLivello = new int[Card.NUMERO_CARTE + 1][10];
+    private final int[][] ordinePerLivello = new int[Card.NUMERO_CARTE + 1][10];
+    private long nodiVisitati;
+
+    /**
+     * Crea un risolutore con una tabella delle trasposizioni di 2^bitTabella voci.
+     * @param scoring Strategia di punteggio delle carte.
+     * @param bitTabella Logaritmo in base 2 del numero di voci (ogni voce occupa 12 byte).
+     */
+    public EndgameSolver(ScoringStrategy scoring, int bitTabella) {
+        this(scoring, bitTabella, null);
+    }
+
+    /**
+     * Crea un risolutore che consulta e alimenta una cache di decisioni, eventualmente condivisa.
+     * @param scoring Strategia di punteggio delle carte.
+     * @param bitTabella Logaritmo in base 2 del numero di voci (ogni voce occupa 12 byte).
+     * @param cache Cache delle mosse migliori per posizione canonica, oppure null.
+     */
+    public EndgameSolver(ScoringStrategy scoring, int bitTabella, DecisionCache<Posizione> cache) {
+        if (bitTabella < 4 || bitTabella > 28) {
+            throw new IllegalArgumentException("Dimensione della tabella non valida: " + bitTabella);
+        }
+        for (int c = 0; c < Card.NUMERO_CARTE; c++) {
+            punti[c] = scoring.getCardPoints(c);
+        }
+        int dimensione = 1 << bitTabella;
+        this.mascheraTabella = dimensione - 1;
+        this.chiavi = new long[dimensione];
+        this.valori = new short[dimensione];
+        this.tipi = new byte[dimensione];
+        this.mosseMigliori = new byte[dimensione];
+        this.cache = cache;
+    }
+
+    /**
+     * Calcola il valore esatto della posizione per il giocatore di turno.
+     * @param manoDiTurno Mano del giocatore che deve muovere.
+     * @param manoAvversario Mano dell'avversario.
+     * @param cartaSulTavolo Carta giocata dall'avversario in questa presa, oppure -1 se chi muove è di mano.
+     * @return Differenza di punti (in terzi) tra chi muove e l'avversario sulle prese rimanenti.
+     */
+    public int valuta(long manoDiTurno, long manoAvversario, int cartaSulTavolo) {
+        controllaPosizione(manoDiTurno, manoAvversario, cartaSulTavolo);
+        return cerca(manoDiTurno, manoAvversario, 0, cartaSulTavolo,
+                hash(manoDiTurno, manoAvversario, cartaSulTavolo), -INFINITO, INFINITO);
+    }
+
+    /**
+     * Restituisce una mossa ottima per il giocatore di turno.
+     * @param manoDiTurno Mano del giocatore che deve muovere.
+     * @param manoAvversario Mano dell'avversario.
+     * @param cartaSulTavolo Carta giocata dall'avversario in questa presa, oppure -1 se chi muove è di mano.
+     * @return Identificativo della carta da giocare.
+     */
+    public int migliorMossa(long manoDiTurno, long manoAvversario, int cartaSulTavolo) {
+        controllaPosizione(manoDiTurno, manoAvversario, cartaSulTavolo);
+        if (cache == null) {
+            return cercaMigliorMossa(manoDiTurno, manoAvversario, cartaSulTavolo);
+        }
+        long[] maschere = { manoDiTurno, manoAvversario, cartaSulTavolo < 0 ? 0 : 1L << cartaSulTavolo };
+        int[] permutazione = new int[4];
+        SuitCanonicalizer.canonizza(maschere, maschere.length, permutazione);
+        int tavoloCanonico = cartaSulTavolo < 0 ? -1 : Long.numberOfTrailingZeros(maschere[2]);
+        Posizione chiave = new Posizione(maschere[0], maschere[1], tavoloCanonico);
+        int mossa = cache.cerca(chiave);
+        if (mossa == DecisionCache.ASSENTE) {
+            mossa = cercaMigliorMossa(maschere[0], maschere[1], tavoloCanonico);
+            cache.memorizza(chiave, mossa);
+        }
+        return SuitCanonicalizer.ripristinaCarta(mossa, permutazione);
+    }
+
+    private int cercaMigliorMossa(long manoDiTurno, long manoAvversario, int cartaSulTavolo) {
+        long hash = hash(manoDiTurno, manoAvversario, cartaSulTavolo);
+        int indice = (int) hash & mascheraTabella;
+        int mossaTabella = chiavi[indice] == hash && tipi[indice] != 0 ? mosseMigliori[indice] : -1;
+        int livello = Long.bitCount(manoDiTurno | manoAvversario);
+        int n = ordinaMosse(legali(manoDiTurno, cartaSulTavolo), cartaSulTavolo, mossaTabella, livello);
+        int[] mosse = mossePerLivello[livello];
+        int migliore = mosse[0];
+        int alpha = -INFINITO;
+        for (int i = 0; i < n; i++) {
+            int c = mosse[i];
+            int valore = valutaMossa(manoDiTurno & ~(1L << c), manoAvversario, 0, cartaSulTavolo, c,
+                    hash ^ ZOBRIST_MANO[0][c] ^ ZOBRIST_TURNO, alpha, INFINITO);
+            if (valore > alpha) {
+                alpha = valore;
+                migliore = c;
+            }
+        }
+        return migliore;
+    }
+
+    /**
+     * Calcola il valore esatto di ciascuna mossa legale, ad esempio per analizzare a posteriori
+     * gli errori di un giocatore: la differenza con il valore della mossa migliore è il costo dell'errore.
+     * @param manoDiTurno Mano del giocatore che deve muovere.
+     * @param manoAvversario Mano dell'avversario.
+     * @param cartaSulTavolo Carta giocata dall'avversario in questa presa, oppure -1 se chi muove è di mano.
+     * @return Array indicizzato per carta con il valore per chi muove; le carte non legali valgono Integer.MIN_VALUE.
+     */
+    public int[] valutaMosse(long manoDiTurno, long manoAvversario, int cartaSulTavolo) {
+        controllaPosizione(manoDiTurno, manoAvversario, cartaSulTavolo);
+        int[] risultato = new int[Card.NUMERO_CARTE];
+        Arrays.fill(risultato, Integer.MIN_VALUE);
+        long hash = hash(manoDiTurno, manoAvversario, cartaSulTavolo);
+        for (long m = legali(manoDiTurno, cartaSulTavolo); m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            risultato[c] = valutaMossa(manoDiTurno & ~(1L << c), manoAvversario, 0, cartaSulTavolo, c,
+                    hash ^ ZOBRIST_MANO[0][c] ^ ZOBRIST_TURNO, -INFINITO, INFINITO);
+        }
+        return risultato;
+    }
+
+    /**
+     * Restituisce il numero di posizioni visitate dalla creazione del risolutore.
+     * @return Nodi visitati.
+     */
+    public long getNodiVisitati() {
+        return nodiVisitati;
+    }
+
+    /**
+     * Verifica la posizione: mani disgiunte e coerenti con la presa in corso, al più 10 carte per mano,
+     * quante ne contengono le tabelle delle mosse per livello.
+     */
+    private static void controllaPosizione(long manoDiTurno, long manoAvversario, int cartaSulTavolo) {
+        int attese = CardMask.conta(manoDiTurno) - (cartaSulTavolo >= 0 ? 1 : 0);
+        if ((manoDiTurno & manoAvversario) != 0 || CardMask.conta(manoDiTurno) > 10
+                || CardMask.conta(manoAvversario) != attese
+                || (cartaSulTavolo >= 0 && ((manoDiTurno | manoAvversario) & (1L << cartaSulTavolo)) != 0)) {
+            throw new IllegalArgumentException("Posizione di finale non valida");
+        }
+    }
+
+    private static long legali(long mano, int cartaSulTavolo) {
+        if (cartaSulTavolo < 0) {
+            return mano;
+        }
+        long delSeme = mano & CardMask.perSeme(cartaSulTavolo / 10);
+        return delSeme != 0 ? delSeme : mano;
+    }
+
+    /**
+     * Calcola la chiave di Zobrist: il posto 0 è sempre chi muove alla radice.
+     */
+    private static long hash(long mano0, long mano1, int cartaSulTavolo) {
+        long h = 0;
+        for (long m = mano0; m != 0; m &= m - 1) h ^= ZOBRIST_MANO[0][Long.numberOfTrailingZeros(m)];
+        for (long m = mano1; m != 0; m &= m - 1) h ^= ZOBRIST_MANO[1][Long.numberOfTrailingZeros(m)];
+        if (cartaSulTavolo >= 0) h ^= ZOBRIST_TAVOLO[cartaSulTavolo];
+        return h;
+    }
+
+    /**
+     * Negamax con alpha-beta: valore per il posto {@code turno} delle prese ancora da giocare.
+     */
+    private int cerca(long mano0, long mano1, int turno, int tavolo, long hash, int alpha, int beta) {
+        nodiVisitati++;
+        if (tavolo < 0 && (mano0 | mano1) == 0) {
+            return 0;
+        }
+        int indice = (int) hash & mascheraTabella;
+        int mossaTabella = -1;
+        if (chiavi[indice] == hash && tipi[indice] != 0) {
+            int v = valori[indice];
+            byte tipo = tipi[indice];
+            if (tipo == ESATTO
+                    || (tipo == LIMITE_INFERIORE && v >= beta)
+                    || (tipo == LIMITE_SUPERIORE && v <= alpha)) {
+                return v;
+            }
+            mossaTabella = mosseMigliori[indice];
+        }
+
+        long mano = turno == 0 ? mano0 : mano1;
+        int livello = Long.bitCount(mano0 | mano1);
+        int n = ordinaMosse(legali(mano, tavolo), tavolo, mossaTabella, livello);
+        int[] mosse = mossePerLivello[livello];
+
+        int alphaIniziale = alpha;
+        int migliore = -INFINITO;
+        int mossaMigliore = mosse[0];
+        for (int i = 0; i < n; i++) {
+            int c = mosse[i];
+            long nuovaMano0 = turno == 0 ? mano0 & ~(1L << c) : mano0;
+            long nuovaMano1 = turno == 1 ? mano1 & ~(1L << c) : mano1;
+            int valore = valutaMossa(nuovaMano0, nuovaMano1, turno, tavolo, c,
+                    hash ^ ZOBRIST_MANO[turno][c] ^ ZOBRIST_TURNO, alpha, beta);
+            if (valore > migliore) {
+                migliore = valore;
+                mossaMigliore = c;
+            }
+            if (migliore > alpha) alpha = migliore;
+            if (alpha >= beta) break;
+        }
+
+        chiavi[indice] = hash;
+        valori[indice] = (short) migliore;
+        mosseMigliori[indice] = (byte) mossaMigliore;
+        tipi[indice] = migliore <= alphaIniziale ? LIMITE_SUPERIORE
+                : migliore >= beta ? LIMITE_INFERIORE : ESATTO;
+        return migliore;
+    }
+
+    /**
+     * Valore per il posto {@code turno} dopo aver giocato la carta c; le mani sono già aggiornate
+     * e la chiave ha già il turno passato all'avversario.
+     */
+    private int valutaMossa(long mano0, long mano1, int turno, int tavolo, int c, long hash, int alpha, int beta) {
+        if (tavolo < 0) {
+            return -cerca(mano0, mano1, 1 - turno, c, hash ^ ZOBRIST_TAVOLO[c], -beta, -alpha);
+        }
+        hash ^= ZOBRIST_TAVOLO[tavolo];
+        boolean vinceChiSegue = c / 10 == tavolo / 10 && Card.rankDi(c) > Card.rankDi(tavolo);
+        int puntiPresa = punti[tavolo] + punti[c] + ((mano0 | mano1) == 0 ? PUNTI_ULTIMA_PRESA : 0);
+        if (vinceChiSegue) {
+            return puntiPresa + cerca(mano0, mano1, turno, -1, hash ^ ZOBRIST_TURNO,
+                    alpha - puntiPresa, beta - puntiPresa);
+        }
+        return -(puntiPresa + cerca(mano0, mano1, 1 - turno, -1, hash,
+                -beta - puntiPresa, -alpha - puntiPresa));
+    }
+
+    /**
+     * Riempie le mosse del livello in ordine di promettenza: prima la mossa della tabella,
+     * poi, se si risponde, le prese più economiche e gli scarti più poveri; se si è di mano, le carte più alte.
+     * @return Numero di mosse.
+     */
+    private int ordinaMosse(long legali, int tavolo, int mossaTabella, int livello) {
+        int[] mosse = mossePerLivello[livello];
+        int[] chiave = ordinePerLivello[livello];
+        int n = 0;
+        for (long m = legali; m != 0; m &= m - 1) {
+            int c = Long.numberOfTrailingZeros(m);
+            int k;
+            if (c == mossaTabella) {
+                k = Integer.MAX_VALUE;
+            } else if (tavolo < 0) {
+                k = Card.rankDi(c) + 3 * punti[c];
+            } else if (c / 10 == tavolo / 10 && Card.rankDi(c) > Card.rankDi(tavolo)) {
+                k = 100 - Card.rankDi(c);
+            } else {
+                k = -punti[c] * 16 - Card.rankDi(c);
+            }
+            int i = n++;
+            while (i > 0 && chiave[i - 1] < k) {
+                chiave[i] = chiave[i - 1];
+                mosse[i] = mosse[i - 1];
+                i--;
+            }
+            chiave[i] = k;
+            mosse[i] = c;
+        }
+        return n;
+    }
+}
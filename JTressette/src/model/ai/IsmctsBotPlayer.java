@@ -0,0 +1,349 @@
+package model.ai;
+
+import model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Bot basato su Information-Set Monte Carlo Tree Search (variante a singolo osservatore).
+ * Legge i punti del round dalla {@link CardTracker} del bot e delega al {@link DealSampler} i vincoli sulle carte;
+ * a ogni iterazione distribuisce le carte che non ha visto in modo uniforme tra quelle compatibili
+ * con i semi mancanti e le pescate rivelate (determinizzazione),
+ * scende nell'albero con UCB sulle sole mosse legali nella determinizzazione e completa il round
+ * con una simulazione casuale, tenendo conto del punto dell'ultima presa.
+ * Le simulazioni girano in parallelo su più alberi indipendenti fino allo scadere del tempo per mossa.
+ * In 1vs1, a mazzo esaurito, la mano avversaria è nota e la mossa viene calcolata in modo esatto
+ * dall'{@link EndgameSolver}.
+ */
+public class IsmctsBotPlayer extends BotPlayer {
+
+    private static final double COSTANTE_ESPLORAZIONE = 0.7;
+    private static final int PUNTI_ROUND_MASSIMI = 35;
+    private static final int BIT_TABELLA_FINALE = 18;
+    private static final DecisionCache<EndgameSolver.Posizione> FINALI_RISOLTI = new DecisionCache<>(1 << 16);
+
+    private final long budgetMillis;
+    private final int parallelismo;
+    private final SplittableRandom random;
+    private final IsmctsBotPlayer origine;
+
+    private DealSampler campionatore;
+    private List<Player> giocatori;
+    private int mioPosto;
+
+    private volatile long ultimiPlayout;
+    private volatile long ultimoTempoNanos;
+    private long playoutTotali;
+    private long tempoTotaleNanos;
+
+    /**
+     * Costruttore del bot.
+     * @param nome Nome del bot.
+     * @param scoring Strategia di punteggio da utilizzare.
+     * @param budgetMillis Tempo di riflessione per mossa, in millisecondi.
+     * @param parallelismo Numero di alberi di ricerca simulati in parallelo.
+     */
+    public IsmctsBotPlayer(String nome, ScoringStrategy scoring, long budgetMillis, int parallelismo) {
+        super(nome, scoring);
+        if (budgetMillis <= 0 || parallelismo <= 0) {
+            throw new IllegalArgumentException("Tempo e parallelismo devono essere positivi");
+        }
+        this.budgetMillis = budgetMillis;
+        this.parallelismo = parallelismo;
+        this.random = new SplittableRandom();
+        this.origine = this;
+    }
+
+    /**
+     * Costruisce un'istantanea che condivide con il bot originale generatore, risolutore dei finali e metriche.
+     */
+    private IsmctsBotPlayer(IsmctsBotPlayer origine) {
+        super(origine.getNome(), origine.getScoring());
+        this.budgetMillis = origine.budgetMillis;
+        this.parallelismo = origine.parallelismo;
+        this.random = origine.random;
+        this.origine = origine;
+    }
+
+    @Override
+    public void collegaPartita(MatchManager partita) {
+        super.collegaPartita(partita);
+        giocatori = partita.getPlayers();
+        mioPosto = giocatori.indexOf(this);
+        campionatore = new DealSampler(getConoscenza(), this);
+    }
+
+    /**
+     * Crea un risolutore con tabella più ampia che alimenta la cache dei finali condivisa dai bot ISMCTS.
+     */
+    @Override
+    protected EndgameSolver creaRisolutoreFinale() {
+        return new EndgameSolver(getScoring(), BIT_TABELLA_FINALE, FINALI_RISOLTI);
+    }
+
+    @Override
+    protected BotPlayer istantanea() {
+        IsmctsBotPlayer copia = new IsmctsBotPlayer(this);
+        copiaStatoIn(copia);
+        if (giocatori != null && mioPosto >= 0) {
+            copia.giocatori = giocatori;
+            copia.mioPosto = mioPosto;
+            copia.campionatore = new DealSampler(copia.getConoscenza(), copia);
+        }
+        return copia;
+    }
+
+    @Override
+    public Card giocaCarta(Card.Seme semeDominante, List<Card> carteSulTavolo) {
+        long giocabili = getMaskGiocabili(semeDominante);
+        if (giocatori == null || mioPosto < 0) {
+            return super.giocaCarta(semeDominante, carteSulTavolo);
+        }
+        if (CardMask.conta(giocabili) == 1) {
+            return Card.fromId(Long.numberOfTrailingZeros(giocabili));
+        }
+        if (giocatori.size() == 2 && getConoscenza().getCarteNelMazzo() == 0) {
+            return risolviFinale(carteSulTavolo);
+        }
+        Radice radice = creaRadice(carteSulTavolo);
+        long inizio = System.nanoTime();
+        long scadenza = inizio + budgetMillis * 1_000_000L;
+        Thread chiamante = Thread.currentThread();
+
+        List<Callable<long[]>> ricerche = new ArrayList<>(parallelismo);
+        for (int i = 0; i < parallelismo; i++) {
+            SplittableRandom rnd;
+            synchronized (random) {
+                rnd = random.split();
+            }
+            ricerche.add(() -> new Albero(radice, rnd).cerca(scadenza, chiamante));
+        }
+        long[] visite = new long[Card.NUMERO_CARTE + 1];
+        try {
+            for (Future<long[]> f : ForkJoinPool.commonPool().invokeAll(ricerche)) {
+                long[] parziali = f.get();
+                for (int i = 0; i < visite.length; i++) {
+                    visite[i] += parziali[i];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore nella ricerca del bot", e.getCause());
+        }
+        origine.registraMetriche(visite[Card.NUMERO_CARTE], System.nanoTime() - inizio);
+
+        int migliore = -1;
+        for (long m = giocabili; m != 0; m &= m - 1) {
+            int carta = Long.numberOfTrailingZeros(m);
+            if (migliore < 0 || visite[carta] > visite[migliore]) {
+                migliore = carta;
+            }
+        }
+        return Card.fromId(migliore);
+    }
+
+    /**
+     * Raccoglie in una struttura immutabile ciò che il bot sa al momento della decisione.
+     */
+    private Radice creaRadice(List<Card> carteSulTavolo) {
+        int n = giocatori.size();
+        GameState stato = new GameState(getScoring(), n);
+        CardTracker conoscenza = getConoscenza();
+        stato.setPuntiRound(conoscenza.getPuntiRound(0), conoscenza.getPuntiRound(1), conoscenza.getUltimoVincente());
+        stato.setMano(mioPosto, getManoMask());
+        int primoDiMano = Math.floorMod(mioPosto - carteSulTavolo.size(), n);
+        stato.setTurno(primoDiMano);
+        for (Card c : carteSulTavolo) {
+            stato.gioca(c.getId());
+        }
+        return new Radice(stato, campionatore.prepara(), mioPosto);
+    }
+
+    /**
+     * Restituisce la cache dei finali risolti, condivisa da tutti i bot ISMCTS della JVM.
+     * Le posizioni sono in forma canonica rispetto ai semi; la strategia di punteggio è quella standard.
+     * @return Cache con le relative metriche.
+     */
+    public static DecisionCache<EndgameSolver.Posizione> getCacheFinali() {
+        return FINALI_RISOLTI;
+    }
+
+    private synchronized void registraMetriche(long playout, long nanos) {
+        ultimiPlayout = playout;
+        ultimoTempoNanos = nanos;
+        playoutTotali += playout;
+        tempoTotaleNanos += nanos;
+    }
+
+    /**
+     * Restituisce il numero di simulazioni dell'ultima mossa.
+     * @return Simulazioni completate.
+     */
+    public long getUltimiPlayout() {
+        return ultimiPlayout;
+    }
+
+    /**
+     * Restituisce il throughput di simulazioni dell'ultima mossa.
+     * @return Simulazioni al secondo.
+     */
+    public double getUltimiPlayoutAlSecondo() {
+        long nanos = ultimoTempoNanos;
+        return nanos == 0 ? 0.0 : ultimiPlayout * 1e9 / nanos;
+    }
+
+    /**
+     * Restituisce il throughput medio di simulazioni su tutte le mosse calcolate.
+     * @return Simulazioni al secondo.
+     */
+    public synchronized double getPlayoutAlSecondo() {
+        return tempoTotaleNanos == 0 ? 0.0 : playoutTotali * 1e9 / tempoTotaleNanos;
+    }
+
+    /**
+     * Informazioni note al bot al momento della decisione, condivise in sola lettura dai thread di ricerca.
+     * @param stato Stato con la sola mano del bot, la presa in corso e i punti del round.
+     * @param distribuzioni Distribuzioni delle carte non viste compatibili con i vincoli osservati.
+     * @param mioPosto Posto del bot.
+     */
+    private record Radice(GameState stato, DealSampler.Distribuzioni distribuzioni, int mioPosto) { }
+
+    /**
+     * Nodo dell'albero: una carta giocata da un posto, con statistiche di visita e disponibilità.
+     */
+    private static final class Nodo {
+        final int carta;
+        final int posto;
+        final Nodo padre;
+        Nodo[] figli;
+        long figliMask;
+        int visite;
+        int disponibilita = 1;
+        double premio;
+
+        Nodo(int carta, int posto, Nodo padre) {
+            this.carta = carta;
+            this.posto = posto;
+            this.padre = padre;
+        }
+
+        Nodo aggiungiFiglio(int carta, int posto) {
+            if (figli == null) {
+                figli = new Nodo[Card.NUMERO_CARTE];
+            }
+            Nodo figlio = new Nodo(carta, posto, this);
+            figli[carta] = figlio;
+            figliMask |= 1L << carta;
+            return figlio;
+        }
+    }
+
+    /**
+     * Albero di ricerca di un singolo thread, con stato di lavoro e generatore propri.
+     */
+    private static final class Albero {
+        private final Radice radice;
+        private final SplittableRandom rnd;
+        private final Nodo nodoRadice = new Nodo(-1, -1, null);
+        private final GameState base;
+        private final GameState stato;
+        private final long[] mani = new long[4];
+        private final int[] mazzo = new int[Card.NUMERO_CARTE];
+
+        Albero(Radice radice, SplittableRandom rnd) {
+            this.radice = radice;
+            this.rnd = rnd;
+            this.base = new GameState(radice.stato());
+            this.stato = new GameState(radice.stato());
+        }
+
+        /**
+         * Esegue iterazioni fino alla scadenza o finché il thread che ha chiesto la mossa viene interrotto.
+         * @return Visite per carta alla radice; l'ultimo elemento è il numero di simulazioni.
+         */
+        long[] cerca(long scadenza, Thread chiamante) {
+            long iterazioni = 0;
+            do {
+                for (int i = 0; i < 32; i++) {
+                    iterazione();
+                }
+                iterazioni += 32;
+            } while (System.nanoTime() < scadenza && !chiamante.isInterrupted());
+            long[] visite = new long[Card.NUMERO_CARTE + 1];
+            for (long m = nodoRadice.figliMask; m != 0; m &= m - 1) {
+                int carta = Long.numberOfTrailingZeros(m);
+                visite[carta] = nodoRadice.figli[carta].visite;
+            }
+            visite[Card.NUMERO_CARTE] = iterazioni;
+            return visite;
+        }
+
+        /**
+         * Distribuisce le carte sconosciute tra mani avversarie e mazzo, rispettando i vincoli osservati.
+         */
+        private void determinizza() {
+            stato.copiaDa(base);
+            int carteMazzo = radice.distribuzioni().campiona(rnd, mani, mazzo);
+            for (int posto = 0; posto < stato.getNumeroGiocatori(); posto++) {
+                if (posto != radice.mioPosto()) {
+                    stato.setMano(posto, mani[posto]);
+                }
+            }
+            stato.setMazzo(mazzo, carteMazzo);
+        }
+
+        private void iterazione() {
+            determinizza();
+            Nodo nodo = nodoRadice;
+            while (!stato.isFinito()) {
+                long legali = stato.mosseLegali();
+                long nonProvate = legali & ~nodo.figliMask;
+                if (nonProvate != 0) {
+                    int carta = bitCasuale(nonProvate);
+                    nodo = nodo.aggiungiFiglio(carta, stato.getTurno());
+                    stato.gioca(carta);
+                    break;
+                }
+                Nodo migliore = null;
+                double valoreMigliore = Double.NEGATIVE_INFINITY;
+                for (long m = legali; m != 0; m &= m - 1) {
+                    Nodo figlio = nodo.figli[Long.numberOfTrailingZeros(m)];
+                    figlio.disponibilita++;
+                    double valore = figlio.premio / figlio.visite
+                            + COSTANTE_ESPLORAZIONE * Math.sqrt(Math.log(figlio.disponibilita) / figlio.visite);
+                    if (valore > valoreMigliore) {
+                        valoreMigliore = valore;
+                        migliore = figlio;
+                    }
+                }
+                nodo = migliore;
+                stato.gioca(nodo.carta);
+            }
+            while (!stato.isFinito()) {
+                stato.gioca(bitCasuale(stato.mosseLegali()));
+            }
+            double premioParte0 = (stato.getPuntiRound(0) - stato.getPuntiRound(1) + PUNTI_ROUND_MASSIMI)
+                    / (2.0 * PUNTI_ROUND_MASSIMI);
+            for (Nodo n = nodo; n != nodoRadice; n = n.padre) {
+                n.visite++;
+                n.premio += stato.getParteDelPosto(n.posto) == 0 ? premioParte0 : 1.0 - premioParte0;
+            }
+            nodoRadice.visite++;
+        }
+
+        private int bitCasuale(long mask) {
+            int k = rnd.nextInt(Long.bitCount(mask));
+            for (int i = 0; i < k; i++) {
+                mask &= mask - 1;
+            }
+            return Long.numberOfTrailingZeros(mask);
+        }
+    }
+}
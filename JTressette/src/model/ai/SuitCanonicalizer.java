@@ -0,0 +1,94 @@
+package model.ai;
+
+import model.Card;
+
+/**
+ * Forma canonica delle posizioni rispetto alla rietichettatura dei semi.
+ * Nel Tressette non c'è briscola: due posizioni che differiscono solo per una permutazione dei semi
+ * sono strategicamente identiche. Ogni seme riceve una firma (le sue carte in ciascuna maschera, nell'ordine dato)
+ * e i semi vengono riordinati per firma decrescente; semi con la stessa firma sono intercambiabili,
+ * quindi il risultato non dipende da come si rompono i pareggi.
+ * Le permutazioni sono array di 4 elementi: permutazione[semeOriginale] = semeCanonico.
+ */
+public final class SuitCanonicalizer {
+
+    private static final int SEMI = 4;
+    private static final int CARTE_PER_SEME = Card.NUMERO_CARTE / SEMI;
+    private static final long MASCHERA_SEME = (1L << CARTE_PER_SEME) - 1;
+
+    private SuitCanonicalizer() {}
+
+    /**
+     * Porta in forma canonica un insieme di maschere di carte, sul posto.
+     * @param maschere Maschere da canonizzare; l'ordine delle maschere fa parte della firma.
+     * @param n Numero di maschere da considerare.
+     * @param permutazione Array di 4 elementi che riceve la permutazione applicata.
+     */
+    public static void canonizza(long[] maschere, int n, int[] permutazione) {
+        int[] ordine = { 0, 1, 2, 3 };
+        for (int i = 1; i < SEMI; i++) {
+            int seme = ordine[i];
+            int j = i;
+            while (j > 0 && confronta(maschere, n, seme, ordine[j - 1]) > 0) {
+                ordine[j] = ordine[j - 1];
+                j--;
+            }
+            ordine[j] = seme;
+        }
+        for (int canonico = 0; canonico < SEMI; canonico++) {
+            permutazione[ordine[canonico]] = canonico;
+        }
+        for (int i = 0; i < n; i++) {
+            maschere[i] = permutaMaschera(maschere[i], permutazione);
+        }
+    }
+
+    private static int confronta(long[] maschere, int n, int semeA, int semeB) {
+        for (int i = 0; i < n; i++) {
+            int c = Long.compare(maschere[i] >>> (semeA * CARTE_PER_SEME) & MASCHERA_SEME,
+                    maschere[i] >>> (semeB * CARTE_PER_SEME) & MASCHERA_SEME);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    /**
+     * Applica una permutazione dei semi a una carta.
+     * @param carta Identificativo della carta.
+     * @param permutazione Permutazione dei semi.
+     * @return Identificativo della carta corrispondente.
+     */
+    public static int permutaCarta(int carta, int[] permutazione) {
+        return permutazione[carta / CARTE_PER_SEME] * CARTE_PER_SEME + carta % CARTE_PER_SEME;
+    }
+
+    /**
+     * Applica una permutazione dei semi a una maschera di carte.
+     * @param maschera Maschera di carte.
+     * @param permutazione Permutazione dei semi.
+     * @return Maschera corrispondente.
+     */
+    public static long permutaMaschera(long maschera, int[] permutazione) {
+        long risultato = 0;
+        for (int seme = 0; seme < SEMI; seme++) {
+            risultato |= (maschera >>> (seme * CARTE_PER_SEME) & MASCHERA_SEME) << (permutazione[seme] * CARTE_PER_SEME);
+        }
+        return risultato;
+    }
+
+    /**
+     * Riporta una carta dalla forma canonica ai semi originali.
+     * @param cartaCanonica Identificativo della carta in forma canonica.
+     * @param permutazione Permutazione usata per canonizzare.
+     * @return Identificativo della carta originale.
+     */
+    public static int ripristinaCarta(int cartaCanonica, int[] permutazione) {
+        int semeCanonico = cartaCanonica / CARTE_PER_SEME;
+        for (int seme = 0; seme < SEMI; seme++) {
+            if (permutazione[seme] == semeCanonico) {
+                return seme * CARTE_PER_SEME + cartaCanonica % CARTE_PER_SEME;
+            }
+        }
+        throw new IllegalArgumentException("Permutazione non valida");
+    }
+}
@@ -5,15 +5,82 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Gestisce la riproduzione di effetti sonori.
  * Supporta sia risorse sul classpath sia file su disco.
+ * I suoni vengono decodificati una sola volta in PCM e conservati in cache; {@link #precarica} li decodifica
+ * all'avvio. La riproduzione usa un insieme fisso di {@link #NUMERO_VOCI} {@link Clip} riutilizzati: un suono
+ * già caricato in una voce libera riparte senza riaprire la linea, e se tutte le voci sono occupate
+ * viene interrotta quella avviata per prima. Decodifica e riproduzione avvengono su un thread dedicato,
+ * così il chiamante (di norma l'EDT) non attende il dispositivo audio.
  */
 public class AudioManager {
 
+    /**
+     * Numero massimo di suoni riprodotti contemporaneamente.
+     */
+    public static final int NUMERO_VOCI = 8;
+
     private static AudioManager instance;
 
+    /**
+     * Statistiche di riproduzione.
+     * @param riproduzioni Suoni avviati.
+     * @param vociRubate Suoni interrotti per liberare una voce.
+     * @param aperture Aperture di una linea, necessarie quando una voce cambia suono.
+     * @param vociOccupate Voci che stanno riproducendo un suono.
+     * @param vociMassimeOccupate Massimo numero di voci occupate contemporaneamente.
+     * @param latenzaMediaMillis Tempo medio tra la richiesta e l'avvio del suono, in millisecondi.
+     * @param latenzaMassimaMillis Tempo massimo tra la richiesta e l'avvio del suono, in millisecondi.
+     */
+    public record Statistiche(long riproduzioni, long vociRubate, long aperture, int vociOccupate,
+                              int vociMassimeOccupate, double latenzaMediaMillis, double latenzaMassimaMillis) {
+    }
+
+    /**
+     * Suono decodificato in PCM.
+     */
+    private record Suono(AudioFormat formato, byte[] pcm, long durataNanos) {
+    }
+
+    /**
+     * Voce del gruppo: un Clip riutilizzato e il suono che contiene.
+     */
+    private static final class Voce {
+        Clip clip;
+        Suono suono;
+        long avvio;
+        volatile long fine;
+    }
+
+    private interface Sorgente {
+        InputStream apri() throws IOException;
+    }
+
+    private final ExecutorService esecutore = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "audio");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Suono> cache = new HashMap<>();
+    private final Set<String> nonDisponibili = new HashSet<>();
+    private final Voce[] voci = new Voce[NUMERO_VOCI];
+    private boolean dispositivoAssente;
+
+    private volatile long riproduzioni;
+    private volatile long vociRubate;
+    private volatile long aperture;
+    private volatile int vociMassimeOccupate;
+    private volatile long latenzaTotaleNanos;
+    private volatile long latenzaMassimaNanos;
+
     /**
      * Restituisce l'istanza singleton.
      * @return istanza di AudioManager
@@ -28,22 +95,29 @@ public class AudioManager {
     /**
      * Costruttore privato per pattern Singleton.
      */
-    private AudioManager() { }
+    private AudioManager() {
+        for (int i = 0; i < NUMERO_VOCI; i++) {
+            voci[i] = new Voce();
+        }
+    }
+
+    /**
+     * Decodifica in anticipo alcune risorse audio, in modo che la prima riproduzione non attenda la decodifica.
+     * @param resourcePaths percorsi delle risorse audio nel classpath
+     */
+    public void precarica(String... resourcePaths) {
+        for (String resourcePath : resourcePaths) {
+            esecutore.execute(() -> carica(resourcePath, () -> apriRisorsa(resourcePath)));
+        }
+    }
 
     /**
      * Riproduce un audio da resources (classpath).
      * @param resourcePath percorso della risorsa audio nel classpath
      */
     public void playResource(String resourcePath) {
-        try (InputStream in = new BufferedInputStream(getClass().getResourceAsStream(resourcePath))) {
-            try (AudioInputStream audioIn = AudioSystem.getAudioInputStream(in)) {
-                Clip clip = AudioSystem.getClip();
-                clip.open(audioIn);
-                clip.start();
-            }
-        } catch (UnsupportedAudioFileException | LineUnavailableException | IOException e) {
-            e.printStackTrace();
-        }
+        long richiesta = System.nanoTime();
+        esecutore.execute(() -> riproduci(carica(resourcePath, () -> apriRisorsa(resourcePath)), richiesta));
     }
 
     /**
@@ -51,13 +125,129 @@ public class AudioManager {
      * @param filename percorso del file audio
      */
     public void playFile(String filename) {
-        try (InputStream in = new BufferedInputStream(new FileInputStream(filename));
+        long richiesta = System.nanoTime();
+        esecutore.execute(() -> riproduci(carica(filename, () -> new FileInputStream(filename)), richiesta));
+    }
+
+    /**
+     * Restituisce le statistiche di riproduzione dall'avvio.
+     * @return statistiche correnti
+     */
+    public Statistiche getStatistiche() {
+        long adesso = System.nanoTime();
+        int occupate = 0;
+        for (Voce voce : voci) {
+            if (adesso - voce.fine < 0) {
+                occupate++;
+            }
+        }
+        long avviati = riproduzioni;
+        return new Statistiche(avviati, vociRubate, aperture, occupate, vociMassimeOccupate,
+                avviati == 0 ? 0 : latenzaTotaleNanos / 1e6 / avviati, latenzaMassimaNanos / 1e6);
+    }
+
+    private InputStream apriRisorsa(String resourcePath) throws IOException {
+        InputStream in = getClass().getResourceAsStream(resourcePath);
+        if (in == null) {
+            throw new IOException("Risorsa audio non trovata: " + resourcePath);
+        }
+        return in;
+    }
+
+    /**
+     * Restituisce il suono decodificato dalla cache, decodificandolo al primo uso.
+     * Un suono che non si riesce a decodificare viene segnalato una sola volta.
+     * @return suono, oppure null se non disponibile
+     */
+    private Suono carica(String chiave, Sorgente sorgente) {
+        Suono suono = cache.get(chiave);
+        if (suono != null || nonDisponibili.contains(chiave)) {
+            return suono;
+        }
+        try (InputStream in = new BufferedInputStream(sorgente.apri());
              AudioInputStream audioIn = AudioSystem.getAudioInputStream(in)) {
-            Clip clip = AudioSystem.getClip();
-            clip.open(audioIn);
-            clip.start();
-        } catch (UnsupportedAudioFileException | LineUnavailableException | IOException e) {
+            AudioFormat formato = audioIn.getFormat();
+            AudioInputStream pcm = audioIn;
+            if (!AudioFormat.Encoding.PCM_SIGNED.equals(formato.getEncoding())
+                    && !AudioFormat.Encoding.PCM_UNSIGNED.equals(formato.getEncoding())) {
+                formato = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, formato.getSampleRate(), 16,
+                        formato.getChannels(), formato.getChannels() * 2, formato.getSampleRate(), false);
+                pcm = AudioSystem.getAudioInputStream(formato, audioIn);
+            }
+            byte[] dati = pcm.readAllBytes();
+            long frame = dati.length / formato.getFrameSize();
+            suono = new Suono(formato, dati, (long) (frame * 1e9 / formato.getFrameRate()));
+            cache.put(chiave, suono);
+            return suono;
+        } catch (UnsupportedAudioFileException | IOException | IllegalArgumentException e) {
+            nonDisponibili.add(chiave);
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Avvia un suono su una voce: preferisce una voce libera che contiene già lo stesso suono,
+     * poi una voce libera qualsiasi e infine ruba la voce avviata per prima.
+     */
+    private void riproduci(Suono suono, long richiesta) {
+        if (suono == null || dispositivoAssente) {
+            return;
+        }
+        long adesso = System.nanoTime();
+        Voce stessa = null;
+        Voce libera = null;
+        Voce piuVecchia = null;
+        int occupate = 0;
+        for (Voce voce : voci) {
+            if (adesso - voce.fine < 0) {
+                occupate++;
+                if (piuVecchia == null || voce.avvio - piuVecchia.avvio < 0) {
+                    piuVecchia = voce;
+                }
+            } else if (voce.suono == suono && stessa == null) {
+                stessa = voce;
+            } else if (libera == null) {
+                libera = voce;
+            }
+        }
+        Voce voce = stessa != null ? stessa : libera != null ? libera : piuVecchia;
+        try {
+            if (voce == piuVecchia) {
+                vociRubate++;
+                occupate--;
+            }
+            if (voce.clip != null) {
+                voce.clip.stop();
+            }
+            if (voce.suono != suono) {
+                if (voce.clip == null) {
+                    voce.clip = AudioSystem.getClip();
+                } else {
+                    voce.clip.close();
+                }
+                voce.suono = null;
+                voce.clip.open(suono.formato(), suono.pcm(), 0, suono.pcm().length);
+                voce.suono = suono;
+                aperture++;
+            }
+            voce.clip.setFramePosition(0);
+            voce.clip.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            if (voce.clip == null) {
+                // nessun mixer disponibile: l'audio resta disattivato
+                dispositivoAssente = true;
+            }
             e.printStackTrace();
+            return;
         }
+        long avvio = System.nanoTime();
+        voce.avvio = avvio;
+        voce.fine = avvio + suono.durataNanos();
+        vociMassimeOccupate = Math.max(vociMassimeOccupate, occupate + 1);
+        long latenza = avvio - richiesta;
+        riproduzioni++;
+        latenzaTotaleNanos += latenza;
+        latenzaMassimaNanos = Math.max(latenzaMassimaNanos, latenza);
     }
 }
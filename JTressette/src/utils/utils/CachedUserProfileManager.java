@@ -0,0 +1,163 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gestore dei profili con cache in memoria e scrittura differita.
+ * {@link #load} restituisce sempre la stessa istanza per lo stesso nome, leggendo il file solo la prima volta;
+ * {@link #save} segna il profilo come modificato e pianifica lo scarico, che avviene su un thread di servizio
+ * dopo il ritardo indicato e scrive in un'unica volta tutti i profili modificati nel frattempo.
+ * Più salvataggi dello stesso profilo prima dello scarico producono un solo record.
+ * Se la scrittura fallisce i profili tornano tra i modificati e lo scarico viene ripianificato.
+ * In caso di chiusura improvvisa si perdono al più le modifiche dell'ultimo ritardo;
+ * {@link #close} scarica le modifiche pendenti prima di chiudere il file.
+ */
+public class CachedUserProfileManager extends UserProfileManager {
+
+    /**
+     * Ritardo predefinito tra il primo salvataggio non scaricato e lo scarico, in millisecondi.
+     */
+    public static final long RITARDO_PREDEFINITO = 500;
+
+    private final long ritardoMillis;
+    private final Object stato = new Object();
+    private final Map<String, UserProfile> cache = new HashMap<>();
+    private final Set<UserProfile> modificati = new LinkedHashSet<>();
+    private final ScheduledThreadPoolExecutor scaricatore;
+    private boolean scaricoPianificato;
+
+    /**
+     * Costruisce un gestore con il ritardo di scarico predefinito.
+     * @param storageFile file di memorizzazione dei profili
+     */
+    public CachedUserProfileManager(File storageFile) {
+        this(storageFile, RITARDO_PREDEFINITO);
+    }
+
+    /**
+     * Costruisce un gestore con cache.
+     * @param storageFile file di memorizzazione dei profili
+     * @param ritardoMillis ritardo massimo tra un salvataggio e la sua scrittura su disco, in millisecondi
+     */
+    public CachedUserProfileManager(File storageFile, long ritardoMillis) {
+        super(storageFile);
+        this.ritardoMillis = ritardoMillis;
+        this.scaricatore = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "profile-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        scaricatore.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Carica un profilo dalla cache, leggendolo dal file al primo accesso.
+     * Se il profilo non esiste, ne crea uno nuovo.
+     * @param profileName nome del profilo da caricare
+     * @return profilo utente, la stessa istanza a ogni chiamata con lo stesso nome
+     */
+    @Override
+    public UserProfile load(String profileName) {
+        synchronized (stato) {
+            UserProfile profile = cache.get(profileName);
+            if (profile != null) {
+                return profile;
+            }
+        }
+        UserProfile letto = super.load(profileName);
+        synchronized (stato) {
+            UserProfile profile = cache.putIfAbsent(profileName, letto);
+            return profile != null ? profile : letto;
+        }
+    }
+
+    /**
+     * Segna un profilo come modificato; verrà scritto su disco entro il ritardo di scarico.
+     * @param profile profilo da salvare
+     */
+    @Override
+    public void save(UserProfile profile) {
+        synchronized (stato) {
+            UserProfile inCache = cache.putIfAbsent(profile.getNome(), profile);
+            if (inCache != null && inCache != profile) {
+                cache.put(profile.getNome(), profile);
+                modificati.remove(inCache);
+            }
+            modificati.add(profile);
+            pianificaScarico();
+        }
+    }
+
+    /**
+     * Scrive su disco i profili modificati. Le statistiche vengono copiate sotto lock,
+     * perché i profili possono essere aggiornati dall'interfaccia durante la scrittura.
+     * Se la scrittura fallisce, i profili non sostituiti nel frattempo da un nuovo salvataggio
+     * tornano tra i modificati.
+     */
+    private void scarica() {
+        List<UserProfile> originali;
+        List<UserProfile> copie;
+        synchronized (stato) {
+            scaricoPianificato = false;
+            if (modificati.isEmpty()) {
+                return;
+            }
+            originali = new ArrayList<>(modificati);
+            copie = new ArrayList<>(modificati.size());
+            for (UserProfile profile : modificati) {
+                UserProfile copia = new UserProfile(profile.getNome(), profile.getPartiteGiocate(), profile.getPartiteVinte());
+                copia.setAvatarPath(profile.getAvatarPath());
+                copie.add(copia);
+            }
+            modificati.clear();
+        }
+        try {
+            saveAll(copie);
+        } catch (IOException e) {
+            e.printStackTrace();
+            synchronized (stato) {
+                for (UserProfile profile : originali) {
+                    if (cache.get(profile.getNome()) == profile) {
+                        modificati.add(profile);
+                    }
+                }
+                pianificaScarico();
+            }
+        }
+    }
+
+    /**
+     * Pianifica uno scarico dopo il ritardo, se non ce n'è già uno in attesa. Va chiamato con il lock di stato.
+     */
+    private void pianificaScarico() {
+        if (!scaricoPianificato && !scaricatore.isShutdown()) {
+            scaricoPianificato = true;
+            scaricatore.schedule(this::scarica, ritardoMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Attende l'eventuale scarico in corso, scrive le modifiche pendenti e chiude il file.
+     * I salvataggi successivi vengono scritti solo alla chiusura successiva.
+     */
+    @Override
+    public void close() {
+        scaricatore.shutdown();
+        try {
+            scaricatore.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scarica();
+        super.close();
+    }
+}
@@ -0,0 +1,144 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Indice ordinato della classifica: treap con dimensione dei sottoalberi, ordinato per valore decrescente
+ * e, a parità, per chiave. Inserimento, rimozione e posizione di un giocatore
+ * costano O(log n) attesi; i primi k si leggono in O(k + log n).
+ */
+final class LeaderboardIndex {
+
+    private static final class Nodo {
+        final String chiave;
+        final double valore;
+        final int priorita;
+        int dimensione = 1;
+        Nodo sinistro;
+        Nodo destro;
+
+        Nodo(String chiave, double valore, int priorita) {
+            this.chiave = chiave;
+            this.valore = valore;
+            this.priorita = priorita;
+        }
+    }
+
+    private final Random casuale = new Random();
+    private Nodo radice;
+
+    int size() {
+        return dimensione(radice);
+    }
+
+    void inserisci(String chiave, double valore) {
+        Nodo[] parti = dividi(radice, chiave, valore);
+        radice = unisci(unisci(parti[0], new Nodo(chiave, valore, casuale.nextInt())), parti[1]);
+    }
+
+    void rimuovi(String chiave, double valore) {
+        radice = rimuovi(radice, chiave, valore);
+    }
+
+    /**
+     * Restituisce il numero di elementi che precedono la voce indicata, presente o no.
+     */
+    int precedenti(String chiave, double valore) {
+        int precedenti = 0;
+        Nodo nodo = radice;
+        while (nodo != null) {
+            int confronto = confronta(chiave, valore, nodo);
+            if (confronto <= 0) {
+                nodo = nodo.sinistro;
+            } else {
+                precedenti += dimensione(nodo.sinistro) + 1;
+                nodo = nodo.destro;
+            }
+        }
+        return precedenti;
+    }
+
+    /**
+     * Restituisce le chiavi dei primi k elementi, in ordine di classifica.
+     */
+    List<String> primi(int k) {
+        List<String> chiavi = new ArrayList<>(Math.min(Math.max(k, 0), size()));
+        visita(radice, chiavi, k);
+        return chiavi;
+    }
+
+    private static void visita(Nodo nodo, List<String> chiavi, int k) {
+        if (nodo == null || chiavi.size() >= k) return;
+        visita(nodo.sinistro, chiavi, k);
+        if (chiavi.size() < k) {
+            chiavi.add(nodo.chiave);
+            visita(nodo.destro, chiavi, k);
+        }
+    }
+
+    private static int confronta(String chiave, double valore, Nodo nodo) {
+        int confronto = Double.compare(nodo.valore, valore);
+        return confronto != 0 ? confronto : chiave.compareTo(nodo.chiave);
+    }
+
+    /**
+     * Divide l'albero negli elementi che precedono la voce indicata e in quelli che la seguono o coincidono.
+     */
+    private static Nodo[] dividi(Nodo nodo, String chiave, double valore) {
+        if (nodo == null) {
+            return new Nodo[2];
+        }
+        if (confronta(chiave, valore, nodo) > 0) {
+            Nodo[] parti = dividi(nodo.destro, chiave, valore);
+            nodo.destro = parti[0];
+            aggiorna(nodo);
+            parti[0] = nodo;
+            return parti;
+        }
+        Nodo[] parti = dividi(nodo.sinistro, chiave, valore);
+        nodo.sinistro = parti[1];
+        aggiorna(nodo);
+        parti[1] = nodo;
+        return parti;
+    }
+
+    private static Nodo unisci(Nodo a, Nodo b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priorita > b.priorita) {
+            a.destro = unisci(a.destro, b);
+            aggiorna(a);
+            return a;
+        }
+        b.sinistro = unisci(a, b.sinistro);
+        aggiorna(b);
+        return b;
+    }
+
+    private static Nodo rimuovi(Nodo nodo, String chiave, double valore) {
+        if (nodo == null) {
+            return null;
+        }
+        int confronto = confronta(chiave, valore, nodo);
+        if (confronto == 0) {
+            return unisci(nodo.sinistro, nodo.destro);
+        }
+        if (confronto < 0) {
+            nodo.sinistro = rimuovi(nodo.sinistro, chiave, valore);
+        } else {
+            nodo.destro = rimuovi(nodo.destro, chiave, valore);
+        }
+        aggiorna(nodo);
+        return nodo;
+    }
+
+    private static void aggiorna(Nodo nodo) {
+        nodo.dimensione = 1 + dimensione(nodo.sinistro) + dimensione(nodo.destro);
+    }
+
+    private static int dimensione(Nodo nodo) {
+        return nodo == null ? 0 : nodo.dimensione;
+    }
+}
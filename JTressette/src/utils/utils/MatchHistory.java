@@ -0,0 +1,203 @@
+package utils;
+
+import java.util.Arrays;
+
+/**
+ * Storico delle partite di un profilo, memorizzato per colonne in array primitivi.
+ * Ogni partita occupa una riga: data, modalità, esito, punti, prese vinte, tipo di avversario e durata.
+ * Le interrogazioni non scorrono le righe: vittorie e durate cumulate danno percentuale e durata media
+ * sulle ultime N partite in tempo costante, e somme per modalità e serie vengono aggiornate a ogni aggiunta.
+ * Non è thread-safe: righe e interrogazioni vanno eseguite sullo stesso thread, di norma l'EDT.
+ */
+public class MatchHistory {
+
+    /**
+     * Esito di una partita vinta.
+     */
+    public static final int VITTORIA = 1;
+    /**
+     * Esito di una partita pareggiata.
+     */
+    public static final int PAREGGIO = 0;
+    /**
+     * Esito di una partita persa.
+     */
+    public static final int SCONFITTA = -1;
+
+    /**
+     * Tipo dei bot avversari.
+     */
+    public enum TipoAvversario { BOT, ISMCTS }
+
+    /**
+     * Riga dello storico.
+     * @param data Fine della partita, in millisecondi dall'epoca.
+     * @param dueControDue true se la partita era in modalità 2vs2.
+     * @param esito {@link #VITTORIA}, {@link #PAREGGIO} o {@link #SCONFITTA}.
+     * @param punti Punteggio finale della parte del profilo.
+     * @param preseVinte Prese vinte dalla parte del profilo.
+     * @param avversario Tipo dei bot avversari.
+     * @param durataMillis Durata della partita in millisecondi.
+     */
+    public record Partita(long data, boolean dueControDue, int esito, int punti, int preseVinte,
+                          TipoAvversario avversario, int durataMillis) {
+    }
+
+    private static final TipoAvversario[] TIPI = TipoAvversario.values();
+
+    private int righe;
+    private long[] data = new long[16];
+    private byte[] modalitaEdEsito = new byte[16];
+    private short[] punti = new short[16];
+    private short[] preseVinte = new short[16];
+    private byte[] avversario = new byte[16];
+    private int[] durataMillis = new int[16];
+    private int[] vittorieCumulate = new int[17];
+    private long[] durataCumulata = new long[17];
+
+    private final long[] sommaPunti = new long[2];
+    private final long[] sommaPrese = new long[2];
+    private final int[] partitePerModalita = new int[2];
+    private int serieCorrente;
+    private int serieMigliore;
+
+    /**
+     * Aggiunge una partita in coda allo storico.
+     * @param partita Riga da aggiungere.
+     */
+    public void aggiungi(Partita partita) {
+        if (partita.esito() < SCONFITTA || partita.esito() > VITTORIA) {
+            throw new IllegalArgumentException("Esito non valido: " + partita.esito());
+        }
+        if (righe == data.length) {
+            int capacita = righe * 2;
+            data = Arrays.copyOf(data, capacita);
+            modalitaEdEsito = Arrays.copyOf(modalitaEdEsito, capacita);
+            punti = Arrays.copyOf(punti, capacita);
+            preseVinte = Arrays.copyOf(preseVinte, capacita);
+            avversario = Arrays.copyOf(avversario, capacita);
+            durataMillis = Arrays.copyOf(durataMillis, capacita);
+            vittorieCumulate = Arrays.copyOf(vittorieCumulate, capacita + 1);
+            durataCumulata = Arrays.copyOf(durataCumulata, capacita + 1);
+        }
+        int modalita = partita.dueControDue() ? 1 : 0;
+        data[righe] = partita.data();
+        modalitaEdEsito[righe] = (byte) (modalita | (partita.esito() + 1) << 1);
+        punti[righe] = (short) partita.punti();
+        preseVinte[righe] = (short) partita.preseVinte();
+        avversario[righe] = (byte) partita.avversario().ordinal();
+        durataMillis[righe] = partita.durataMillis();
+        vittorieCumulate[righe + 1] = vittorieCumulate[righe] + (partita.esito() == VITTORIA ? 1 : 0);
+        durataCumulata[righe + 1] = durataCumulata[righe] + partita.durataMillis();
+        righe++;
+
+        sommaPunti[modalita] += partita.punti();
+        sommaPrese[modalita] += partita.preseVinte();
+        partitePerModalita[modalita]++;
+        if (partita.esito() == PAREGGIO) {
+            serieCorrente = 0;
+        } else if (partita.esito() == VITTORIA) {
+            serieCorrente = serieCorrente > 0 ? serieCorrente + 1 : 1;
+            serieMigliore = Math.max(serieMigliore, serieCorrente);
+        } else {
+            serieCorrente = serieCorrente < 0 ? serieCorrente - 1 : -1;
+        }
+    }
+
+    /**
+     * Restituisce il numero di partite nello storico.
+     * @return Righe dello storico.
+     */
+    public int size() {
+        return righe;
+    }
+
+    /**
+     * Restituisce una partita dello storico.
+     * @param i Indice della partita, dalla più vecchia.
+     * @return Riga dello storico.
+     */
+    public Partita getPartita(int i) {
+        if (i < 0 || i >= righe) {
+            throw new IndexOutOfBoundsException("Partita inesistente: " + i);
+        }
+        return new Partita(data[i], (modalitaEdEsito[i] & 1) != 0, getEsito(i), punti[i], preseVinte[i],
+                TIPI[avversario[i]], durataMillis[i]);
+    }
+
+    /**
+     * Restituisce l'esito di una partita.
+     * @param i Indice della partita, dalla più vecchia.
+     * @return {@link #VITTORIA}, {@link #PAREGGIO} o {@link #SCONFITTA}.
+     */
+    public int getEsito(int i) {
+        return (modalitaEdEsito[i] >> 1) - 1;
+    }
+
+    /**
+     * Restituisce la percentuale di vittorie sulle ultime partite, in tempo costante.
+     * @param ultime Numero di partite più recenti da considerare; se supera lo storico si usa tutto lo storico.
+     * @return Percentuale di vittorie, oppure 0 se lo storico è vuoto.
+     */
+    public double getPercentualeVittorie(int ultime) {
+        int n = Math.min(Math.max(ultime, 0), righe);
+        if (n == 0) {
+            return 0.0;
+        }
+        return (vittorieCumulate[righe] - vittorieCumulate[righe - n]) * 100.0 / n;
+    }
+
+    /**
+     * Restituisce la media dei punti finali nelle partite di una modalità, in tempo costante.
+     * @param dueControDue true per la modalità 2vs2, false per 1vs1.
+     * @return Media dei punti, oppure 0 se non ci sono partite in quella modalità.
+     */
+    public double getMediaPunti(boolean dueControDue) {
+        int modalita = dueControDue ? 1 : 0;
+        return partitePerModalita[modalita] == 0 ? 0.0 : (double) sommaPunti[modalita] / partitePerModalita[modalita];
+    }
+
+    /**
+     * Restituisce la media delle prese vinte nelle partite di una modalità, in tempo costante.
+     * @param dueControDue true per la modalità 2vs2, false per 1vs1.
+     * @return Media delle prese vinte, oppure 0 se non ci sono partite in quella modalità.
+     */
+    public double getMediaPrese(boolean dueControDue) {
+        int modalita = dueControDue ? 1 : 0;
+        return partitePerModalita[modalita] == 0 ? 0.0 : (double) sommaPrese[modalita] / partitePerModalita[modalita];
+    }
+
+    /**
+     * Restituisce la durata media delle ultime partite, in tempo costante.
+     * @param ultime Numero di partite più recenti da considerare; se supera lo storico si usa tutto lo storico.
+     * @return Durata media in millisecondi, oppure 0 se lo storico è vuoto.
+     */
+    public long getDurataMedia(int ultime) {
+        int n = Math.min(Math.max(ultime, 0), righe);
+        return n == 0 ? 0 : (durataCumulata[righe] - durataCumulata[righe - n]) / n;
+    }
+
+    /**
+     * Restituisce la serie in corso: positiva se di vittorie, negativa se di sconfitte. Un pareggio la azzera.
+     * @return Lunghezza con segno della serie in corso.
+     */
+    public int getSerieCorrente() {
+        return serieCorrente;
+    }
+
+    /**
+     * Restituisce la serie di vittorie consecutive più lunga.
+     * @return Lunghezza della serie.
+     */
+    public int getSerieMigliore() {
+        return serieMigliore;
+    }
+
+    /**
+     * Restituisce la data della partita più recente.
+     * @return Millisecondi dall'epoca, oppure 0 se lo storico è vuoto.
+     */
+    public long getUltimaData() {
+        return righe == 0 ? 0 : data[righe - 1];
+    }
+}
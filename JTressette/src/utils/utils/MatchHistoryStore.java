@@ -0,0 +1,206 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archivio degli storici delle partite di tutti i profili, in sola aggiunta.
+ * Il file inizia con firma e versione, seguite da una riga per partita: nome del profilo (lunghezza e UTF-8),
+ * data, modalità ed esito in un byte, punti, prese vinte, tipo di avversario e durata.
+ * All'apertura l'archivio viene letto per intero e distribuito negli storici in memoria ({@link MatchHistory});
+ * una riga incompleta in coda, lasciata da una chiusura improvvisa, viene scartata.
+ * {@link #registra} aggiorna subito lo storico e affida la scrittura su disco a un thread di servizio,
+ * così il thread dell'interfaccia non attende il disco; la fine dell'archivio avanza solo a scrittura riuscita.
+ */
+public class MatchHistoryStore implements Closeable {
+
+    private static final int FIRMA = 0x4A54484D;
+    private static final int VERSIONE = 1;
+    private static final int DIMENSIONE_INTESTAZIONE = 5;
+    private static final int DIMENSIONE_RIGA = Long.BYTES + 1 + Short.BYTES + Short.BYTES + 1 + Integer.BYTES;
+
+    private final Map<String, MatchHistory> storici = new HashMap<>();
+    private final ExecutorService scrittore;
+    private final FileChannel canale;
+    /**
+     * Fine dei dati scritti; dopo l'apertura è letta e aggiornata solo dal thread di servizio.
+     */
+    private long fine;
+
+    /**
+     * Apre l'archivio, creandolo se non esiste, e carica gli storici.
+     * @param file File dell'archivio.
+     * @throws IOException se il file non è leggibile o non è un archivio di storici.
+     */
+    public MatchHistoryStore(Path file) throws IOException {
+        this.canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (canale.size() == 0) {
+                scriviTutto(canale, intestazione(), 0);
+                fine = DIMENSIONE_INTESTAZIONE;
+            } else {
+                carica();
+            }
+        } catch (IOException | RuntimeException e) {
+            canale.close();
+            throw e;
+        }
+        this.scrittore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "history-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Legge tutte le righe e tronca l'eventuale riga incompleta in coda.
+     */
+    private void carica() throws IOException {
+        long dimensione = canale.size();
+        if (dimensione > Integer.MAX_VALUE) {
+            throw new IOException("Archivio degli storici troppo grande");
+        }
+        ByteBuffer contenuto = ByteBuffer.allocate((int) dimensione);
+        while (contenuto.hasRemaining()) {
+            if (canale.read(contenuto, contenuto.position()) < 0) {
+                break;
+            }
+        }
+        contenuto.flip();
+        if (contenuto.remaining() < DIMENSIONE_INTESTAZIONE || contenuto.getInt() != FIRMA) {
+            throw new IOException("Il file non è un archivio di storici supportato");
+        }
+        int versione = contenuto.get();
+        if (versione != VERSIONE) {
+            throw new IOException("Versione dell'archivio di storici non supportata: " + versione);
+        }
+        int valida = contenuto.position();
+        try {
+            while (contenuto.hasRemaining()) {
+                byte[] nome = new byte[contenuto.getShort()];
+                contenuto.get(nome);
+                long data = contenuto.getLong();
+                int modalitaEdEsito = contenuto.get();
+                int punti = contenuto.getShort();
+                int prese = contenuto.getShort();
+                int avversario = contenuto.get();
+                int durata = contenuto.getInt();
+                int esito = (modalitaEdEsito >> 1) - 1;
+                if (esito < MatchHistory.SCONFITTA || esito > MatchHistory.VITTORIA
+                        || avversario < 0 || avversario >= MatchHistory.TipoAvversario.values().length) {
+                    break;
+                }
+                storici.computeIfAbsent(new String(nome, StandardCharsets.UTF_8), k -> new MatchHistory())
+                        .aggiungi(new MatchHistory.Partita(data, (modalitaEdEsito & 1) != 0, esito, punti, prese,
+                                MatchHistory.TipoAvversario.values()[avversario], durata));
+                valida = contenuto.position();
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            // riga incompleta in coda: viene scartata
+        }
+        if (valida < dimensione) {
+            canale.truncate(valida);
+        }
+        fine = valida;
+    }
+
+    private static ByteBuffer intestazione() {
+        ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+        return intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+    }
+
+    /**
+     * Restituisce lo storico di un profilo, vuoto se il profilo non ha ancora partite.
+     * @param nome Nome del profilo.
+     * @return Storico del profilo.
+     */
+    public synchronized MatchHistory getStorico(String nome) {
+        return storici.computeIfAbsent(nome, k -> new MatchHistory());
+    }
+
+    /**
+     * Restituisce i nomi dei profili che hanno uno storico.
+     * @return Copia dei nomi dei profili.
+     */
+    public synchronized List<String> getProfili() {
+        return new ArrayList<>(storici.keySet());
+    }
+
+    /**
+     * Aggiunge una partita allo storico di un profilo e ne pianifica la scrittura su disco.
+     * @param nome Nome del profilo.
+     * @param partita Riga da aggiungere.
+     */
+    public synchronized void registra(String nome, MatchHistory.Partita partita) {
+        getStorico(nome).aggiungi(partita);
+        ByteBuffer riga = codifica(nome, partita);
+        if (!scrittore.isShutdown()) {
+            scrittore.execute(() -> scriviInCoda(riga));
+        }
+    }
+
+    private static ByteBuffer codifica(String nome, MatchHistory.Partita partita) {
+        byte[] byteNome = nome.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer riga = ByteBuffer.allocate(Short.BYTES + byteNome.length + DIMENSIONE_RIGA);
+        riga.putShort((short) byteNome.length).put(byteNome);
+        riga.putLong(partita.data()).put((byte) ((partita.dueControDue() ? 1 : 0) | (partita.esito() + 1) << 1));
+        riga.putShort((short) partita.punti()).putShort((short) partita.preseVinte())
+                .put((byte) partita.avversario().ordinal()).putInt(partita.durataMillis());
+        return riga.flip();
+    }
+
+    /**
+     * Scrive una riga in coda, sul thread di servizio. La fine dell'archivio avanza solo se la scrittura riesce;
+     * altrimenti il file viene troncato alla fine precedente, così una riga parziale non precede le successive.
+     */
+    private void scriviInCoda(ByteBuffer riga) {
+        try {
+            scriviTutto(canale, riga, fine);
+            fine += riga.limit();
+        } catch (IOException e) {
+            try {
+                canale.truncate(fine);
+            } catch (IOException troncamento) {
+                e.addSuppressed(troncamento);
+            }
+            e.printStackTrace();
+        }
+    }
+
+    private static void scriviTutto(FileChannel destinazione, ByteBuffer dati, long posizione) throws IOException {
+        while (dati.hasRemaining()) {
+            posizione += destinazione.write(dati, posizione);
+        }
+    }
+
+    /**
+     * Attende le scritture pianificate e chiude l'archivio; le partite registrate dopo non vengono scritte.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        scrittore.shutdown();
+        try {
+            scrittore.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (canale.isOpen()) {
+            canale.force(false);
+            canale.close();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package utils;
+
+import model.BotPlayer;
+import model.Card;
+import model.GameState;
+import model.MatchManager;
+import model.Player;
+import model.RoundManager;
+import model.ScoringStrategy;
+import model.Team;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Diario della partita in corso, per riprenderla dopo una chiusura improvvisa del programma.
+ * All'inizio di ogni round il diario viene compattato: un nuovo file con intestazione, etichetta
+ * (il profilo che gioca), data di inizio della partita, prese vinte da ciascuna parte nei round conclusi,
+ * lo stato completo ({@link GameState#scriviIn}) e l'ordine delle carte in ogni mano
+ * sostituisce atomicamente il precedente: l'ordine conta perché i bot scorrono la mano per scegliere la carta.
+ * Ogni giocata e ogni pescata aggiunge poi un byte (tipo nei due bit alti, carta nei sei bassi).
+ * Gli eventi restano in memoria e vengono scritti su disco con un'unica sincronizzazione quando se ne accumulano
+ * {@link #EVENTI_PER_SINCRONIZZAZIONE}, prima di attendere una giocata umana e subito dopo averla ricevuta.
+ * Scritture, sincronizzazioni e compattazioni avvengono in ordine su un thread di servizio, così il thread
+ * dell'interfaccia non attende il disco: {@link #sincronizza()} restituisce una conferma, e chi attende
+ * la conferma prima di chiedere la giocata umana successiva non perde mai una giocata umana in una ripresa,
+ * al più le pescate e le giocate dei bot successive all'ultima sincronizzazione.
+ * A partita finita o abbandonata il diario viene cancellato.
+ */
+public class MatchJournal implements MatchObserver, Closeable {
+
+    private static final int FIRMA = 0x4A544A4E;
+    private static final int VERSIONE = 2;
+
+    /**
+     * Numero di eventi accumulati oltre il quale il diario viene sincronizzato su disco.
+     */
+    public static final int EVENTI_PER_SINCRONIZZAZIONE = 16;
+
+    private static final int GIOCATA = 0x40;
+    private static final int PESCATA = 0x80;
+    private static final int MASCHERA_TIPO = 0xC0;
+    private static final int MASCHERA_CARTA = 0x3F;
+
+    private final Path file;
+    private final ByteBuffer eventi = ByteBuffer.allocate(EVENTI_PER_SINCRONIZZAZIONE);
+    private final ExecutorService scrittore;
+    /**
+     * File aperto in aggiunta; è usato solo dal thread di servizio.
+     */
+    private FileChannel canale;
+    private MatchManager partita;
+    private byte[] etichetta;
+    private long inizioPartita;
+    private final int[] preseVinte = new int[2];
+    private boolean roundSalvato;
+
+    /**
+     * Partita interrotta letta dal diario: stato all'inizio del round ed eventi successivi.
+     * @param etichetta Etichetta registrata con la partita.
+     * @param inizioPartita Data di inizio della partita, in millisecondi dall'epoca.
+     * @param preseVinte Prese vinte da ciascuna parte nei round conclusi prima di quello in corso.
+     * @param inizioRound Stato all'inizio del round in corso.
+     * @param maniInOrdine Mani di ciascun posto all'inizio del round, nell'ordine in cui erano tenute.
+     * @param eventi Giocate e pescate del round, nell'ordine.
+     */
+    public record Ripresa(String etichetta, long inizioPartita, int[] preseVinte, GameState inizioRound,
+                          List<List<Card>> maniInOrdine, byte[] eventi) {
+
+        /**
+         * Restituisce il numero di giocatori della partita interrotta.
+         * @return 2 o 4.
+         */
+        public int numeroGiocatori() {
+            return inizioRound.getNumeroGiocatori();
+        }
+
+        /**
+         * Riporta una partita al punto dell'interruzione: importa lo stato di inizio round e rigioca le giocate,
+         * così gli osservatori già collegati (ad esempio la memoria dei bot) ricevono gli stessi eventi
+         * della partita originale. Il turno non viene avviato: va fatto con {@link MatchManager#riprendiTurno()}.
+         * @param partita Partita nuova con gli stessi giocatori e la stessa disposizione delle squadre.
+         * @throws IllegalStateException se le giocate o le pescate non sono coerenti con lo stato.
+         */
+        public void applica(MatchManager partita) {
+            partita.importaStato(inizioRound);
+            for (int posto = 0; posto < maniInOrdine.size(); posto++) {
+                Player giocatore = partita.getPlayers().get(posto);
+                giocatore.setMano(new ArrayList<>(maniInOrdine.get(posto)));
+                if (giocatore.getManoMask() != inizioRound.getMano(posto)) {
+                    throw new IllegalStateException("Ordine della mano non coerente con lo stato: posto " + posto);
+                }
+            }
+            for (byte evento : eventi) {
+                Card carta = Card.fromId(evento & MASCHERA_CARTA);
+                if ((evento & MASCHERA_TIPO) == GIOCATA) {
+                    partita.playCard(partita.getGiocatoreDiTurno(), carta);
+                } else if (partita.getPlayers().stream().noneMatch(p -> p.haCarta(carta))) {
+                    throw new IllegalStateException("Pescata non coerente con il mazzo: " + carta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea il diario sul file indicato; il file viene creato alla prima partita registrata.
+     * @param file File del diario.
+     */
+    public MatchJournal(Path file) {
+        this.file = file;
+        this.scrittore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "journal-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Legge la partita interrotta registrata nel diario.
+     * @param scoring Strategia di punteggio della partita.
+     * @return Partita da riprendere, oppure null se il diario non esiste.
+     * @throws IOException se il diario non è leggibile o è danneggiato.
+     */
+    public Ripresa leggi(ScoringStrategy scoring) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        ByteBuffer contenuto = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (contenuto.getInt() != FIRMA || contenuto.get() != VERSIONE) {
+                throw new IOException("Il file non è un diario di partita supportato");
+            }
+            byte[] nome = new byte[contenuto.getShort()];
+            contenuto.get(nome);
+            long inizio = contenuto.getLong();
+            int[] prese = { contenuto.getShort(), contenuto.getShort() };
+            GameState stato = GameState.leggiDa(contenuto, scoring);
+            List<List<Card>> mani = new ArrayList<>(stato.getNumeroGiocatori());
+            for (int posto = 0; posto < stato.getNumeroGiocatori(); posto++) {
+                int carte = contenuto.get();
+                List<Card> mano = new ArrayList<>(carte);
+                for (int i = 0; i < carte; i++) {
+                    mano.add(Card.fromId(contenuto.get()));
+                }
+                mani.add(mano);
+            }
+            byte[] registrati = new byte[contenuto.remaining()];
+            contenuto.get(registrati);
+            for (byte evento : registrati) {
+                int tipo = evento & MASCHERA_TIPO;
+                if ((tipo != GIOCATA && tipo != PESCATA) || (evento & MASCHERA_CARTA) >= Card.NUMERO_CARTE) {
+                    throw new IOException("Evento non valido nel diario: " + evento);
+                }
+            }
+            return new Ripresa(new String(nome, StandardCharsets.UTF_8), inizio, prese, stato, mani, registrati);
+        } catch (RuntimeException e) {
+            throw new IOException("Diario di partita danneggiato", e);
+        }
+    }
+
+    /**
+     * Inizia il diario di una nuova partita, prima del suo primo round; il diario precedente viene sostituito.
+     * @param partita Partita da registrare.
+     * @param etichetta Etichetta da conservare con la partita, ad esempio il nome del profilo.
+     * @param inizioPartita Data di inizio della partita, in millisecondi dall'epoca.
+     */
+    public void registra(MatchManager partita, String etichetta, long inizioPartita) {
+        eventi.clear();
+        accoda(this::chiudiCanale);
+        this.partita = partita;
+        this.etichetta = etichetta.getBytes(StandardCharsets.UTF_8);
+        this.inizioPartita = inizioPartita;
+        this.preseVinte[0] = 0;
+        this.preseVinte[1] = 0;
+        this.roundSalvato = false;
+        partita.addObserver(this);
+    }
+
+    /**
+     * Riprende il diario di una partita riportata al punto dell'interruzione con {@link Ripresa#applica}:
+     * i nuovi eventi vengono aggiunti in coda a quelli già registrati.
+     * @param partita Partita ripresa.
+     * @param ripresa Partita interrotta letta dal diario, con etichetta, inizio e prese dei round conclusi.
+     * @throws IOException se il diario non può essere riaperto.
+     */
+    public void riprendi(MatchManager partita, Ripresa ripresa) throws IOException {
+        FileChannel aperto = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        eventi.clear();
+        accoda(() -> {
+            chiudiCanale();
+            canale = aperto;
+        });
+        this.partita = partita;
+        this.etichetta = ripresa.etichetta().getBytes(StandardCharsets.UTF_8);
+        this.inizioPartita = ripresa.inizioPartita();
+        this.preseVinte[0] = ripresa.preseVinte()[0];
+        this.preseVinte[1] = ripresa.preseVinte()[1];
+        RoundManager round = partita.getRoundManager();
+        for (int k = 0; k < round.getPreseChiuse(); k++) {
+            preseVinte[partita.getLedger().getParteDelPosto(round.getVincitorePresa(k))]++;
+        }
+        this.roundSalvato = true;
+        partita.addObserver(this);
+    }
+
+    /**
+     * Affida al thread di servizio gli eventi accumulati, da scrivere e sincronizzare su disco.
+     * @return Conferma, completata quando gli eventi e tutte le scritture affidate in precedenza sono su disco;
+     *         completata con errore se una scrittura fallisce o se il diario è chiuso.
+     */
+    public CompletableFuture<Void> sincronizza() {
+        byte[] daScrivere = new byte[eventi.position()];
+        eventi.flip().get(daScrivere);
+        eventi.clear();
+        return accoda(() -> {
+            if (canale == null || daScrivere.length == 0) return;
+            scriviTutto(canale, ByteBuffer.wrap(daScrivere));
+            canale.force(false);
+        });
+    }
+
+    /**
+     * Smette di registrare la partita corrente e cancella il diario, che non verrà più ripreso.
+     */
+    public void abbandona() {
+        partita = null;
+        eventi.clear();
+        accoda(() -> {
+            chiudiCanale();
+            Files.deleteIfExists(file);
+        });
+    }
+
+    /**
+     * Compatta il diario con lo stato all'inizio del round: lo stato viene letto subito,
+     * la sostituzione atomica del file avviene sul thread di servizio.
+     * Gli eventi del round precedente non ancora scritti sono superati dal nuovo stato.
+     */
+    private void salvaInizioRound() {
+        ByteBuffer intestazione = ByteBuffer.allocate(Integer.BYTES + 1 + Short.BYTES + etichetta.length
+                + Long.BYTES + 2 * Short.BYTES + GameState.DIMENSIONE_BINARIA_MASSIMA + RoundManager.MAX_GIOCATE * (1 + Card.NUMERO_CARTE / 4));
+        intestazione.putInt(FIRMA).put((byte) VERSIONE).putShort((short) etichetta.length).put(etichetta);
+        intestazione.putLong(inizioPartita).putShort((short) preseVinte[0]).putShort((short) preseVinte[1]);
+        partita.esportaStato().scriviIn(intestazione);
+        for (Player giocatore : partita.getPlayers()) {
+            intestazione.put((byte) giocatore.getMano().size());
+            for (Card carta : giocatore.getMano()) {
+                intestazione.put((byte) carta.getId());
+            }
+        }
+        intestazione.flip();
+        eventi.clear();
+        accoda(() -> sostituisci(intestazione));
+    }
+
+    /**
+     * Sostituisce il file con il solo stato di inizio round, tramite un file temporaneo e una rinomina atomica,
+     * sul thread di servizio. Se la sostituzione fallisce il diario del round precedente viene cancellato,
+     * perché riprenderlo riporterebbe la partita indietro.
+     */
+    private void sostituisci(ByteBuffer intestazione) throws IOException {
+        chiudiCanale();
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel nuovo = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                scriviTutto(nuovo, intestazione);
+                nuovo.force(true);
+            }
+            try {
+                Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            canale = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException cancellazione) {
+                e.addSuppressed(cancellazione);
+            }
+            throw e;
+        }
+    }
+
+    private void registraEvento(int tipo, Card carta) {
+        if (partita == null) return;
+        eventi.put((byte) (tipo | carta.getId()));
+        if (!eventi.hasRemaining()) {
+            sincronizza();
+        }
+    }
+
+    private interface Scrittura {
+        void esegui() throws IOException;
+    }
+
+    /**
+     * Affida un'operazione sul file al thread di servizio.
+     * @return Conferma dell'operazione.
+     */
+    private CompletableFuture<Void> accoda(Scrittura scrittura) {
+        CompletableFuture<Void> conferma = new CompletableFuture<>();
+        if (scrittore.isShutdown()) {
+            conferma.completeExceptionally(new IOException("Diario della partita chiuso"));
+            return conferma;
+        }
+        scrittore.execute(() -> {
+            try {
+                scrittura.esegui();
+                conferma.complete(null);
+            } catch (IOException e) {
+                e.printStackTrace();
+                conferma.completeExceptionally(e);
+            }
+        });
+        return conferma;
+    }
+
+    private static void scriviTutto(FileChannel destinazione, ByteBuffer dati) throws IOException {
+        while (dati.hasRemaining()) {
+            destinazione.write(dati);
+        }
+    }
+
+    /**
+     * Chiude il file, sul thread di servizio.
+     */
+    private void chiudiCanale() throws IOException {
+        if (canale == null) return;
+        try {
+            canale.close();
+        } finally {
+            canale = null;
+        }
+    }
+
+    /**
+     * Sincronizza gli eventi in sospeso, attende le scritture pianificate e chiude il file;
+     * il diario resta su disco per la ripresa. Gli eventi successivi non vengono registrati.
+     */
+    @Override
+    public void close() {
+        partita = null;
+        sincronizza();
+        accoda(this::chiudiCanale);
+        scrittore.shutdown();
+        try {
+            scrittore.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * All'inizio del round compatta il diario; prima di attendere una giocata umana lo sincronizza.
+     * Il controller che chiede la giocata attende la conferma di {@link #sincronizza()}.
+     */
+    @Override
+    public void onTurnStart(Player currentPlayer) {
+        if (partita == null) return;
+        if (!roundSalvato && partita.getRoundManager().getNumeroGiocate() == 0) {
+            salvaInizioRound();
+            roundSalvato = true;
+        }
+        if (!(currentPlayer instanceof BotPlayer)) {
+            sincronizza();
+        }
+    }
+
+    /**
+     * Registra la giocata e, se è di un giocatore umano, la sincronizza subito su disco.
+     */
+    @Override
+    public void onCardPlayed(Player player, Card card) {
+        registraEvento(GIOCATA, card);
+        if (partita != null && !(player instanceof BotPlayer)) {
+            sincronizza();
+        }
+    }
+
+    @Override
+    public void onCardDrawn(Player player, Card card, boolean revealTemporaneo) {
+        registraEvento(PESCATA, card);
+    }
+
+    @Override
+    public void onRoundEnd() {
+        roundSalvato = false;
+    }
+
+    @Override
+    public void onMatchEndGiocatore(Player winnerOrNullOnTie) {
+        if (partita != null) abbandona();
+    }
+
+    @Override
+    public void onMatchEndSquadra(Team winnerOrNullOnTie) {
+        if (partita != null) abbandona();
+    }
+
+    /**
+     * Conta la presa per la parte del vincitore; il conteggio entra nel diario all'inizio del round successivo.
+     */
+    @Override
+    public void onTrickEnd(Player winner, int points) {
+        if (partita == null) return;
+        preseVinte[partita.getLedger().getParteDelPosto(partita.getPlayers().indexOf(winner))]++;
+    }
+
+    @Override
+    public void onScoreUpdateGiocatori(Map<Player, Integer> scores) { }
+
+    @Override
+    public void onScoreUpdateSquadre(Map<Team, Integer> scores) { }
+}
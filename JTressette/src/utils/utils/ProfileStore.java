@@ -0,0 +1,332 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Archivio dei profili in sola aggiunta con indice in memoria.
+ * Il file inizia con firma e versione; ogni salvataggio aggiunge in coda un record
+ * (lunghezza, CRC32, versione del record, nome, avatar e statistiche) e sposta sul nuovo record
+ * la voce dell'indice nome → posizione. Caricare o salvare un profilo costa quindi una lettura o una scrittura
+ * indipendente dal numero di profili. All'apertura il file viene scandito una volta per costruire l'indice;
+ * un record incompleto in coda, lasciato da una chiusura improvvisa, viene scartato.
+ * Quando i record superati diventano più di quelli validi il file viene compattato: i soli record validi
+ * vengono scritti in un file temporaneo che sostituisce l'archivio con una rinomina atomica.
+ * Una compattazione fallita lascia l'archivio originale aperto e non fa fallire il salvataggio che l'ha avviata.
+ */
+public class ProfileStore implements Closeable {
+
+    private static final int FIRMA = 0x4A545053;
+    private static final int VERSIONE = 1;
+    private static final int DIMENSIONE_INTESTAZIONE = 5;
+    private static final int VERSIONE_RECORD = 1;
+    private static final int INTESTAZIONE_RECORD = 2 * Integer.BYTES;
+    private static final int MINIMO_PER_COMPATTARE = 1024;
+
+    private final Path file;
+    private final Map<String, Long> indice = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private FileChannel canale;
+    private long fine;
+    private int superati;
+
+    /**
+     * Apre l'archivio, creandolo se non esiste, e ne costruisce l'indice.
+     * @param file File dell'archivio.
+     * @throws IOException se il file non è leggibile o non è un archivio di profili.
+     */
+    public ProfileStore(Path file) throws IOException {
+        this.file = file;
+        apri();
+    }
+
+    private void apri() throws IOException {
+        canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            indice.clear();
+            superati = 0;
+            if (canale.size() == 0) {
+                ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+                intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+                scriviTutto(canale, intestazione, 0);
+                fine = DIMENSIONE_INTESTAZIONE;
+            } else {
+                ByteBuffer intestazione = leggi(0, DIMENSIONE_INTESTAZIONE);
+                if (intestazione == null || intestazione.getInt() != FIRMA || intestazione.get() != VERSIONE) {
+                    throw new IOException("Il file non è un archivio di profili supportato");
+                }
+                costruisciIndice();
+            }
+        } catch (IOException | RuntimeException e) {
+            canale.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Scandisce i record validi; il primo record incompleto o corrotto chiude l'archivio e viene troncato.
+     */
+    private void costruisciIndice() throws IOException {
+        long dimensione = canale.size();
+        long posizione = DIMENSIONE_INTESTAZIONE;
+        while (posizione < dimensione) {
+            ByteBuffer record = leggiRecord(posizione);
+            if (record == null) {
+                break;
+            }
+            String nome = leggiNome(record);
+            if (indice.put(nome, posizione) != null) {
+                superati++;
+            }
+            posizione += INTESTAZIONE_RECORD + record.limit();
+        }
+        if (posizione < dimensione) {
+            canale.truncate(posizione);
+        }
+        fine = posizione;
+    }
+
+    /**
+     * Carica un profilo.
+     * @param nome Nome del profilo.
+     * @return Profilo salvato più di recente con quel nome, oppure null se non esiste.
+     * @throws IOException se la lettura fallisce o il record è corrotto.
+     */
+    public synchronized UserProfile carica(String nome) throws IOException {
+        Long posizione = indice.get(nome);
+        if (posizione == null) {
+            return null;
+        }
+        ByteBuffer record = leggiRecord(posizione);
+        if (record == null) {
+            throw new IOException("Record del profilo corrotto: " + nome);
+        }
+        leggiNome(record);
+        return decodifica(nome, record);
+    }
+
+    /**
+     * Indica se esiste un profilo con il nome indicato.
+     * @param nome Nome del profilo.
+     * @return true se il profilo è stato salvato.
+     */
+    public synchronized boolean contiene(String nome) {
+        return indice.containsKey(nome);
+    }
+
+    /**
+     * Restituisce il numero di profili salvati.
+     * @return Profili distinti.
+     */
+    public synchronized int size() {
+        return indice.size();
+    }
+
+    /**
+     * Salva un profilo aggiungendo un record in coda.
+     * @param profilo Profilo da salvare.
+     * @throws IOException se la scrittura fallisce.
+     */
+    public synchronized void salva(UserProfile profilo) throws IOException {
+        scrivi(List.of(profilo));
+    }
+
+    /**
+     * Salva più profili con un'unica scrittura.
+     * @param profili Profili da salvare.
+     * @throws IOException se la scrittura fallisce.
+     */
+    public synchronized void salvaTutti(Collection<UserProfile> profili) throws IOException {
+        scrivi(profili);
+    }
+
+    /**
+     * Codifica i profili, li scrive in coda con un'unica scrittura e solo dopo aggiorna indice e fine dell'archivio.
+     * Se la scrittura fallisce il file viene troncato alla fine precedente e l'indice resta invariato.
+     * Un errore della compattazione successiva non viene propagato: i profili sono già salvati.
+     */
+    private void scrivi(Collection<UserProfile> profili) throws IOException {
+        buffer.clear();
+        String[] nomi = new String[profili.size()];
+        int[] inizi = new int[profili.size()];
+        int i = 0;
+        for (UserProfile profilo : profili) {
+            nomi[i] = profilo.getNome();
+            inizi[i++] = accoda(profilo);
+        }
+        buffer.flip();
+        int lunghezza = buffer.remaining();
+        try {
+            scriviTutto(canale, buffer, fine);
+        } catch (IOException e) {
+            try {
+                canale.truncate(fine);
+            } catch (IOException troncamento) {
+                e.addSuppressed(troncamento);
+            }
+            throw e;
+        }
+        for (i = 0; i < nomi.length; i++) {
+            if (indice.put(nomi[i], fine + inizi[i]) != null) {
+                superati++;
+            }
+        }
+        fine += lunghezza;
+        try {
+            compattaSeServe();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Codifica un profilo in coda al buffer.
+     * @return Posizione del record nel buffer.
+     */
+    private int accoda(UserProfile profilo) {
+        byte[] nome = profilo.getNome().getBytes(StandardCharsets.UTF_8);
+        byte[] avatar = profilo.getAvatarPath() == null ? null : profilo.getAvatarPath().getBytes(StandardCharsets.UTF_8);
+        int lunghezza = 1 + Short.BYTES + nome.length + Short.BYTES + (avatar == null ? 0 : avatar.length) + 2 * Integer.BYTES;
+        if (buffer.remaining() < INTESTAZIONE_RECORD + lunghezza) {
+            ByteBuffer nuovo = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + INTESTAZIONE_RECORD + lunghezza));
+            buffer = nuovo.put(buffer.flip());
+        }
+        int inizio = buffer.position();
+        buffer.putInt(lunghezza).putInt(0).put((byte) VERSIONE_RECORD);
+        buffer.putShort((short) nome.length).put(nome);
+        if (avatar == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) avatar.length).put(avatar);
+        }
+        buffer.putInt(profilo.getPartiteGiocate()).putInt(profilo.getPartiteVinte());
+        crc.reset();
+        crc.update(buffer.array(), inizio + INTESTAZIONE_RECORD, lunghezza);
+        buffer.putInt(inizio + Integer.BYTES, (int) crc.getValue());
+        return inizio;
+    }
+
+    /**
+     * Legge il contenuto di un record verificandone lunghezza e CRC.
+     * @return Contenuto del record, oppure null se incompleto o corrotto.
+     */
+    private ByteBuffer leggiRecord(long posizione) throws IOException {
+        ByteBuffer intestazione = leggi(posizione, INTESTAZIONE_RECORD);
+        if (intestazione == null) {
+            return null;
+        }
+        int lunghezza = intestazione.getInt();
+        int atteso = intestazione.getInt();
+        if (lunghezza <= 0 || posizione + INTESTAZIONE_RECORD + lunghezza > canale.size()) {
+            return null;
+        }
+        ByteBuffer record = leggi(posizione + INTESTAZIONE_RECORD, lunghezza);
+        crc.reset();
+        crc.update(record.array(), 0, lunghezza);
+        return (int) crc.getValue() == atteso ? record : null;
+    }
+
+    private ByteBuffer leggi(long posizione, int lunghezza) throws IOException {
+        ByteBuffer letto = ByteBuffer.allocate(lunghezza);
+        while (letto.hasRemaining()) {
+            if (canale.read(letto, posizione + letto.position()) < 0) {
+                return null;
+            }
+        }
+        return letto.flip();
+    }
+
+    private static String leggiNome(ByteBuffer record) throws IOException {
+        int versione = record.get();
+        if (versione != VERSIONE_RECORD) {
+            throw new IOException("Versione del record non supportata: " + versione);
+        }
+        byte[] nome = new byte[record.getShort()];
+        record.get(nome);
+        return new String(nome, StandardCharsets.UTF_8);
+    }
+
+    private static UserProfile decodifica(String nome, ByteBuffer record) {
+        int lunghezzaAvatar = record.getShort();
+        String avatar = null;
+        if (lunghezzaAvatar >= 0) {
+            byte[] byteAvatar = new byte[lunghezzaAvatar];
+            record.get(byteAvatar);
+            avatar = new String(byteAvatar, StandardCharsets.UTF_8);
+        }
+        UserProfile profilo = new UserProfile(nome, record.getInt(), record.getInt());
+        profilo.setAvatarPath(avatar);
+        return profilo;
+    }
+
+    private static void scriviTutto(FileChannel destinazione, ByteBuffer dati, long posizione) throws IOException {
+        while (dati.hasRemaining()) {
+            posizione += destinazione.write(dati, posizione);
+        }
+    }
+
+    private void compattaSeServe() throws IOException {
+        if (superati > MINIMO_PER_COMPATTARE && superati > indice.size()) {
+            compatta();
+        }
+    }
+
+    /**
+     * Riscrive l'archivio con i soli record validi e lo sostituisce con una rinomina atomica.
+     * @throws IOException se la riscrittura fallisce; in tal caso l'archivio originale resta intatto e aperto.
+     */
+    public synchronized void compatta() throws IOException {
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel nuovo = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+            intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+            long posizione = DIMENSIONE_INTESTAZIONE;
+            scriviTutto(nuovo, intestazione, 0);
+            for (long vecchia : indice.values()) {
+                ByteBuffer lunghezza = leggi(vecchia, Integer.BYTES);
+                int totale = INTESTAZIONE_RECORD + lunghezza.getInt();
+                ByteBuffer record = leggi(vecchia, totale);
+                scriviTutto(nuovo, record, posizione);
+                posizione += totale;
+            }
+            nuovo.force(true);
+        }
+        canale.close();
+        try {
+            try {
+                Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            apri();
+        }
+    }
+
+    /**
+     * Forza su disco i record scritti e chiude l'archivio.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (canale.isOpen()) {
+            canale.force(true);
+            canale.close();
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Classifica con valutazioni Glicko per i profili umani, per ogni tipo di bot e per le coppie del 2vs2.
+ * Ogni partecipante ha una valutazione e una deviazione, che cresce nei periodi di inattività
+ * ({@link #PERIODO_MILLIS}) e cala giocando. Ogni partecipante viene valutato contro la parte avversaria,
+ * rappresentata dalla media delle valutazioni dei suoi membri; una chiave compare al più una volta per risultato.
+ * In 2vs2 il profilo gioca in coppia con un bot che ha la stessa chiave dei bot avversari: la sua parte è
+ * quindi la coppia ({@link #squadra}), valutata come un partecipante a sé, e la valutazione del profilo
+ * ({@link #umano}) riguarda le sole partite 1vs1.
+ * La classifica è ordinata per valutazione prudente ({@link Valutazione#prudente()}), così chi ha giocato poche
+ * partite non scavalca chi ha una valutazione affidabile; un {@link LeaderboardIndex} la mantiene ordinata
+ * e primi k e posizione di un giocatore costano O(log n).
+ * <p>
+ * Il file inizia con firma e versione, seguite da un record per ogni aggiornamento (chiave, valutazione,
+ * deviazione, partite, data dell'ultima partita); all'apertura vale l'ultimo record di ogni chiave e, se i record
+ * superati sono la maggioranza, il file viene riscritto. Le scritture avvengono su un thread di servizio.
+ */
+public class RatingLadder implements Closeable {
+
+    /**
+     * Valutazione di un partecipante mai valutato.
+     */
+    public static final double VALUTAZIONE_INIZIALE = 1500;
+    /**
+     * Deviazione di un partecipante mai valutato, che è anche la deviazione massima.
+     */
+    public static final double DEVIAZIONE_INIZIALE = 350;
+    /**
+     * Durata di un periodo di valutazione: la deviazione cresce per ogni periodo senza partite
+     * e il ricalcolo in blocco tratta come simultanee le partite dello stesso periodo.
+     */
+    public static final long PERIODO_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final double DEVIAZIONE_MINIMA = 30;
+    private static final double INCERTEZZA_PER_PERIODO = 34.6;
+    private static final double Q = Math.log(10) / 400;
+    private static final char UMANO = 'U';
+    private static final char BOT = 'B';
+    private static final char SQUADRA = 'S';
+
+    private static final int FIRMA = 0x4A54524C;
+    private static final int VERSIONE = 1;
+    private static final int DIMENSIONE_INTESTAZIONE = 5;
+    private static final int MINIMO_PER_COMPATTARE = 1024;
+
+    /**
+     * Valutazione di un partecipante.
+     * @param chiave Chiave del partecipante, creata con {@link #umano} o {@link #bot}.
+     * @param valutazione Valutazione Glicko.
+     * @param deviazione Deviazione della valutazione.
+     * @param partite Partite valutate.
+     * @param ultimaPartita Data dell'ultima partita valutata, in millisecondi dall'epoca.
+     */
+    public record Valutazione(String chiave, double valutazione, double deviazione, int partite, long ultimaPartita) {
+
+        /**
+         * Restituisce il nome del profilo, del tipo di bot o della coppia.
+         * @return Nome del partecipante.
+         */
+        public String nome() {
+            return chiave.substring(1);
+        }
+
+        /**
+         * Indica se il partecipante è un tipo di bot.
+         * @return true per i bot.
+         */
+        public boolean isBot() {
+            return chiave.charAt(0) == BOT;
+        }
+
+        /**
+         * Restituisce la valutazione prudente, usata per ordinare la classifica: due deviazioni sotto la valutazione.
+         * @return Valutazione meno due deviazioni.
+         */
+        public double prudente() {
+            return valutazione - 2 * deviazione;
+        }
+    }
+
+    /**
+     * Esito di una partita tra due parti.
+     * @param parteA Chiavi dei giocatori della prima parte.
+     * @param parteB Chiavi dei giocatori della seconda parte.
+     * @param esitoA 1 se vince la prima parte, 0.5 in caso di pareggio, 0 se vince la seconda.
+     * @param data Data della partita, in millisecondi dall'epoca.
+     */
+    public record Risultato(List<String> parteA, List<String> parteB, double esitoA, long data) {
+    }
+
+    private final Path file;
+    private final Map<String, Valutazione> valutazioni = new HashMap<>();
+    private final LeaderboardIndex classifica = new LeaderboardIndex();
+    private final ExecutorService scrittore;
+    private FileChannel canale;
+    /**
+     * Fine dei dati scritti; dopo l'apertura è letta e aggiornata solo dal thread di servizio.
+     */
+    private long fine;
+
+    /**
+     * Apre la classifica, creandola se non esiste.
+     * @param file File della classifica.
+     * @throws IOException se il file non è leggibile o non è una classifica.
+     */
+    public RatingLadder(Path file) throws IOException {
+        this.file = file;
+        this.canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (canale.size() == 0) {
+                ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+                intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+                scriviTutto(canale, intestazione, 0);
+                fine = DIMENSIONE_INTESTAZIONE;
+            } else {
+                int superati = carica();
+                if (superati > MINIMO_PER_COMPATTARE && superati > valutazioni.size()) {
+                    riscrivi(codificaTutte());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            canale.close();
+            throw e;
+        }
+        this.scrittore = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "rating-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Restituisce la chiave di un profilo umano.
+     * @param nomeProfilo Nome del profilo.
+     * @return Chiave del partecipante.
+     */
+    public static String umano(String nomeProfilo) {
+        return UMANO + nomeProfilo;
+    }
+
+    /**
+     * Restituisce la chiave di un tipo di bot.
+     * @param tipo Tipo di bot.
+     * @return Chiave del partecipante.
+     */
+    public static String bot(MatchHistory.TipoAvversario tipo) {
+        return BOT + tipo.name();
+    }
+
+    /**
+     * Restituisce la chiave della coppia formata da un profilo e dal suo alleato nel 2vs2.
+     * @param nomeProfilo Nome del profilo.
+     * @param alleato Tipo del bot alleato.
+     * @return Chiave del partecipante.
+     */
+    public static String squadra(String nomeProfilo, MatchHistory.TipoAvversario alleato) {
+        return SQUADRA + nomeProfilo + " + " + alleato.name();
+    }
+
+    /**
+     * Legge tutti i record, tronca l'eventuale record incompleto in coda e costruisce la classifica.
+     * @return Numero di record superati da un record successivo della stessa chiave.
+     */
+    private int carica() throws IOException {
+        long dimensione = canale.size();
+        if (dimensione > Integer.MAX_VALUE) {
+            throw new IOException("Classifica troppo grande");
+        }
+        ByteBuffer contenuto = ByteBuffer.allocate((int) dimensione);
+        while (contenuto.hasRemaining()) {
+            if (canale.read(contenuto, contenuto.position()) < 0) {
+                break;
+            }
+        }
+        contenuto.flip();
+        if (contenuto.remaining() < DIMENSIONE_INTESTAZIONE || contenuto.getInt() != FIRMA || contenuto.get() != VERSIONE) {
+            throw new IOException("Il file non è una classifica supportata");
+        }
+        int superati = 0;
+        int valida = contenuto.position();
+        try {
+            while (contenuto.hasRemaining()) {
+                byte[] chiave = new byte[contenuto.getShort()];
+                contenuto.get(chiave);
+                Valutazione v = new Valutazione(new String(chiave, StandardCharsets.UTF_8),
+                        contenuto.getDouble(), contenuto.getDouble(), contenuto.getInt(), contenuto.getLong());
+                if (valutazioni.put(v.chiave(), v) != null) {
+                    superati++;
+                }
+                valida = contenuto.position();
+            }
+        } catch (BufferUnderflowException | NegativeArraySizeException e) {
+            // record incompleto in coda: viene scartato
+        }
+        if (valida < dimensione) {
+            canale.truncate(valida);
+        }
+        fine = valida;
+        for (Valutazione v : valutazioni.values()) {
+            classifica.inserisci(v.chiave(), v.prudente());
+        }
+        return superati;
+    }
+
+    /**
+     * Aggiorna le valutazioni dei partecipanti di una partita appena conclusa.
+     * @param risultato Esito della partita.
+     */
+    public synchronized void registraPartita(Risultato risultato) {
+        ByteBuffer record = applicaPeriodo(List.of(risultato), false);
+        accoda(() -> scriviInCoda(record));
+    }
+
+    /**
+     * Ricalcola da zero tutte le valutazioni a partire da un archivio di risultati, sostituendo quelle correnti.
+     * I risultati sono raggruppati per periodo di valutazione: nello stesso periodo ogni partecipante viene
+     * aggiornato rispetto alle valutazioni di inizio periodo, quindi i partecipanti sono elaborati in parallelo.
+     * @param risultati Risultati archiviati, in qualsiasi ordine.
+     */
+    public synchronized void ricalcola(Collection<Risultato> risultati) {
+        for (Valutazione v : valutazioni.values()) {
+            classifica.rimuovi(v.chiave(), v.prudente());
+        }
+        valutazioni.clear();
+        List<Risultato> ordinati = new ArrayList<>(risultati);
+        ordinati.sort(Comparator.comparingLong(Risultato::data));
+        int inizio = 0;
+        while (inizio < ordinati.size()) {
+            long periodo = Math.floorDiv(ordinati.get(inizio).data(), PERIODO_MILLIS);
+            int fineDelPeriodo = inizio;
+            while (fineDelPeriodo < ordinati.size() && Math.floorDiv(ordinati.get(fineDelPeriodo).data(), PERIODO_MILLIS) == periodo) {
+                fineDelPeriodo++;
+            }
+            applicaPeriodo(ordinati.subList(inizio, fineDelPeriodo), true);
+            inizio = fineDelPeriodo;
+        }
+        ByteBuffer tutte = codificaTutte();
+        accoda(() -> riscrivi(tutte));
+    }
+
+    /**
+     * Ricalcola tutte le valutazioni dagli storici delle partite dei profili, con le stesse parti usate dal controller.
+     * Lo storico non registra l'alleato: nel 2vs2 il controller affianca sempre al profilo il bot base.
+     * @param storici Archivio degli storici.
+     */
+    public void ricalcolaDa(MatchHistoryStore storici) {
+        List<Risultato> risultati = new ArrayList<>();
+        for (String nome : storici.getProfili()) {
+            MatchHistory storico = storici.getStorico(nome);
+            for (int i = 0; i < storico.size(); i++) {
+                MatchHistory.Partita partita = storico.getPartita(i);
+                List<String> parteA = List.of(partita.dueControDue()
+                        ? squadra(nome, MatchHistory.TipoAvversario.BOT) : umano(nome));
+                risultati.add(new Risultato(parteA, List.of(bot(partita.avversario())), (partita.esito() + 1) / 2.0, partita.data()));
+            }
+        }
+        ricalcola(risultati);
+    }
+
+    /**
+     * Applica un periodo di valutazione: ogni partecipante è aggiornato con tutte le sue partite del periodo,
+     * contro le squadre avversarie valutate a inizio periodo.
+     * @return Record degli aggiornamenti, da aggiungere al file.
+     * @throws IllegalArgumentException se una chiave compare più di una volta in un risultato.
+     */
+    private ByteBuffer applicaPeriodo(List<Risultato> periodo, boolean parallelo) {
+        long data = periodo.get(periodo.size() - 1).data();
+        Map<String, double[]> iniziali = new HashMap<>();
+        for (Risultato risultato : periodo) {
+            Set<String> presenti = new HashSet<>();
+            for (List<String> parte : List.of(risultato.parteA(), risultato.parteB())) {
+                for (String chiave : parte) {
+                    if (!presenti.add(chiave)) {
+                        throw new IllegalArgumentException("Giocatore presente più di una volta: " + chiave);
+                    }
+                    iniziali.computeIfAbsent(chiave, k -> valutazioneIniziale(k, risultato.data()));
+                }
+            }
+        }
+        Map<String, List<double[]>> incontri = new LinkedHashMap<>();
+        for (Risultato risultato : periodo) {
+            double[] squadraA = composita(risultato.parteA(), iniziali);
+            double[] squadraB = composita(risultato.parteB(), iniziali);
+            for (String chiave : risultato.parteA()) {
+                incontri.computeIfAbsent(chiave, k -> new ArrayList<>())
+                        .add(new double[] { squadraB[0], squadraB[1], risultato.esitoA() });
+            }
+            for (String chiave : risultato.parteB()) {
+                incontri.computeIfAbsent(chiave, k -> new ArrayList<>())
+                        .add(new double[] { squadraA[0], squadraA[1], 1 - risultato.esitoA() });
+            }
+        }
+        Stream<Map.Entry<String, List<double[]>>> partecipanti = incontri.entrySet().stream();
+        if (parallelo) {
+            partecipanti = partecipanti.parallel();
+        }
+        List<Valutazione> aggiornate = partecipanti.map(e -> {
+            Valutazione prima = valutazioni.get(e.getKey());
+            double[] nuova = glicko(iniziali.get(e.getKey()), e.getValue());
+            return new Valutazione(e.getKey(), nuova[0], nuova[1],
+                    (prima == null ? 0 : prima.partite()) + e.getValue().size(), data);
+        }).toList();
+
+        ByteBuffer record = ByteBuffer.allocate(aggiornate.stream().mapToInt(RatingLadder::lunghezzaRecord).sum());
+        for (Valutazione nuova : aggiornate) {
+            Valutazione prima = valutazioni.put(nuova.chiave(), nuova);
+            if (prima != null) {
+                classifica.rimuovi(prima.chiave(), prima.prudente());
+            }
+            classifica.inserisci(nuova.chiave(), nuova.prudente());
+            codifica(nuova, record);
+        }
+        return record.flip();
+    }
+
+    /**
+     * Valutazione e deviazione di un partecipante all'inizio di un periodo; la deviazione cresce con l'inattività.
+     */
+    private double[] valutazioneIniziale(String chiave, long data) {
+        Valutazione v = valutazioni.get(chiave);
+        if (v == null) {
+            return new double[] { VALUTAZIONE_INIZIALE, DEVIAZIONE_INIZIALE };
+        }
+        double periodi = Math.max(0, data - v.ultimaPartita()) / (double) PERIODO_MILLIS;
+        double deviazione = Math.min(DEVIAZIONE_INIZIALE,
+                Math.sqrt(v.deviazione() * v.deviazione() + INCERTEZZA_PER_PERIODO * INCERTEZZA_PER_PERIODO * periodi));
+        return new double[] { v.valutazione(), deviazione };
+    }
+
+    /**
+     * Valutazione di una squadra: media delle valutazioni e media quadratica delle deviazioni dei membri.
+     */
+    private static double[] composita(List<String> parte, Map<String, double[]> iniziali) {
+        double valutazione = 0;
+        double varianza = 0;
+        for (String chiave : parte) {
+            double[] v = iniziali.get(chiave);
+            valutazione += v[0];
+            varianza += v[1] * v[1];
+        }
+        return new double[] { valutazione / parte.size(), Math.sqrt(varianza / parte.size()) };
+    }
+
+    /**
+     * Aggiornamento Glicko di un partecipante con le partite di un periodo.
+     * @param iniziale Valutazione e deviazione di inizio periodo.
+     * @param incontri Per ogni partita: valutazione e deviazione avversaria, punteggio ottenuto.
+     * @return Nuove valutazione e deviazione.
+     */
+    private static double[] glicko(double[] iniziale, List<double[]> incontri) {
+        double somma = 0;
+        double informazione = 0;
+        for (double[] incontro : incontri) {
+            double g = 1 / Math.sqrt(1 + 3 * Q * Q * incontro[1] * incontro[1] / (Math.PI * Math.PI));
+            double atteso = 1 / (1 + Math.pow(10, -g * (iniziale[0] - incontro[0]) / 400));
+            informazione += g * g * atteso * (1 - atteso);
+            somma += g * (incontro[2] - atteso);
+        }
+        double precisione = 1 / (iniziale[1] * iniziale[1]) + Q * Q * informazione;
+        return new double[] { iniziale[0] + Q / precisione * somma,
+                Math.max(DEVIAZIONE_MINIMA, Math.sqrt(1 / precisione)) };
+    }
+
+    /**
+     * Restituisce la valutazione di un partecipante.
+     * @param chiave Chiave creata con {@link #umano} o {@link #bot}.
+     * @return Valutazione, oppure null se il partecipante non ha partite valutate.
+     */
+    public synchronized Valutazione getValutazione(String chiave) {
+        return valutazioni.get(chiave);
+    }
+
+    /**
+     * Restituisce la posizione in classifica di un partecipante, in O(log n).
+     * @param chiave Chiave creata con {@link #umano} o {@link #bot}.
+     * @return Posizione a partire da 1, oppure 0 se il partecipante non è in classifica.
+     */
+    public synchronized int getPosizione(String chiave) {
+        Valutazione v = valutazioni.get(chiave);
+        return v == null ? 0 : classifica.precedenti(chiave, v.prudente()) + 1;
+    }
+
+    /**
+     * Restituisce i primi classificati, in O(k + log n).
+     * @param k Numero massimo di partecipanti.
+     * @return Valutazioni in ordine di classifica.
+     */
+    public synchronized List<Valutazione> getClassifica(int k) {
+        List<Valutazione> primi = new ArrayList<>();
+        for (String chiave : classifica.primi(k)) {
+            primi.add(valutazioni.get(chiave));
+        }
+        return primi;
+    }
+
+    /**
+     * Restituisce il numero di partecipanti in classifica.
+     * @return Partecipanti valutati.
+     */
+    public synchronized int size() {
+        return valutazioni.size();
+    }
+
+    private static int lunghezzaRecord(Valutazione v) {
+        return Short.BYTES + v.chiave().getBytes(StandardCharsets.UTF_8).length
+                + 2 * Double.BYTES + Integer.BYTES + Long.BYTES;
+    }
+
+    private static void codifica(Valutazione v, ByteBuffer destinazione) {
+        byte[] chiave = v.chiave().getBytes(StandardCharsets.UTF_8);
+        destinazione.putShort((short) chiave.length).put(chiave).putDouble(v.valutazione()).putDouble(v.deviazione())
+                .putInt(v.partite()).putLong(v.ultimaPartita());
+    }
+
+    private ByteBuffer codificaTutte() {
+        ByteBuffer tutte = ByteBuffer.allocate(valutazioni.values().stream().mapToInt(RatingLadder::lunghezzaRecord).sum());
+        for (Valutazione v : valutazioni.values()) {
+            codifica(v, tutte);
+        }
+        return tutte.flip();
+    }
+
+    /**
+     * Sostituisce il file con uno contenente solo i record indicati, tramite un file temporaneo e una rinomina atomica.
+     * Se la rinomina fallisce il file originale viene riaperto e resta valido.
+     */
+    private void riscrivi(ByteBuffer record) throws IOException {
+        Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel nuovo = FileChannel.open(temporaneo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+            intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+            scriviTutto(nuovo, intestazione, 0);
+            scriviTutto(nuovo, record, DIMENSIONE_INTESTAZIONE);
+            nuovo.force(true);
+        }
+        canale.close();
+        try {
+            try {
+                Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            canale = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        fine = DIMENSIONE_INTESTAZIONE + record.limit();
+    }
+
+    /**
+     * Scrive i record in coda, sul thread di servizio. La fine del file avanza solo se la scrittura riesce;
+     * altrimenti il file viene troncato alla fine precedente, così un record parziale non precede i successivi.
+     */
+    private void scriviInCoda(ByteBuffer record) throws IOException {
+        try {
+            scriviTutto(canale, record, fine);
+            fine += record.limit();
+        } catch (IOException e) {
+            try {
+                canale.truncate(fine);
+            } catch (IOException troncamento) {
+                e.addSuppressed(troncamento);
+            }
+            throw e;
+        }
+    }
+
+    private interface Scrittura {
+        void esegui() throws IOException;
+    }
+
+    private void accoda(Scrittura scrittura) {
+        if (scrittore.isShutdown()) return;
+        scrittore.execute(() -> {
+            try {
+                scrittura.esegui();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static void scriviTutto(FileChannel destinazione, ByteBuffer dati, long posizione) throws IOException {
+        while (dati.hasRemaining()) {
+            posizione += destinazione.write(dati, posizione);
+        }
+    }
+
+    /**
+     * Attende le scritture pianificate e chiude la classifica; gli aggiornamenti successivi non vengono scritti.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        scrittore.shutdown();
+        try {
+            scrittore.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (canale.isOpen()) {
+                canale.force(false);
+                canale.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package utils;
+
+import model.Card;
+import model.GameState;
+import model.ScoringStrategy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archivio di partite scritto da {@link ReplayArchiveWriter}, letto tramite mappatura in memoria.
+ * Archivio e indice sono mappati in sola lettura a segmenti da 1 GiB: raggiungere la partita n è una lettura
+ * dell'indice, e le partite restituite sono viste sul file mappato, senza copie.
+ * Lo stato all'inizio di una presa si ricostruisce dal fotogramma più vicino in tempo costante.
+ * L'archivio è una fotografia del file all'apertura: le partite aggiunte dopo richiedono di riaprirlo.
+ */
+public class ReplayArchive implements Closeable {
+
+    private static final long SEGMENTO = 1L << 30;
+
+    private final FileMappato dati;
+    private final FileMappato indice;
+
+    /**
+     * Apre un archivio in lettura.
+     * @param file Archivio; l'indice viene letto da {@code file + ".idx"}.
+     * @throws IOException se i file non sono leggibili o non sono un archivio ad accesso diretto.
+     */
+    public ReplayArchive(Path file) throws IOException {
+        this.dati = new FileMappato(file);
+        try {
+            verificaIntestazione(dati.canale);
+            this.indice = new FileMappato(file.resolveSibling(file.getFileName() + ".idx"));
+        } catch (IOException | RuntimeException e) {
+            dati.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Verifica firma e versione all'inizio di un archivio.
+     */
+    static void verificaIntestazione(FileChannel canale) throws IOException {
+        ByteBuffer intestazione = ByteBuffer.allocate(ReplayArchiveWriter.DIMENSIONE_INTESTAZIONE);
+        while (intestazione.hasRemaining()) {
+            if (canale.read(intestazione, intestazione.position()) < 0) {
+                throw new IOException("Intestazione dell'archivio incompleta");
+            }
+        }
+        intestazione.flip();
+        if (intestazione.getInt() != ReplayArchiveWriter.FIRMA || intestazione.get() != ReplayArchiveWriter.VERSIONE) {
+            throw new IOException("Il file non è un archivio ad accesso diretto supportato");
+        }
+    }
+
+    /**
+     * Lunghezza della parte tabellare di un record, che precede gli stati dei fotogrammi.
+     */
+    static int lunghezzaTabelle(int numeroGiocatori, int prese, int fotogrammi) {
+        return Integer.BYTES + 1 + 2 * Short.BYTES + fotogrammi * Integer.BYTES
+                + prese * (Short.BYTES + 2 + numeroGiocatori);
+    }
+
+    /**
+     * Restituisce il numero di partite nell'archivio.
+     * @return Partite indicizzate.
+     */
+    public long getNumeroPartite() {
+        return indice.dimensione / Long.BYTES;
+    }
+
+    /**
+     * Restituisce una partita dell'archivio, come vista sul file mappato.
+     * @param numero Indice della partita, a partire da 0.
+     * @return Partita archiviata.
+     * @throws IOException se la mappatura di un record a cavallo tra due segmenti fallisce.
+     * @throws IndexOutOfBoundsException se la partita non è nell'archivio.
+     */
+    public Partita getPartita(long numero) throws IOException {
+        if (numero < 0 || numero >= getNumeroPartite()) {
+            throw new IndexOutOfBoundsException("Partita non archiviata: " + numero);
+        }
+        long posizione = indice.vista(numero * Long.BYTES, Long.BYTES).getLong(0);
+        int lunghezza = dati.vista(posizione, Integer.BYTES).getInt(0);
+        return new Partita(dati.vista(posizione, lunghezza));
+    }
+
+    /**
+     * Chiude i file; le viste già restituite restano leggibili fino alla raccolta delle mappature.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        try (indice) {
+            dati.close();
+        }
+    }
+
+    /**
+     * Partita archiviata: tabella delle prese, carte giocate e fotogrammi, letti direttamente dal file mappato.
+     */
+    public static final class Partita {
+
+        private final ByteBuffer record;
+        private final int numeroGiocatori;
+        private final int prese;
+        private final int inizioFotogrammi;
+        private final int inizioFotogrammaDellaPresa;
+        private final int inizioPrimoEVincitore;
+        private final int inizioPunti;
+        private final int inizioCarte;
+
+        private Partita(ByteBuffer record) {
+            this.record = record;
+            this.numeroGiocatori = record.get(Integer.BYTES);
+            this.prese = record.getShort(Integer.BYTES + 1);
+            int fotogrammi = record.getShort(Integer.BYTES + 1 + Short.BYTES);
+            this.inizioFotogrammi = Integer.BYTES + 1 + 2 * Short.BYTES;
+            this.inizioFotogrammaDellaPresa = inizioFotogrammi + fotogrammi * Integer.BYTES;
+            this.inizioPrimoEVincitore = inizioFotogrammaDellaPresa + prese * Short.BYTES;
+            this.inizioPunti = inizioPrimoEVincitore + prese;
+            this.inizioCarte = inizioPunti + prese;
+        }
+
+        /**
+         * Restituisce il numero di giocatori della partita.
+         * @return 2 o 4.
+         */
+        public int getNumeroGiocatori() {
+            return numeroGiocatori;
+        }
+
+        /**
+         * Restituisce il numero di prese giocate nella partita, in tutti i round.
+         * @return Prese della partita.
+         */
+        public int getNumeroPrese() {
+            return prese;
+        }
+
+        /**
+         * Restituisce il posto di mano di una presa.
+         * @param k Indice della presa nella partita.
+         * @return Posto al tavolo.
+         */
+        public int getPrimoDiMano(int k) {
+            return record.get(inizioPrimoEVincitore + controllaPresa(k)) & 3;
+        }
+
+        /**
+         * Restituisce il posto vincitore di una presa.
+         * @param k Indice della presa nella partita.
+         * @return Posto al tavolo.
+         */
+        public int getVincitore(int k) {
+            return record.get(inizioPrimoEVincitore + controllaPresa(k)) >> 2 & 3;
+        }
+
+        /**
+         * Restituisce i punti di una presa.
+         * @param k Indice della presa nella partita.
+         * @return Punti in terzi di punto.
+         */
+        public int getPunti(int k) {
+            return record.get(inizioPunti + controllaPresa(k));
+        }
+
+        /**
+         * Restituisce una carta giocata in una presa.
+         * @param k Indice della presa nella partita.
+         * @param i Indice della giocata nella presa, in ordine di gioco.
+         * @return Carta giocata.
+         */
+        public Card getCarta(int k, int i) {
+            if (i < 0 || i >= numeroGiocatori) {
+                throw new IndexOutOfBoundsException("Giocata inesistente: " + i);
+            }
+            return Card.fromId(record.get(inizioCarte + controllaPresa(k) * numeroGiocatori + i));
+        }
+
+        /**
+         * Ricostruisce lo stato all'inizio di una presa, pronto per {@code MatchManager.importaStato}
+         * o per la ricerca. Parte dal fotogramma più vicino e rigioca al più
+         * {@code INTERVALLO_FOTOGRAMMI - 1} prese.
+         * @param k Indice della presa nella partita.
+         * @param scoring Strategia di punteggio della partita.
+         * @return Nuovo stato all'inizio della presa, senza storia di annullamento.
+         */
+        public GameState getStatoAllaPresa(int k, ScoringStrategy scoring) {
+            int fotogramma = record.getShort(inizioFotogrammaDellaPresa + controllaPresa(k) * Short.BYTES);
+            int posizione = record.getInt(inizioFotogrammi + fotogramma * Integer.BYTES);
+            GameState stato = GameState.leggiDa(record.duplicate().position(posizione), scoring);
+            int primaPresa = k;
+            while (primaPresa > 0
+                    && record.getShort(inizioFotogrammaDellaPresa + (primaPresa - 1) * Short.BYTES) == fotogramma) {
+                primaPresa--;
+            }
+            for (int i = primaPresa * numeroGiocatori; i < k * numeroGiocatori; i++) {
+                stato.gioca(record.get(inizioCarte + i));
+            }
+            return new GameState(stato);
+        }
+
+        private int controllaPresa(int k) {
+            if (k < 0 || k >= prese) {
+                throw new IndexOutOfBoundsException("Presa inesistente: " + k);
+            }
+            return k;
+        }
+    }
+
+    /**
+     * File mappato in sola lettura a segmenti; una vista a cavallo di due segmenti viene mappata a parte.
+     */
+    private static final class FileMappato implements Closeable {
+
+        private final FileChannel canale;
+        private final long dimensione;
+        private final MappedByteBuffer[] segmenti;
+
+        FileMappato(Path file) throws IOException {
+            this.canale = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                this.dimensione = canale.size();
+                this.segmenti = new MappedByteBuffer[(int) ((dimensione + SEGMENTO - 1) / SEGMENTO)];
+                for (int s = 0; s < segmenti.length; s++) {
+                    long inizio = s * SEGMENTO;
+                    segmenti[s] = canale.map(FileChannel.MapMode.READ_ONLY, inizio, Math.min(SEGMENTO, dimensione - inizio));
+                }
+            } catch (IOException | RuntimeException e) {
+                canale.close();
+                throw e;
+            }
+        }
+
+        ByteBuffer vista(long posizione, int lunghezza) throws IOException {
+            if (posizione < 0 || lunghezza < 0 || posizione + lunghezza > dimensione) {
+                throw new IOException("Archivio danneggiato: lettura oltre la fine del file");
+            }
+            int s = (int) (posizione / SEGMENTO);
+            int inizio = (int) (posizione - s * SEGMENTO);
+            if (inizio + lunghezza <= segmenti[s].capacity()) {
+                return segmenti[s].slice(inizio, lunghezza);
+            }
+            return canale.map(FileChannel.MapMode.READ_ONLY, posizione, lunghezza);
+        }
+
+        @Override
+        public void close() throws IOException {
+            canale.close();
+        }
+    }
+}
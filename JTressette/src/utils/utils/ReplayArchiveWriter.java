@@ -0,0 +1,249 @@
+package utils;
+
+import model.Card;
+import model.GameState;
+import model.HumanPlayer;
+import model.MatchManager;
+import model.Player;
+import model.RoundManager;
+import model.ScoringStrategy;
+import model.Team;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scrive l'archivio ad accesso diretto letto da {@link ReplayArchive}, in sola aggiunta.
+ * A differenza di {@link ReplayRecorder}, che minimizza lo spazio, ogni record è organizzato per la lettura:
+ * una tabella per presa (primo di mano, vincitore, punti e fotogramma di riferimento), le carte giocate
+ * come byte e, all'inizio di ogni round e ogni {@link #INTERVALLO_FOTOGRAMMI} prese, un fotogramma
+ * con lo stato completo ({@link GameState#scriviIn}). Raggiungere una presa qualsiasi richiede al più
+ * {@code INTERVALLO_FOTOGRAMMI - 1} prese rigiocate a partire dal fotogramma.
+ * Il record di una partita viene scritto quando la partita termina; l'indice {@code .idx} ne contiene la posizione.
+ */
+public class ReplayArchiveWriter implements MatchObserver, Closeable {
+
+    static final int FIRMA = 0x4A545241;
+    static final int VERSIONE = 1;
+    static final int DIMENSIONE_INTESTAZIONE = 5;
+
+    /**
+     * Numero di prese tra due fotogrammi dello stesso round.
+     */
+    public static final int INTERVALLO_FOTOGRAMMI = 5;
+
+    private final FileChannel dati;
+    private final FileChannel indice;
+    private final ByteBuffer voceIndice = ByteBuffer.allocate(Long.BYTES);
+
+    private MatchManager partita;
+    private int numeroGiocatori;
+    private int prese;
+    private int ultimaPresaAvviata;
+    private byte[] primoEVincitore = new byte[128];
+    private byte[] puntiPresa = new byte[128];
+    private short[] fotogrammaDellaPresa = new short[128];
+    private byte[] carte = new byte[512];
+    private int[] posizioniFotogrammi = new int[32];
+    private int fotogrammi;
+    private ByteBuffer statiFotogrammi = ByteBuffer.allocate(32 * GameState.DIMENSIONE_BINARIA_MASSIMA);
+    private ByteBuffer record = ByteBuffer.allocate(8192);
+
+    /**
+     * Apre un archivio in aggiunta, creandolo se non esiste.
+     * @param file Archivio; l'indice viene scritto in {@code file + ".idx"}.
+     * @throws IOException se il file non è leggibile o non è un archivio ad accesso diretto.
+     */
+    public ReplayArchiveWriter(Path file) throws IOException {
+        this.dati = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel canaleIndice = null;
+        try {
+            canaleIndice = FileChannel.open(file.resolveSibling(file.getFileName() + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (dati.size() == 0) {
+                ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+                intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+                dati.write(intestazione);
+            } else {
+                ReplayArchive.verificaIntestazione(dati);
+            }
+            dati.position(dati.size());
+            canaleIndice.position(canaleIndice.size());
+        } catch (IOException | RuntimeException e) {
+            if (canaleIndice != null) {
+                canaleIndice.close();
+            }
+            dati.close();
+            throw e;
+        }
+        this.indice = canaleIndice;
+    }
+
+    /**
+     * Inizia l'archiviazione di una partita, prima del suo primo round.
+     * Una partita interrotta prima della fine non viene scritta.
+     * @param partita Partita da archiviare.
+     */
+    public void registra(MatchManager partita) {
+        this.partita = partita;
+        numeroGiocatori = partita.getPlayers().size();
+        prese = 0;
+        ultimaPresaAvviata = -1;
+        fotogrammi = 0;
+        statiFotogrammi.clear();
+        partita.addObserver(this);
+    }
+
+    /**
+     * Converte in archivio ad accesso diretto tutte le registrazioni compatte di un {@link ReplayReader},
+     * rigiocandole dalla posizione corrente fino alla fine.
+     * @param sorgente Registrazioni compatte.
+     * @param scoring Strategia di punteggio delle partite registrate.
+     * @return Numero di partite archiviate.
+     * @throws IOException se la lettura delle registrazioni fallisce.
+     */
+    public long importa(ReplayReader sorgente, ScoringStrategy scoring) throws IOException {
+        long importate = 0;
+        ReplayReader.Registrazione registrazione;
+        while ((registrazione = sorgente.prossima()) != null) {
+            List<Player> giocatori = new ArrayList<>(registrazione.numeroGiocatori());
+            for (int posto = 0; posto < registrazione.numeroGiocatori(); posto++) {
+                giocatori.add(new HumanPlayer("Posto " + (posto + 1)));
+            }
+            MatchManager rigiocata = ReplayReader.creaPartita(registrazione, giocatori, scoring);
+            registra(rigiocata);
+            ReplayReader.riproduci(registrazione, rigiocata);
+            importate++;
+        }
+        return importate;
+    }
+
+    /**
+     * All'inizio di ogni presa ne prepara la voce e, all'inizio del round o ogni
+     * {@link #INTERVALLO_FOTOGRAMMI} prese, salva un fotogramma dello stato.
+     */
+    @Override
+    public void onTurnStart(Player currentPlayer) {
+        if (partita == null) return;
+        RoundManager presa = partita.getRoundManager();
+        if (presa.getNumeroGiocate() != 0 || ultimaPresaAvviata == prese) return;
+        ultimaPresaAvviata = prese;
+        if (prese == primoEVincitore.length) {
+            primoEVincitore = Arrays.copyOf(primoEVincitore, prese * 2);
+            puntiPresa = Arrays.copyOf(puntiPresa, prese * 2);
+            fotogrammaDellaPresa = Arrays.copyOf(fotogrammaDellaPresa, prese * 2);
+            carte = Arrays.copyOf(carte, prese * 2 * numeroGiocatori);
+        }
+        if (presa.getPreseChiuse() % INTERVALLO_FOTOGRAMMI == 0) {
+            if (fotogrammi == posizioniFotogrammi.length) {
+                posizioniFotogrammi = Arrays.copyOf(posizioniFotogrammi, fotogrammi * 2);
+            }
+            if (statiFotogrammi.remaining() < GameState.DIMENSIONE_BINARIA_MASSIMA) {
+                statiFotogrammi = ingrandisci(statiFotogrammi, GameState.DIMENSIONE_BINARIA_MASSIMA);
+            }
+            posizioniFotogrammi[fotogrammi++] = statiFotogrammi.position();
+            partita.esportaStato().scriviIn(statiFotogrammi);
+        }
+        fotogrammaDellaPresa[prese] = (short) (fotogrammi - 1);
+    }
+
+    @Override
+    public void onCardPlayed(Player player, Card card) {
+        if (partita == null) return;
+        carte[prese * numeroGiocatori + partita.getRoundManager().getNumeroGiocate() - 1] = (byte) card.getId();
+    }
+
+    @Override
+    public void onTrickEnd(Player winner, int points) {
+        if (partita == null) return;
+        RoundManager presa = partita.getRoundManager();
+        primoEVincitore[prese] = (byte) (presa.getPosto(0) | presa.getPostoVincente() << 2);
+        puntiPresa[prese] = (byte) points;
+        prese++;
+    }
+
+    /**
+     * Compone il record della partita terminata e lo aggiunge all'archivio e all'indice.
+     * Disposizione: lunghezza, giocatori, prese, fotogrammi, posizioni dei fotogrammi nel record,
+     * fotogramma di ogni presa, primo di mano e vincitore, punti, carte, stati dei fotogrammi.
+     */
+    private void chiudiPartita() {
+        if (partita == null) return;
+        partita = null;
+        int lunghezza = ReplayArchive.lunghezzaTabelle(numeroGiocatori, prese, fotogrammi) + statiFotogrammi.position();
+        if (record.capacity() < lunghezza) {
+            record = ByteBuffer.allocate(Math.max(lunghezza, record.capacity() * 2));
+        }
+        record.clear();
+        record.putInt(lunghezza).put((byte) numeroGiocatori).putShort((short) prese).putShort((short) fotogrammi);
+        int inizioStati = ReplayArchive.lunghezzaTabelle(numeroGiocatori, prese, fotogrammi);
+        for (int i = 0; i < fotogrammi; i++) {
+            record.putInt(inizioStati + posizioniFotogrammi[i]);
+        }
+        for (int k = 0; k < prese; k++) {
+            record.putShort(fotogrammaDellaPresa[k]);
+        }
+        record.put(primoEVincitore, 0, prese).put(puntiPresa, 0, prese).put(carte, 0, prese * numeroGiocatori);
+        record.put(statiFotogrammi.flip());
+        record.flip();
+        try {
+            long posizione = dati.position();
+            while (record.hasRemaining()) {
+                dati.write(record);
+            }
+            voceIndice.clear();
+            voceIndice.putLong(posizione).flip();
+            indice.write(voceIndice);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile scrivere la partita nell'archivio", e);
+        }
+    }
+
+    private static ByteBuffer ingrandisci(ByteBuffer buffer, int minimo) {
+        ByteBuffer nuovo = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + minimo));
+        return nuovo.put(buffer.flip());
+    }
+
+    /**
+     * Chiude l'archivio e l'indice; una partita ancora in corso viene scartata.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        partita = null;
+        try (indice) {
+            dati.close();
+        }
+    }
+
+    @Override
+    public void onMatchEndGiocatore(Player winnerOrNullOnTie) {
+        chiudiPartita();
+    }
+
+    @Override
+    public void onMatchEndSquadra(Team winnerOrNullOnTie) {
+        chiudiPartita();
+    }
+
+    @Override
+    public void onCardDrawn(Player player, Card card, boolean revealTemporaneo) { }
+
+    @Override
+    public void onScoreUpdateGiocatori(Map<Player, Integer> scores) { }
+
+    @Override
+    public void onScoreUpdateSquadre(Map<Team, Integer> scores) { }
+
+    @Override
+    public void onRoundEnd() { }
+}
@@ -0,0 +1,279 @@
+package utils;
+
+import model.Card;
+import model.CardMask;
+import model.Deck;
+import model.MatchManager;
+import model.Player;
+import model.ScoringStrategy;
+import model.Team;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Lettore in streaming di un archivio scritto da {@link ReplayRecorder}.
+ * Restituisce i record uno alla volta con un buffer di lettura riutilizzato, può saltare a una partita
+ * tramite l'indice e rigioca una registrazione in un {@link MatchManager}, notificandone gli osservatori
+ * come in una partita reale.
+ */
+public class ReplayReader implements Closeable {
+
+    /**
+     * Registrazione di una partita.
+     * @param dueControDue true per la modalità 2vs2.
+     * @param primoDiMano Posto di mano all'inizio della partita.
+     * @param giocate Ordine del mazzo e giocate di ogni round, codificati.
+     */
+    public record Registrazione(boolean dueControDue, int primoDiMano, byte[] giocate) {
+
+        /**
+         * Restituisce il numero di giocatori della partita.
+         * @return 2 o 4.
+         */
+        public int numeroGiocatori() {
+            return dueControDue ? 4 : 2;
+        }
+    }
+
+    private final FileChannel dati;
+    private final Path fileIndice;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+    /**
+     * Apre un archivio in lettura, posizionandosi sulla prima partita.
+     * @param file Archivio delle registrazioni.
+     * @throws IOException se il file non è leggibile o non è un archivio di registrazioni.
+     */
+    public ReplayReader(Path file) throws IOException {
+        this.dati = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileIndice = file.resolveSibling(file.getFileName() + ".idx");
+        try {
+            verificaIntestazione(dati);
+        } catch (IOException | RuntimeException e) {
+            dati.close();
+            throw e;
+        }
+        vaiA(ReplayRecorder.DIMENSIONE_INTESTAZIONE);
+    }
+
+    /**
+     * Verifica firma e versione all'inizio di un archivio.
+     */
+    static void verificaIntestazione(FileChannel canale) throws IOException {
+        ByteBuffer intestazione = ByteBuffer.allocate(ReplayRecorder.DIMENSIONE_INTESTAZIONE);
+        while (intestazione.hasRemaining()) {
+            if (canale.read(intestazione, intestazione.position()) < 0) {
+                throw new IOException("Intestazione dell'archivio incompleta");
+            }
+        }
+        intestazione.flip();
+        if (intestazione.getInt() != ReplayRecorder.FIRMA || intestazione.get() != ReplayRecorder.VERSIONE) {
+            throw new IOException("Il file non è un archivio di registrazioni supportato");
+        }
+    }
+
+    private void vaiA(long posizione) throws IOException {
+        dati.position(posizione);
+        buffer.clear().flip();
+    }
+
+    /**
+     * Restituisce il numero di partite presenti nell'indice.
+     * @return Partite indicizzate.
+     * @throws IOException se l'indice non è leggibile.
+     */
+    public long getNumeroPartite() throws IOException {
+        return Files.exists(fileIndice) ? Files.size(fileIndice) / Long.BYTES : 0;
+    }
+
+    /**
+     * Posiziona il lettore sulla partita indicata, usando l'indice.
+     * @param numero Indice della partita, a partire da 0.
+     * @throws IOException se l'indice non è leggibile.
+     * @throws IndexOutOfBoundsException se la partita non è indicizzata.
+     */
+    public void vaiAllaPartita(long numero) throws IOException {
+        if (numero < 0 || numero >= getNumeroPartite()) {
+            throw new IndexOutOfBoundsException("Partita non indicizzata: " + numero);
+        }
+        try (FileChannel indice = FileChannel.open(fileIndice, StandardOpenOption.READ)) {
+            ByteBuffer voce = ByteBuffer.allocate(Long.BYTES);
+            while (voce.hasRemaining()) {
+                if (indice.read(voce, numero * Long.BYTES + voce.position()) < 0) {
+                    throw new EOFException("Indice incompleto");
+                }
+            }
+            vaiA(voce.flip().getLong());
+        }
+    }
+
+    /**
+     * Legge la prossima registrazione.
+     * @return Registrazione letta, oppure null a fine archivio.
+     * @throws IOException se la lettura fallisce o l'ultimo record è incompleto.
+     */
+    public Registrazione prossima() throws IOException {
+        if (!riempi(1)) {
+            return null;
+        }
+        int lunghezza = 0;
+        for (int spostamento = 0; ; spostamento += 7) {
+            if (!riempi(1)) {
+                throw new EOFException("Record incompleto");
+            }
+            int b = buffer.get();
+            lunghezza |= (b & 0x7F) << spostamento;
+            if (b >= 0) break;
+        }
+        if (lunghezza < ReplayRecorder.BYTE_PRIMA_DELLE_GIOCATE || !riempi(lunghezza)) {
+            throw new EOFException("Record incompleto");
+        }
+        int disposizione = buffer.get() & 0xFF;
+        byte[] giocate = new byte[lunghezza - ReplayRecorder.BYTE_PRIMA_DELLE_GIOCATE];
+        buffer.get(giocate);
+        return new Registrazione((disposizione & 0x80) != 0, disposizione & 0x7F, giocate);
+    }
+
+    /**
+     * Garantisce almeno n byte disponibili nel buffer, leggendo dal file se necessario.
+     * @return false se il file finisce prima.
+     */
+    private boolean riempi(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return true;
+        }
+        if (n > buffer.capacity()) {
+            throw new IOException("Record troppo lungo: " + n + " byte");
+        }
+        buffer.compact();
+        while (buffer.position() < n) {
+            if (dati.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Crea una partita pronta per rigiocare una registrazione, con le squadre alternate al tavolo in 2vs2.
+     * @param registrazione Registrazione da rigiocare.
+     * @param giocatori Giocatori in ordine di posto; le loro mani vengono sostituite dalla distribuzione registrata.
+     * @param scoring Strategia di punteggio della partita registrata.
+     * @return Partita a cui collegare gli osservatori; il mazzo registrato viene impostato da {@link #riproduci}.
+     * @throws IllegalArgumentException se il numero di giocatori non corrisponde.
+     */
+    public static MatchManager creaPartita(Registrazione registrazione, List<Player> giocatori, ScoringStrategy scoring) {
+        if (giocatori.size() != registrazione.numeroGiocatori()) {
+            throw new IllegalArgumentException("La registrazione richiede " + registrazione.numeroGiocatori() + " giocatori");
+        }
+        Player primo = giocatori.get(registrazione.primoDiMano());
+        MatchManager partita = registrazione.dueControDue()
+                ? new MatchManager(giocatori, primo, scoring, List.of(
+                        new Team("Squadra 1", List.of(giocatori.get(0), giocatori.get(2))),
+                        new Team("Squadra 2", List.of(giocatori.get(1), giocatori.get(3)))))
+                : new MatchManager(giocatori, primo, scoring);
+        return partita;
+    }
+
+    /**
+     * Rigioca una registrazione fino alla fine della partita.
+     * La partita deve essere stata creata con {@link #creaPartita} e non ancora avviata.
+     * @param registrazione Registrazione da rigiocare.
+     * @param partita Partita su cui rigiocare.
+     * @throws IllegalStateException se la registrazione non corrisponde alla partita o è troncata.
+     */
+    public static void riproduci(Registrazione registrazione, MatchManager partita) {
+        Decodificatore giocate = new Decodificatore(registrazione.giocate());
+        partita.enableDeck(new MazzoRegistrato(giocate));
+        partita.setTurnDriver((giocatore, presa) -> {
+            long mano = giocatore.getManoMask();
+            long giocabili = presa.getNumeroGiocate() == 0 ? mano : CardMask.giocabili(mano, presa.getSemeDominante());
+            for (int i = giocate.leggiTroncato(Long.bitCount(giocabili)); i > 0; i--) {
+                giocabili &= giocabili - 1;
+            }
+            return Card.fromId(Long.numberOfTrailingZeros(giocabili));
+        });
+        while (!partita.isMatchTerminato()) {
+            partita.startNewRound();
+        }
+    }
+
+    /**
+     * Chiude l'archivio.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        dati.close();
+    }
+
+    /**
+     * Mazzo che a ogni mescolata assume l'ordine registrato per il round, decodificando il codice di Lehmer
+     * dallo stesso flusso delle giocate.
+     */
+    private static final class MazzoRegistrato extends Deck {
+        private final Decodificatore codice;
+        private final int[] ordine = new int[Card.NUMERO_CARTE];
+
+        MazzoRegistrato(Decodificatore codice) {
+            this.codice = codice;
+        }
+
+        @Override
+        public void shuffle() {
+            long restanti = CardMask.TUTTE;
+            for (int i = 0; i < Card.NUMERO_CARTE; i++) {
+                long m = restanti;
+                for (int d = i < Card.NUMERO_CARTE - 1 ? codice.leggiTroncato(Card.NUMERO_CARTE - i) : 0; d > 0; d--) {
+                    m &= m - 1;
+                }
+                ordine[i] = Long.numberOfTrailingZeros(m);
+                restanti &= ~(1L << ordine[i]);
+            }
+            impostaRimanenti(ordine, Card.NUMERO_CARTE);
+        }
+    }
+
+    /**
+     * Lettore dei valori in binario troncato scritti da {@link ReplayRecorder}.
+     */
+    private static final class Decodificatore {
+        private final byte[] dati;
+        private int bit;
+
+        Decodificatore(byte[] dati) {
+            this.dati = dati;
+        }
+
+        int leggiTroncato(int n) {
+            int k = 31 - Integer.numberOfLeadingZeros(n);
+            int corti = (2 << k) - n;
+            int valore = leggiBit(k);
+            if (valore < corti) {
+                return valore;
+            }
+            return (valore << 1 | leggiBit(1)) - corti;
+        }
+
+        private int leggiBit(int n) {
+            if (bit + n > dati.length * 8) {
+                throw new IllegalStateException("Registrazione troncata");
+            }
+            int valore = 0;
+            for (int i = 0; i < n; i++, bit++) {
+                valore = valore << 1 | (dati[bit >>> 3] >>> (7 - (bit & 7)) & 1);
+            }
+            return valore;
+        }
+    }
+}
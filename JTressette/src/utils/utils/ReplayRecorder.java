@@ -0,0 +1,251 @@
+package utils;
+
+import model.Card;
+import model.CardMask;
+import model.GameState;
+import model.MatchManager;
+import model.Player;
+import model.RoundManager;
+import model.ScoreLedger;
+import model.Team;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Registra le partite in un archivio binario compatto, in sola aggiunta.
+ * Il file inizia con un'intestazione (firma e versione) seguita da un record per partita:
+ * lunghezza in varint, un byte di disposizione (modalità e primo di mano) e, per ogni round,
+ * l'ordine del mazzo seguito dalle giocate.
+ * L'ordine del mazzo è la permutazione delle 40 carte come codice di Lehmer (circa 20 byte): la rilettura
+ * non dipende dal generatore casuale né dall'algoritmo di mescolata. Le mani occupano le prime posizioni
+ * come nella distribuzione a giro, con le carte di ciascuna mano in ordine crescente.
+ * Ogni giocata è codificata come indice della carta tra quelle giocabili, in binario troncato:
+ * una risposta obbligata non occupa bit e una scelta tra 10 carte ne occupa 3 o 4.
+ * Accanto all'archivio, il file {@code .idx} contiene la posizione di ogni record su 8 byte.
+ */
+public class ReplayRecorder implements MatchObserver, Closeable {
+
+    static final int FIRMA = 0x4A545250;
+    static final int VERSIONE = 2;
+    static final int DIMENSIONE_INTESTAZIONE = 5;
+    static final int BYTE_PRIMA_DELLE_GIOCATE = 1;
+
+    private final FileChannel dati;
+    private final FileChannel indice;
+    private final ByteBuffer intestazioneRecord = ByteBuffer.allocate(5 + 8);
+    private final int[] ordineMazzo = new int[Card.NUMERO_CARTE];
+
+    private MatchManager partita;
+    private byte[] record = new byte[256];
+    private int lunghezza;
+    private long accumulatore;
+    private int bitAccumulati;
+    private boolean primaGiocata;
+
+    /**
+     * Apre un archivio in aggiunta, creandolo se non esiste.
+     * @param file Archivio delle registrazioni; l'indice viene scritto in {@code file + ".idx"}.
+     * @throws IOException se il file non è leggibile o non è un archivio di registrazioni.
+     */
+    public ReplayRecorder(Path file) throws IOException {
+        this.dati = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel canaleIndice = null;
+        try {
+            canaleIndice = FileChannel.open(file.resolveSibling(file.getFileName() + ".idx"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (dati.size() == 0) {
+                ByteBuffer intestazione = ByteBuffer.allocate(DIMENSIONE_INTESTAZIONE);
+                intestazione.putInt(FIRMA).put((byte) VERSIONE).flip();
+                dati.write(intestazione);
+            } else {
+                ReplayReader.verificaIntestazione(dati);
+            }
+            dati.position(dati.size());
+            canaleIndice.position(canaleIndice.size());
+        } catch (IOException | RuntimeException e) {
+            if (canaleIndice != null) {
+                canaleIndice.close();
+            }
+            dati.close();
+            throw e;
+        }
+        this.indice = canaleIndice;
+    }
+
+    /**
+     * Inizia la registrazione di una partita, prima del suo primo round.
+     * Una partita interrotta prima della fine non viene scritta.
+     * @param partita Partita da registrare, con squadre alternate al tavolo in 2vs2.
+     * @throws IllegalArgumentException se la disposizione delle squadre non è registrabile.
+     */
+    public void registra(MatchManager partita) {
+        ScoreLedger ledger = partita.getLedger();
+        for (int posto = 0; posto < partita.getPlayers().size(); posto++) {
+            if (ledger.getParteDelPosto(posto) != posto % 2) {
+                throw new IllegalArgumentException("Le squadre devono alternarsi al tavolo");
+            }
+        }
+        this.partita = partita;
+        lunghezza = 0;
+        accumulatore = 0;
+        bitAccumulati = 0;
+        primaGiocata = true;
+        lunghezza = BYTE_PRIMA_DELLE_GIOCATE;
+        partita.addObserver(this);
+    }
+
+    @Override
+    public void onCardPlayed(Player player, Card card) {
+        if (partita == null) return;
+        RoundManager presa = partita.getRoundManager();
+        if (primaGiocata) {
+            int disposizione = presa.getPosto(0) | (partita.isTwoVsTwo() ? 0x80 : 0);
+            record[0] = (byte) disposizione;
+            primaGiocata = false;
+        }
+        if (presa.getNumeroGiocate() == 1 && presa.getPreseChiuse() == 0) {
+            scriviMazzo(presa.getPosto(0), card);
+        }
+        long mano = player.getManoMask() | CardMask.bit(card);
+        long giocabili = presa.getNumeroGiocate() == 1 ? mano : CardMask.giocabili(mano, presa.getSemeDominante());
+        scriviTroncato(Long.bitCount(giocabili & (CardMask.bit(card) - 1)), Long.bitCount(giocabili));
+    }
+
+    /**
+     * Scrive l'ordine del mazzo distribuito nel round, ricostruito alla prima giocata dalle mani e dalle
+     * carte ancora da pescare: per ogni posizione, l'indice della carta tra quelle non ancora usate.
+     * L'ultima cifra è sempre 0 e non viene scritta.
+     */
+    private void scriviMazzo(int postoDiMano, Card giocata) {
+        int n = partita.getPlayers().size();
+        long[] mani = new long[n];
+        for (int posto = 0; posto < n; posto++) {
+            mani[posto] = partita.getPlayers().get(posto).getManoMask();
+        }
+        mani[postoDiMano] |= CardMask.bit(giocata);
+        int k = 0;
+        while (mani[n - 1] != 0) {
+            for (int posto = 0; posto < n; posto++) {
+                ordineMazzo[k++] = Long.numberOfTrailingZeros(mani[posto]);
+                mani[posto] &= mani[posto] - 1;
+            }
+        }
+        GameState stato = partita.esportaStato();
+        for (int i = 0; i < stato.getCarteNelMazzo(); i++) {
+            ordineMazzo[k++] = stato.getCartaNelMazzo(i);
+        }
+        long restanti = CardMask.TUTTE;
+        for (int i = 0; i < Card.NUMERO_CARTE - 1; i++) {
+            long bit = 1L << ordineMazzo[i];
+            scriviTroncato(Long.bitCount(restanti & (bit - 1)), Card.NUMERO_CARTE - i);
+            restanti &= ~bit;
+        }
+    }
+
+    /**
+     * Scrive un valore in [0, n) in binario troncato: i primi valori usano un bit in meno degli altri.
+     */
+    private void scriviTroncato(int valore, int n) {
+        int k = 31 - Integer.numberOfLeadingZeros(n);
+        int corti = (2 << k) - n;
+        if (valore < corti) {
+            scriviBit(valore, k);
+        } else {
+            scriviBit(valore + corti, k + 1);
+        }
+    }
+
+    private void scriviBit(int valore, int bit) {
+        accumulatore = accumulatore << bit | valore;
+        bitAccumulati += bit;
+        while (bitAccumulati >= 8) {
+            bitAccumulati -= 8;
+            aggiungiByte((int) (accumulatore >>> bitAccumulati));
+        }
+    }
+
+    private void aggiungiByte(int b) {
+        if (lunghezza == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[lunghezza++] = (byte) b;
+    }
+
+    /**
+     * Completa il record della partita terminata e lo aggiunge all'archivio e all'indice.
+     */
+    private void chiudiPartita() {
+        if (partita == null) return;
+        partita = null;
+        if (bitAccumulati > 0) {
+            aggiungiByte((int) (accumulatore << (8 - bitAccumulati)));
+            bitAccumulati = 0;
+        }
+        try {
+            long posizione = dati.position();
+            intestazioneRecord.clear();
+            for (int v = lunghezza; ; v >>>= 7) {
+                if (v < 0x80) {
+                    intestazioneRecord.put((byte) v);
+                    break;
+                }
+                intestazioneRecord.put((byte) (v & 0x7F | 0x80));
+            }
+            intestazioneRecord.flip();
+            dati.write(new ByteBuffer[] { intestazioneRecord, ByteBuffer.wrap(record, 0, lunghezza) });
+            intestazioneRecord.clear();
+            intestazioneRecord.putLong(posizione).flip();
+            indice.write(intestazioneRecord);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile scrivere la registrazione", e);
+        }
+    }
+
+    /**
+     * Chiude l'archivio e l'indice; una partita ancora in corso viene scartata.
+     * @throws IOException se la chiusura fallisce.
+     */
+    @Override
+    public void close() throws IOException {
+        partita = null;
+        try (indice) {
+            dati.close();
+        }
+    }
+
+    @Override
+    public void onMatchEndGiocatore(Player winnerOrNullOnTie) {
+        chiudiPartita();
+    }
+
+    @Override
+    public void onMatchEndSquadra(Team winnerOrNullOnTie) {
+        chiudiPartita();
+    }
+
+    @Override
+    public void onTurnStart(Player currentPlayer) { }
+
+    @Override
+    public void onCardDrawn(Player player, Card card, boolean revealTemporaneo) { }
+
+    @Override
+    public void onTrickEnd(Player winner, int points) { }
+
+    @Override
+    public void onScoreUpdateGiocatori(Map<Player, Integer> scores) { }
+
+    @Override
+    public void onScoreUpdateSquadre(Map<Team, Integer> scores) { }
+
+    @Override
+    public void onRoundEnd() { }
+}
@@ -30,6 +30,19 @@ public class UserProfile implements Serializable {
         this.livello = 1;
     }
 
+    /**
+     * Ricostruisce un profilo salvato con le sue statistiche. Il livello viene ricalcolato.
+     * @param nome nome del profilo
+     * @param partiteGiocate partite giocate
+     * @param partiteVinte partite vinte
+     */
+    UserProfile(String nome, int partiteGiocate, int partiteVinte) {
+        this.nome = nome;
+        this.partiteGiocate = partiteGiocate;
+        this.partiteVinte = partiteVinte;
+        aggiornaLivello();
+    }
+
     /**
      * Restituisce il nome del profilo.
      * @return nome del profilo
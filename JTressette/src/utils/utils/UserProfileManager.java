@@ -1,16 +1,24 @@
 package utils;
 
 import java.io.*;
-import java.util.HashMap;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
 import java.util.Map;
 
 /**
  * Gestisce il caricamento e il salvataggio dei profili utente.
- * I dati vengono memorizzati su file in formato serializzato.
+ * I profili sono memorizzati in un {@link ProfileStore}: caricare o salvare un profilo
+ * legge o aggiunge un solo record, senza riscrivere gli altri.
+ * Un file nel vecchio formato serializzato viene convertito al primo accesso e conservato con estensione {@code .bak}:
+ * il nuovo archivio viene scritto in un file temporaneo e sostituisce il vecchio file solo quando è completo.
  */
 public class UserProfileManager {
 
     private final File storageFile;
+    private ProfileStore store;
 
     /**
      * Costruisce un nuovo gestore dei profili utente.
@@ -26,46 +34,110 @@ public class UserProfileManager {
      * @param profileName nome del profilo da caricare
      * @return profilo utente caricato o creato
      */
-    public UserProfile load(String profileName) {
-        Map<String, UserProfile> profiles = readAllProfiles();
-        return profiles.computeIfAbsent(profileName, UserProfile::new);
+    public synchronized UserProfile load(String profileName) {
+        try {
+            UserProfile profile = getStore().carica(profileName);
+            if (profile != null) {
+                return profile;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new UserProfile(profileName);
     }
 
     /**
      * Salva un profilo utente nel file di memorizzazione.
      * @param profile profilo da salvare
      */
-    public void save(UserProfile profile) {
-        Map<String, UserProfile> profiles = readAllProfiles();
-        profiles.put(profile.getNome(), profile);
-        writeAllProfiles(profiles);
+    public synchronized void save(UserProfile profile) {
+        try {
+            getStore().salva(profile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
-     * Legge tutti i profili dal file di memorizzazione.
-     * @return mappa dei profili caricati
+     * Salva più profili con un'unica scrittura.
+     * @param profiles profili da salvare
+     * @throws IOException se la scrittura fallisce; in tal caso nessun profilo risulta salvato
      */
-    @SuppressWarnings("unchecked")
-    private Map<String, UserProfile> readAllProfiles() {
-        if (!storageFile.exists()) {
-            return new HashMap<>();
+    synchronized void saveAll(Collection<UserProfile> profiles) throws IOException {
+        getStore().salvaTutti(profiles);
+    }
+
+    /**
+     * Chiude il file di memorizzazione; un accesso successivo lo riapre.
+     */
+    public synchronized void close() {
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+        store = null;
+    }
+
+    /**
+     * Apre l'archivio al primo accesso, convertendo un eventuale file nel vecchio formato serializzato.
+     * @return archivio dei profili
+     * @throws IOException se il file non può essere aperto o convertito
+     */
+    private ProfileStore getStore() throws IOException {
+        if (store == null) {
+            if (isLegacyFormat()) {
+                convertLegacyProfiles();
+            }
+            store = new ProfileStore(storageFile.toPath());
+        }
+        return store;
+    }
+
+    /**
+     * Converte il file nel vecchio formato: scrive i profili in un nuovo archivio temporaneo, copia il vecchio file
+     * con estensione {@code .bak} e sostituisce il file con l'archivio con una rinomina atomica.
+     * In ogni momento su disco resta una copia completa dei profili.
+     * @throws IOException se la conversione fallisce; in tal caso il vecchio file resta al suo posto
+     */
+    private void convertLegacyProfiles() throws IOException {
+        Map<String, UserProfile> legacy = readLegacyProfiles();
+        Path file = storageFile.toPath();
+        Path temporaneo = file.resolveSibling(storageFile.getName() + ".tmp");
+        Files.deleteIfExists(temporaneo);
+        try (ProfileStore convertito = new ProfileStore(temporaneo)) {
+            if (legacy != null) {
+                convertito.salvaTutti(legacy.values());
+            }
+        }
+        Files.copy(file, file.resolveSibling(storageFile.getName() + ".bak"), StandardCopyOption.REPLACE_EXISTING);
+        try {
+            Files.move(temporaneo, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Legge tutti i profili da un file nel vecchio formato serializzato.
+     * @return mappa dei profili, oppure null se il file è illeggibile
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, UserProfile> readLegacyProfiles() {
         try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(storageFile))) {
             return (Map<String, UserProfile>) ois.readObject();
         } catch (IOException | ClassNotFoundException e) {
-            return new HashMap<>();
+            e.printStackTrace();
+            return null;
         }
     }
 
-    /**
-     * Scrive tutti i profili nel file di memorizzazione.
-     * @param profiles mappa dei profili da salvare
-     */
-    private void writeAllProfiles(Map<String, UserProfile> profiles) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(storageFile))) {
-            oos.writeObject(profiles);
+    private boolean isLegacyFormat() {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(storageFile))) {
+            return in.readUnsignedShort() == 0xACED;
         } catch (IOException e) {
-            e.printStackTrace();
+            return false;
         }
     }
 }
@@ -3,6 +3,10 @@ package view;
 import model.Card;
 import model.Player;
 import model.Team;
+import utils.MatchHistoryStore;
+import utils.RatingLadder;
+import utils.UserProfile;
+import utils.UserProfileManager;
 
 import java.util.Map;
 
@@ -63,9 +67,15 @@ public interface GameView {
     void abilitaSelezioneCarte(Player humanPlayer);
 
     /**
-     * Mostra la schermata impostazioni.
+     * Mostra la schermata impostazioni con le statistiche del profilo.
+     *
+     * @param profileManager gestore dei profili utente
+     * @param profilo profilo attualmente in uso
+     * @param matchHistory archivio degli storici delle partite, oppure null
+     * @param ratingLadder classifica delle valutazioni, oppure null
      */
-    void mostraImpostazioni();
+    void mostraImpostazioni(UserProfileManager profileManager, UserProfile profilo,
+                            MatchHistoryStore matchHistory, RatingLadder ratingLadder);
 
     /**
      * Imposta le posizioni dei giocatori sul tavolo.
@@ -1,5 +1,8 @@
 package view;
 
+import utils.MatchHistory;
+import utils.MatchHistoryStore;
+import utils.RatingLadder;
 import utils.UserProfile;
 import utils.UserProfileManager;
 
@@ -15,7 +18,10 @@ public class SettingsDialog extends JDialog {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+    private static final int ULTIME_PARTITE = 20;
 	private final UserProfileManager profileManager;
+    private final MatchHistoryStore matchHistory;
+    private final RatingLadder ratingLadder;
     private UserProfile currentProfile;
 
     private JTextField nicknameField;
@@ -31,8 +37,24 @@ public class SettingsDialog extends JDialog {
      * @param currentProfile profilo attualmente in uso
      */
     public SettingsDialog(JFrame owner, UserProfileManager profileManager, UserProfile currentProfile) {
+        this(owner, profileManager, currentProfile, null, null);
+    }
+
+    /**
+     * Crea la finestra impostazioni con le statistiche tratte dallo storico delle partite e dalla classifica.
+     *
+     * @param owner finestra principale
+     * @param profileManager gestore dei profili utente
+     * @param currentProfile profilo attualmente in uso
+     * @param matchHistory archivio degli storici delle partite, oppure null
+     * @param ratingLadder classifica delle valutazioni, oppure null
+     */
+    public SettingsDialog(JFrame owner, UserProfileManager profileManager, UserProfile currentProfile,
+                          MatchHistoryStore matchHistory, RatingLadder ratingLadder) {
         super(owner, "Impostazioni", true);
         this.profileManager = profileManager;
+        this.matchHistory = matchHistory;
+        this.ratingLadder = ratingLadder;
         this.currentProfile = currentProfile;
 
         setLayout(new BorderLayout());
@@ -120,7 +142,58 @@ public class SettingsDialog extends JDialog {
      * @return testo formattato
      */
     private String getStatsText(UserProfile profile) {
-        return "<html>Partite giocate: " + profile.getPartiteGiocate() +
-                "<br>Partite vinte: " + profile.getPartiteVinte() + "</html>";
+        StringBuilder testo = new StringBuilder("<html>Partite giocate: ").append(profile.getPartiteGiocate())
+                .append("<br>Partite vinte: ").append(profile.getPartiteVinte());
+        if (matchHistory != null) {
+            MatchHistory storico = matchHistory.getStorico(profile.getNome());
+            if (storico.size() > 0) {
+                testo.append(String.format("<br><br>Vittorie nelle ultime %d partite: %.0f%%",
+                                Math.min(ULTIME_PARTITE, storico.size()), storico.getPercentualeVittorie(ULTIME_PARTITE)))
+                        .append(String.format("<br>Punti medi 1vs1: %.1f", storico.getMediaPunti(false)))
+                        .append(String.format("<br>Punti medi 2vs2: %.1f", storico.getMediaPunti(true)))
+                        .append("<br>Serie in corso: ").append(getSerieText(storico.getSerieCorrente()))
+                        .append("<br>Serie di vittorie migliore: ").append(storico.getSerieMigliore())
+                        .append(String.format("<br>Durata media: %d min", storico.getDurataMedia(ULTIME_PARTITE) / 60000));
+            }
+        }
+        if (ratingLadder != null) {
+            appendValutazione(testo, "1vs1", RatingLadder.umano(profile.getNome()));
+            appendValutazione(testo, "2vs2 in coppia con il bot",
+                    RatingLadder.squadra(profile.getNome(), MatchHistory.TipoAvversario.BOT));
+        }
+        return testo.append("</html>").toString();
+    }
+
+    /**
+     * Aggiunge al testo valutazione e posizione in classifica di un partecipante, se ha partite valutate.
+     *
+     * @param testo testo delle statistiche
+     * @param modalita descrizione della modalità valutata
+     * @param chiave chiave del partecipante in classifica
+     */
+    private void appendValutazione(StringBuilder testo, String modalita, String chiave) {
+        RatingLadder.Valutazione valutazione = ratingLadder.getValutazione(chiave);
+        if (valutazione != null) {
+            testo.append(String.format("<br><br>Valutazione %s: %.0f \u00b1 %.0f", modalita, valutazione.valutazione(),
+                            2 * valutazione.deviazione()))
+                    .append("<br>Posizione in classifica: ")
+                    .append(ratingLadder.getPosizione(chiave)).append(" di ").append(ratingLadder.size());
+        }
+    }
+
+    /**
+     * Restituisce la descrizione della serie in corso.
+     *
+     * @param serie lunghezza con segno della serie
+     * @return testo della serie
+     */
+    private static String getSerieText(int serie) {
+        if (serie > 0) {
+            return serie + (serie == 1 ? " vittoria" : " vittorie");
+        }
+        if (serie < 0) {
+            return -serie + (serie == -1 ? " sconfitta" : " sconfitte");
+        }
+        return "nessuna";
     }
 }
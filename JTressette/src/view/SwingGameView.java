@@ -5,6 +5,10 @@ import model.Card;
 import model.HumanPlayer;
 import model.Player;
 import model.Team;
+import utils.MatchHistoryStore;
+import utils.RatingLadder;
+import utils.UserProfile;
+import utils.UserProfileManager;
 
 import javax.swing.*;
 import java.awt.*;
@@ -202,7 +206,8 @@ public class SwingGameView extends JFrame implements GameView {
     }
 
     @Override
-    public void mostraImpostazioni() {
-        // Apertura finestra impostazioni gestita dal controller
+    public void mostraImpostazioni(UserProfileManager profileManager, UserProfile profilo,
+                                   MatchHistoryStore matchHistory, RatingLadder ratingLadder) {
+        new SettingsDialog(this, profileManager, profilo, matchHistory, ratingLadder).setVisible(true);
     }
 }